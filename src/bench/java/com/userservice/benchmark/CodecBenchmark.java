@@ -0,0 +1,77 @@
+package com.userservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.userservice.codec.UserCodec;
+import com.userservice.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Двоичный UserCodec против JSON (Jackson) на одной записи User.
+// Размеры записей печатаются при запуске; аллокации: запуск с -prof gc
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private User user;
+    private ByteBuffer encodeBuffer;
+    private ByteBuffer binary;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        user = new User(1_234_567L, "Иван Петров", "ivan.petrov@example.com", 31,
+                LocalDateTime.of(2024, 3, 15, 10, 20, 30, 123_456_000));
+        user.setVersion(3L);
+
+        encodeBuffer = ByteBuffer.allocate(256);
+        binary = UserCodec.encode(user);
+        json = MAPPER.writeValueAsBytes(user);
+
+        System.out.println("\nРазмер записи: binary=" + binary.remaining() + " байт, json=" + json.length + " байт");
+    }
+
+    @Benchmark
+    public ByteBuffer binaryEncode() {
+        encodeBuffer.clear();
+        UserCodec.encode(user, encodeBuffer);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public User binaryDecode() {
+        return UserCodec.decode(binary.duplicate());
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() throws IOException {
+        return MAPPER.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public User jsonDecode() throws IOException {
+        return MAPPER.readValue(json, User.class);
+    }
+}
@@ -0,0 +1,64 @@
+package com.userservice.benchmark;
+
+import com.userservice.dao.UserDao;
+import com.userservice.dao.UserDaoImpl;
+import com.userservice.entity.User;
+import com.userservice.util.HibernateUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Полный путь DAO -> Hibernate -> JDBC на БД профиля (по умолчанию встроенная H2 профиля bench).
+// Против PostgreSQL: -Dbench.profile=prod и USERSERVICE_DB_URL/USERNAME/PASSWORD
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DaoBenchmark {
+
+    private static final int USERS = 1_000;
+
+    private UserDao dao;
+    private long firstId;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        dao = new UserDaoImpl();
+        dao.deleteAll();
+        for (int i = 0; i < USERS; i++) {
+            User user = dao.save(new User("Пользователь " + i, "dao" + i + "@example.com", 30));
+            if (i == 0) {
+                firstId = user.getId();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        HibernateUtil.shutdown();
+    }
+
+    @Benchmark
+    public Optional<User> findById() {
+        return dao.findById(firstId + (next++ % USERS));
+    }
+
+    @Benchmark
+    public Optional<User> findByEmail() {
+        return dao.findByEmail("dao" + (next++ % USERS) + "@example.com");
+    }
+}
@@ -0,0 +1,122 @@
+package com.userservice.benchmark;
+
+import com.userservice.entity.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость flush сессии, в которой загружено много сущностей, а изменена одна — как в массовых
+// путях (выгрузка, перебор всей таблицы). enhanced — User с отслеживанием изменений (плагин
+// hibernate-enhance), plain — PlainUser без улучшения: Hibernate сравнивает каждую сущность со снимком.
+// Сессия загружается один раз на итерацию, flush повторяется в ней же.
+// H2 в памяти, чтобы замер не зависел от сети и PostgreSQL
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlushBenchmark {
+
+    @Param({"enhanced", "plain"})
+    public String entity;
+
+    @Param({"1000", "10000"})
+    public int loaded;
+
+    private SessionFactory factory;
+    private Session session;
+    private Transaction transaction;
+    private List<?> entities;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUpDatabase() {
+        Properties settings = new Properties();
+        settings.put(Environment.DRIVER, "org.h2.Driver");
+        settings.put(Environment.URL, "jdbc:h2:mem:flush;DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        settings.put(Environment.USER, "sa");
+        settings.put(Environment.PASS, "");
+        settings.put(Environment.DIALECT, "org.hibernate.dialect.H2Dialect");
+        settings.put(Environment.HBM2DDL_AUTO, "create-drop");
+        settings.put(Environment.POOL_SIZE, "2");
+
+        factory = new Configuration()
+                .setProperties(settings)
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(PlainUser.class)
+                .buildSessionFactory();
+
+        try (StatelessSession stateless = factory.openStatelessSession()) {
+            Transaction tx = stateless.beginTransaction();
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < loaded; i++) {
+                if (entity.equals("enhanced")) {
+                    User user = new User("Пользователь " + i, "user" + i + "@example.com", 30);
+                    user.setCreatedAt(now);
+                    user.setVersion(0L);
+                    stateless.insert(user);
+                } else {
+                    stateless.insert(new PlainUser("Пользователь " + i, "user" + i + "@example.com", 30, now));
+                }
+            }
+            tx.commit();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void loadSession() {
+        session = factory.openSession();
+        transaction = session.beginTransaction();
+        entities = session.createQuery(entity.equals("enhanced") ? "FROM User" : "FROM PlainUser").list();
+    }
+
+    @Benchmark
+    public void flushOneChange() {
+        String name = "Изменен " + (++round);
+        Object changed = entities.get(round % entities.size());
+        if (changed instanceof User) {
+            ((User) changed).setName(name);
+        } else {
+            ((PlainUser) changed).setName(name);
+        }
+        session.flush();
+    }
+
+    @Benchmark
+    public void flushNoChanges() {
+        session.flush();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeSession() {
+        transaction.rollback();
+        session.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownDatabase() {
+        factory.close();
+    }
+}
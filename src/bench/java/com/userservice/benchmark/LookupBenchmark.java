@@ -0,0 +1,119 @@
+package com.userservice.benchmark;
+
+import com.userservice.dao.UserDao;
+import com.userservice.entity.User;
+import com.userservice.exception.UserNotFoundException;
+import com.userservice.service.RetryPolicy;
+import com.userservice.service.UserService;
+import com.userservice.service.UserServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Промах поиска через UserServiceImpl: исключение со стеком, без стека
+// (-Duserservice.exceptions.stackTraces=false) и Optional. БД заменена DAO без данных,
+// поэтому в замер попадает только сервисный слой
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+
+    private UserService service;
+    private long nextId;
+
+    @Setup
+    public void setUp() {
+        service = new UserServiceImpl(new EmptyUserDao(), RetryPolicy.defaultPolicy());
+    }
+
+    @Benchmark
+    public Object getUserByIdMiss() {
+        try {
+            return service.getUserById(++nextId);
+        } catch (UserNotFoundException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Duserservice.exceptions.stackTraces=false")
+    public Object getUserByIdMissStackless() {
+        try {
+            return service.getUserById(++nextId);
+        } catch (UserNotFoundException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Optional<User> findUserByIdMiss() {
+        return service.findUserById(++nextId);
+    }
+
+    private static final class EmptyUserDao implements UserDao {
+        @Override
+        public User save(User user) {
+            return user;
+        }
+
+        @Override
+        public Optional<User> findById(Long id) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<User> findAll() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<User> findByCreatedAtBetween(LocalDateTime from, LocalDateTime to) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public User update(User user) {
+            return user;
+        }
+
+        @Override
+        public boolean delete(Long id) {
+            return false;
+        }
+
+        @Override
+        public Optional<User> findByEmail(String email) {
+            return Optional.empty();
+        }
+
+        @Override
+        public boolean existsByEmail(String email) {
+            return false;
+        }
+
+        @Override
+        public Long count() {
+            return 0L;
+        }
+
+        @Override
+        public void deleteAll() {
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.userservice.benchmark;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+import java.time.LocalDateTime;
+
+// Копия отображения User вне пакета entity: плагин hibernate-enhance ее не улучшает,
+// и FlushBenchmark сравнивает flush со снимками и с отслеживанием изменений в одном запуске
+@Entity
+@Table(name = "plain_users")
+public class PlainUser {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+    @Column(name = "name", nullable = false)
+    private String name;
+    @Column(name = "email", nullable = false, unique = true)
+    private String email;
+    @Column(name = "age")
+    private Integer age;
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    public PlainUser() {
+    }
+
+    public PlainUser(String name, String email, Integer age, LocalDateTime createdAt) {
+        this.name = name;
+        this.email = email;
+        this.age = age;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
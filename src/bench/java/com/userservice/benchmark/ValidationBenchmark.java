@@ -0,0 +1,93 @@
+package com.userservice.benchmark;
+
+import com.userservice.validation.UserDraft;
+import com.userservice.validation.UserValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Сравнение прежней проверки (trim() на каждое условие + регулярное выражение) с UserValidator.
+// Аллокации: запуск с -prof gc
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
+    private static final UserValidator VALIDATOR = new UserValidator();
+
+    @State(Scope.Benchmark)
+    public static class EmailState {
+        @Param({"ivan.petrov+news@mail.example.com", "  padded@example.org  ", "broken@@example"})
+        public String email;
+    }
+
+    @State(Scope.Benchmark)
+    public static class BatchState {
+        List<UserDraft> drafts;
+
+        @Setup
+        public void setUp() {
+            drafts = new ArrayList<>(1_000);
+            for (int i = 0; i < 1_000; i++) {
+                drafts.add(new UserDraft("Пользователь " + i,
+                        i % 10 == 0 ? "bad-email-" + i : "user" + i + "@example.com", i % 120));
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean regexEmail(EmailState state) {
+        return EMAIL_PATTERN.matcher(state.email.trim()).matches();
+    }
+
+    @Benchmark
+    public boolean scannerEmail(EmailState state) {
+        return VALIDATOR.checkEmail(state.email) == null;
+    }
+
+    @Benchmark
+    public int legacyBatch(BatchState state) {
+        int errors = 0;
+        for (UserDraft draft : state.drafts) {
+            errors += legacyErrors(draft.getName(), draft.getEmail(), draft.getAge());
+        }
+        return errors;
+    }
+
+    @Benchmark
+    public int validatorBatch(BatchState state) {
+        return VALIDATOR.validateBatch(state.drafts).getErrors().size();
+    }
+
+    // Прежняя логика UserServiceImpl.validateName/validateEmail/validateAge
+    private static int legacyErrors(String name, String email, Integer age) {
+        int errors = 0;
+        if (name == null || name.trim().isEmpty() || name.trim().length() < 2 || name.trim().length() > 100) {
+            errors++;
+        }
+        if (email == null || email.trim().isEmpty() || !EMAIL_PATTERN.matcher(email.trim()).matches()
+                || email.trim().length() > 150) {
+            errors++;
+        }
+        if (age != null && (age < 0 || age > 110)) {
+            errors++;
+        }
+        return errors;
+    }
+}
@@ -1,13 +1,28 @@
 package com.userservice;
 
+import com.userservice.batch.BatchJobRunner;
+import com.userservice.changes.UserChangesDao;
 import com.userservice.entity.User;
 import com.userservice.exception.UserAlreadyExistsException;
 import com.userservice.exception.UserNotFoundException;
 import com.userservice.exception.ValidationException;
+import com.userservice.export.ExportFormat;
+import com.userservice.export.UserExporter;
+import com.userservice.http.UserHttpServer;
+import com.userservice.maintenance.EmailCaseMigration;
+import com.userservice.maintenance.RevalidateUsersJob;
+import com.userservice.service.DeadlineUserService;
+import com.userservice.service.SqlScopedUserService;
 import com.userservice.service.UserService;
+import com.userservice.service.TracingUserService;
 import com.userservice.service.UserServiceImpl;
+import com.userservice.service.admission.AdmissionControlledUserService;
+import com.userservice.sql.SqlMonitor;
+import com.userservice.stats.RollupReconciler;
 import com.userservice.util.HibernateUtil;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Scanner;
@@ -15,10 +30,21 @@ import java.util.Scanner;
 
 public class Main {
 
-    public static final UserService userService = new UserServiceImpl();
+    public static final UserService userService =
+            new DeadlineUserService(SqlScopedUserService.wrapIfEnabled(
+                    TracingUserService.wrapIfEnabled(new UserServiceImpl())));
     public static final Scanner scanner = new Scanner(System.in);
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("serve")) {
+            runServer(args);
+            return;
+        }
+        if (args.length > 0) {
+            runCommand(args);
+            return;
+        }
+
         System.out.println("╔════════════════════════════════════════════╗");
         System.out.println("║     СИСТЕМА УПРАВЛЕНИЯ ПОЛЬЗОВАТЕЛЯМИ      ║");
         System.out.println("╚════════════════════════════════════════════╝");
@@ -56,6 +82,9 @@ public class Main {
                     case 8:
                         deleteAllUsers();
                         break;
+                    case 9:
+                        exportUsers();
+                        break;
                     case 0:
                         running = false;
                         System.out.println("\n👋 Выход из программы. До свидания!");
@@ -88,6 +117,7 @@ public class Main {
         System.out.println("6. 🗑️  Удалить пользователя");
         System.out.println("7. 📊 Показать количество пользователей");
         System.out.println("8. ⚠️  Удалить всех пользователей");
+        System.out.println("9. 💾 Экспортировать пользователей");
         System.out.println("0. 🚪 Выход");
         System.out.println("=".repeat(50));
         System.out.print("Ваш выбор: ");
@@ -335,6 +365,191 @@ public class Main {
         }
     }
 
+    private static void exportUsers() {
+        System.out.println("\n" + "─".repeat(50));
+        System.out.println("           ЭКСПОРТ ПОЛЬЗОВАТЕЛЕЙ");
+        System.out.println("─".repeat(50));
+
+        try {
+            System.out.print("Формат (csv/ndjson/json): ");
+            ExportFormat format = ExportFormat.fromString(scanner.nextLine().trim());
+
+            System.out.print("Путь к файлу: ");
+            Path file = Paths.get(scanner.nextLine().trim());
+
+            System.out.print("Сжимать gzip? (да/нет): ");
+            String gzipInput = scanner.nextLine().trim();
+            boolean gzip = gzipInput.equalsIgnoreCase("да") || gzipInput.equalsIgnoreCase("yes");
+
+            long rows = new UserExporter().export(file, format, gzip);
+            System.out.println("\nЭкспортировано пользователей: " + rows + " в " + file);
+        } catch (IllegalArgumentException e) {
+            System.out.println("\n" + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("\nОшибка при экспорте: " + e.getMessage());
+        }
+    }
+
+    // Неинтерактивный режим:
+    //   export <csv|ndjson|json> <путь> [--gzip] [--parallel N]
+    //   normalize-emails [--apply]
+    //   reconcile-stats
+    //   purge-tombstones
+    //   revalidate-users
+    //   serve [порт]
+    // Команды обходят UserService: область SqlMonitor открывается на всю команду
+    // (пакетные задачи выполняют порции в своих потоках, вне этой области)
+    private static void runCommand(String[] args) {
+        try (SqlMonitor.Scope ignored = SqlMonitor.beginScope("command " + args[0])) {
+            switch (args[0]) {
+                case "export":
+                    runExport(args);
+                    break;
+                case "normalize-emails":
+                    runNormalizeEmails(args);
+                    break;
+                case "reconcile-stats":
+                    runReconcileStats();
+                    break;
+                case "purge-tombstones":
+                    runPurgeTombstones();
+                    break;
+                case "revalidate-users":
+                    runRevalidateUsers();
+                    break;
+                default:
+                    System.err.println("Использование: export <csv|ndjson|json> <путь> [--gzip] [--parallel N]");
+                    System.err.println("               normalize-emails [--apply]");
+                    System.err.println("               reconcile-stats");
+                    System.err.println("               purge-tombstones");
+                    System.err.println("               revalidate-users");
+                    System.err.println("               serve [порт]");
+            }
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    // serve [порт] — HTTP API до остановки процесса (SIGTERM/Ctrl+C)
+    private static void runServer(String[] args) {
+        try {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : UserHttpServer.DEFAULT_PORT;
+            UserHttpServer server = new UserHttpServer(new AdmissionControlledUserService(userService), port);
+            server.start();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(HibernateUtil::shutdown, "user-service-shutdown"));
+            server.awaitStop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Не удалось запустить HTTP API: " + e.getMessage());
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static void runNormalizeEmails(String[] args) {
+        boolean apply = args.length > 1 && args[1].equals("--apply");
+        try {
+            EmailCaseMigration.Report report =
+                    new EmailCaseMigration(HibernateUtil.getSessionFactory()).run(apply);
+
+            System.out.println("Групп email, различающихся только регистром: " + report.getDuplicates().size());
+            for (EmailCaseMigration.DuplicateGroup group : report.getDuplicates()) {
+                System.out.println("  " + group.getCanonicalEmail() + ": " + group);
+            }
+            if (apply) {
+                System.out.println("Приведено к нижнему регистру: " + report.getNormalized());
+                System.out.println(report.isIndexCreated()
+                        ? "Уникальный индекс по lower(email) создан"
+                        : "Уникальный индекс не создан: сначала разрешите дубли");
+            }
+        } catch (Exception e) {
+            System.err.println("Ошибка при нормализации email: " + e.getMessage());
+        }
+    }
+
+    // Внеочередная сверка сводок, например после архивирования секций или правок users вручную
+    private static void runReconcileStats() {
+        try {
+            RollupReconciler.Report report =
+                    new RollupReconciler(HibernateUtil.getSessionFactory(), 1).reconcile();
+            if (report == null) {
+                System.out.println("Сверку сводок сейчас выполняет другой узел");
+                return;
+            }
+            System.out.println("Корзин: " + report.getBuckets() + ", исправлено: " + report.getDriftedBuckets()
+                    + " (расхождение " + report.getDriftUsers() + " пользователей), " + report.getMillis() + " мс");
+        } catch (Exception e) {
+            System.err.println("Ошибка при сверке сводок: " + e.getMessage());
+        }
+    }
+
+    // Удаление надгробий старше userservice.changes.tombstoneRetentionDays, например из cron раз в сутки
+    private static void runPurgeTombstones() {
+        try {
+            int purged = new UserChangesDao().purgeTombstones();
+            System.out.println("Удалено надгробий: " + purged);
+        } catch (Exception e) {
+            System.err.println("Ошибка при удалении надгробий: " + e.getMessage());
+        }
+    }
+
+    // Проверка сохраненных пользователей по текущим правилам; прерванный запуск продолжается с контрольных точек
+    private static void runRevalidateUsers() {
+        try {
+            RevalidateUsersJob job = new RevalidateUsersJob();
+            BatchJobRunner.Progress progress =
+                    BatchJobRunner.fromProperties(HibernateUtil.getSessionFactory()).run(job);
+            System.out.println("Проверено пользователей: " + progress.getProcessedRows() + ", "
+                    + progress.getElapsedMillis() + " мс");
+            if (progress.getFailedRanges() > 0) {
+                System.out.println("Диапазонов с ошибкой: " + progress.getFailedRanges()
+                        + " — повторный запуск продолжит с них");
+            }
+            job.getErrors().forEach((error, count) ->
+                    System.out.println("  " + error.getField() + ": " + error.getMessage() + " — " + count));
+        } catch (Exception e) {
+            System.err.println("Ошибка при проверке пользователей: " + e.getMessage());
+        }
+    }
+
+    private static void runExport(String[] args) {
+        try {
+            if (args.length < 3) {
+                System.err.println("Использование: export <csv|ndjson|json> <путь> [--gzip] [--parallel N]");
+                return;
+            }
+
+            ExportFormat format = ExportFormat.fromString(args[1]);
+            Path path = Paths.get(args[2]);
+            boolean gzip = false;
+            int parallelism = 1;
+
+            for (int i = 3; i < args.length; i++) {
+                if (args[i].equals("--gzip")) {
+                    gzip = true;
+                } else if (args[i].equals("--parallel") && i + 1 < args.length) {
+                    parallelism = Integer.parseInt(args[++i]);
+                } else {
+                    System.err.println("Неизвестный аргумент: " + args[i]);
+                    return;
+                }
+            }
+
+            UserExporter exporter = new UserExporter();
+            if (parallelism > 1) {
+                UserExporter.ExportResult result = exporter.exportParallel(path, "users", format, gzip, parallelism);
+                System.out.println("Экспортировано пользователей: " + result.getRows()
+                        + " в " + result.getFiles().size() + " файлов");
+            } else {
+                long rows = exporter.export(path, format, gzip);
+                System.out.println("Экспортировано пользователей: " + rows);
+            }
+        } catch (Exception e) {
+            System.err.println("Ошибка при экспорте: " + e.getMessage());
+        }
+    }
+
     private static void printUserDetails(User user) {
         System.out.println("\n┌" + "─".repeat(48) + "┐");
         System.out.println("│ ID:         " + String.format("%-34s", user.getId()) + "│");
@@ -0,0 +1,146 @@
+package com.userservice;
+
+import com.userservice.batch.BatchJobRunner;
+import com.userservice.batch.UserBatchJob;
+import com.userservice.dao.UserDao;
+import com.userservice.dao.UserDaoImpl;
+import com.userservice.entity.User;
+import com.userservice.maintenance.NormalizeEmailsJob;
+import com.userservice.maintenance.RevalidateUsersJob;
+import com.userservice.util.HibernateUtil;
+import com.userservice.validation.ValidationError;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestBatchJobs {
+
+    private static final int USERS = 120;
+
+    public static void main(String[] args) {
+        System.out.println("===Тестирование пакетных задач===");
+
+        UserDao userDao = new UserDaoImpl();
+        userDao.deleteAll();
+        SessionFactory sessionFactory = HibernateUtil.getSessionFactory();
+
+        try {
+            for (int i = 0; i < USERS; i++) {
+                userDao.save(new User("Batch User " + i, "batch" + i + "@test.com", 20 + i % 50));
+            }
+            User upper = userDao.save(new User("Batch Upper", "batch.upper@test.com", 30));
+            User invalid = userDao.save(new User("Batch Invalid", "batch.invalid@test.com", 40));
+            // Строки, сохраненные до нынешних правил
+            updateColumn(sessionFactory, upper.getId(), "email", "Batch.Upper@Test.com");
+            updateColumn(sessionFactory, invalid.getId(), "age", 200);
+
+            // Мелкие диапазоны и порции: несколько потоков, несколько порций на диапазон
+            BatchJobRunner runner = new BatchJobRunner(sessionFactory, 3, 7, 25, 0);
+
+            System.out.println("1. Проверка пользователей по текущим правилам\n");
+            RevalidateUsersJob revalidate = new RevalidateUsersJob();
+            BatchJobRunner.Progress progress = runner.run(revalidate);
+            System.out.println(progress);
+            Map<ValidationError, Long> errors = revalidate.getErrors();
+            System.out.println("Нарушения: " + errors);
+            check(progress.getProcessedRows() == USERS + 2, "обработаны все строки");
+            check(progress.getDoneRanges() == progress.getTotalRanges() && progress.getFailedRanges() == 0,
+                    "все диапазоны завершены");
+            check(errors.size() == 1 && errors.get(ValidationError.AGE_TOO_HIGH) == 1, "одно нарушение возраста");
+            System.out.println();
+
+            System.out.println("2. Приведение email к нижнему регистру\n");
+            progress = runner.run(new NormalizeEmailsJob());
+            System.out.println(progress);
+            check(progress.getModifiedRows() == 1, "изменен один email");
+            User normalized = userDao.findById(upper.getId()).orElseThrow(AssertionError::new);
+            System.out.println("После нормализации: " + normalized);
+            check(normalized.getEmail().equals("batch.upper@test.com"), "email в нижнем регистре");
+            System.out.println();
+
+            System.out.println("3. Контрольные точки завершенных задач удалены\n");
+            check(countCheckpoints(sessionFactory) == 0, "нет контрольных точек");
+            System.out.println("Контрольных точек: 0");
+            System.out.println();
+
+            System.out.println("4. Сбой диапазона: контрольные точки сохраняются, повторный запуск продолжает\n");
+            FailingJob failing = new FailingJob(invalid.getId());
+            progress = runner.run(failing);
+            System.out.println(progress);
+            check(progress.getFailedRanges() == 1, "один диапазон с ошибкой");
+            check(countCheckpoints(sessionFactory) > 0, "контрольные точки сохранены");
+            long processedBefore = failing.processed.get();
+
+            failing.fail = false;
+            progress = runner.run(failing);
+            System.out.println(progress);
+            check(progress.getFailedRanges() == 0 && progress.getProcessedRows() == USERS + 2, "задача завершена");
+            check(failing.processed.get() - processedBefore < USERS, "завершенные диапазоны не повторялись");
+            check(countCheckpoints(sessionFactory) == 0, "контрольные точки удалены");
+            System.out.println();
+
+            System.out.println("====Все тесты пройдены====");
+        } catch (Exception | AssertionError e) {
+            System.err.println("Ошибка при тестировании пакетных задач:");
+            e.printStackTrace();
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    // В обход проверок и нормализации DAO
+    private static void updateColumn(SessionFactory sessionFactory, long id, String column, Object value) {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("UPDATE users SET " + column + " = :value WHERE id = :id")
+                    .setParameter("value", value)
+                    .setParameter("id", id)
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    private static long countCheckpoints(SessionFactory sessionFactory) {
+        try (Session session = sessionFactory.openSession()) {
+            return ((Number) session.createNativeQuery("SELECT count(*) AS total FROM batch_job_checkpoint")
+                    .uniqueResult()).longValue();
+        }
+    }
+
+    // Порция с заданным id падает, пока fail не сброшен
+    private static final class FailingJob implements UserBatchJob {
+        private final long failingId;
+        private final AtomicLong processed = new AtomicLong();
+        private volatile boolean fail = true;
+
+        FailingJob(long failingId) {
+            this.failingId = failingId;
+        }
+
+        @Override
+        public String getName() {
+            return "test-failing";
+        }
+
+        @Override
+        public int process(StatelessSession session, List<User> chunk) {
+            for (User user : chunk) {
+                if (fail && user.getId() == failingId) {
+                    throw new IllegalStateException("Сбой обработки id=" + failingId);
+                }
+            }
+            processed.addAndGet(chunk.size());
+            return 0;
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError("Проверка не пройдена: " + message);
+        }
+    }
+}
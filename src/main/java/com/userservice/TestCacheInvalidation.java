@@ -0,0 +1,64 @@
+package com.userservice;
+
+import com.userservice.dao.CachingUserDao;
+import com.userservice.dao.UserDaoImpl;
+import com.userservice.entity.User;
+import com.userservice.util.HibernateUtil;
+
+import java.util.function.BooleanSupplier;
+
+// Два «узла» в одном процессе: у каждого свой кэш и своя подписка на user_invalidation.
+// Изменение через узел B должно вытеснить запись из кэша узла A.
+// Нужен локальный PostgreSQL из HibernateUtil
+public class TestCacheInvalidation {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("===Тестирование инвалидации кэша между узлами===");
+
+        CachingUserDao nodeA = new CachingUserDao(new UserDaoImpl());
+        CachingUserDao nodeB = new CachingUserDao(new UserDaoImpl());
+
+        try {
+            waitUntil(() -> nodeA.getStats().isEnabled() && nodeB.getStats().isEnabled(), 10_000);
+            System.out.println("Подписки установлены: " + nodeA.getStats() + ", " + nodeB.getStats());
+
+            User user = nodeB.save(new User("Кэш Тест", "cache" + System.nanoTime() + "@test.com", 25));
+            Long id = user.getId();
+
+            System.out.println("\n1. Узел A кэширует пользователя\n");
+            nodeA.findById(id);
+            nodeA.findById(id);
+            System.out.println("Статистика A: " + nodeA.getStats());
+
+            System.out.println("\n2. Узел B меняет имя\n");
+            User toUpdate = nodeB.findById(id).orElseThrow();
+            toUpdate.setName("Кэш Тест Обновлен");
+            nodeB.update(toUpdate);
+
+            waitUntil(() -> nodeA.getStats().getInvalidations() > 0
+                    && "Кэш Тест Обновлен".equals(nodeA.findById(id).map(User::getName).orElse(null)), 5_000);
+            System.out.println("Узел A видит: " + nodeA.findById(id).orElseThrow().getName());
+
+            System.out.println("\n3. Узел B удаляет пользователя\n");
+            nodeB.delete(id);
+            waitUntil(() -> nodeA.findById(id).isEmpty(), 5_000);
+            System.out.println("Узел A: пользователь удален");
+
+            System.out.println("\nСтатистика A: " + nodeA.getStats());
+            System.out.println("Статистика B: " + nodeB.getStats());
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Условие не выполнено за " + timeoutMillis + " мс");
+            }
+            Thread.sleep(50);
+        }
+    }
+}
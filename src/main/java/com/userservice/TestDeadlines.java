@@ -0,0 +1,84 @@
+package com.userservice;
+
+import com.userservice.dao.UserDaoImpl;
+import com.userservice.entity.User;
+import com.userservice.exception.DeadlineExceededException;
+import com.userservice.service.DeadlineUserService;
+import com.userservice.service.UserService;
+import com.userservice.service.UserServiceImpl;
+import com.userservice.util.Deadline;
+import com.userservice.util.HibernateUtil;
+import org.hibernate.Session;
+
+import java.time.Duration;
+
+public class TestDeadlines {
+
+    public static void main(String[] args) {
+        System.out.println("===Тестирование сроков вызовов===");
+
+        UserService userService = new DeadlineUserService(new UserServiceImpl(new UserDaoImpl()));
+        userService.deleteAllUsers();
+
+        try {
+            System.out.println("1. Вызов в пределах срока\n");
+            User user;
+            try (Deadline.Scope ignored = Deadline.within(Duration.ofSeconds(5))) {
+                user = userService.createUser("Deadline User", "deadline@test.com", 30);
+                check(userService.getUserById(user.getId()).getEmail().equals("deadline@test.com"), "чтение в срок");
+            }
+            check(Deadline.current() == null, "срок снят после области");
+            System.out.println("Создан и прочитан: " + user);
+            System.out.println();
+
+            System.out.println("2. Истекший срок отказывает до обращения к БД\n");
+            try (Deadline.Scope ignored = Deadline.within(Duration.ZERO)) {
+                userService.getUserById(user.getId());
+                throw new AssertionError("Вызов с истекшим сроком выполнен");
+            } catch (DeadlineExceededException e) {
+                System.out.println("Отказ: " + e.getMessage());
+            }
+            check(Deadline.getTimeouts().get("getUserById") == 1, "таймаут учтен по операции");
+            System.out.println();
+
+            System.out.println("3. Вложенная область не продлевает внешний срок\n");
+            try (Deadline.Scope outer = Deadline.within(Duration.ofMillis(100));
+                 Deadline.Scope inner = Deadline.within(Duration.ofSeconds(60))) {
+                check(Deadline.current().remainingMillis() <= 100, "остается внешний срок");
+                System.out.println("Остаток: " + Deadline.current().remainingMillis() + " мс");
+            }
+            System.out.println();
+
+            System.out.println("4. Выполняющийся запрос отменяется по сроку\n");
+            long start = System.nanoTime();
+            try (Deadline.Scope ignored = Deadline.within(Duration.ofMillis(300));
+                 Session session = HibernateUtil.getSessionFactory().openSession()) {
+                session.createNativeQuery("SELECT count(*) AS total FROM system_range(1, 100000) a "
+                        + "CROSS JOIN system_range(1, 100000) b").uniqueResult();
+                throw new AssertionError("Долгий запрос не отменен");
+            } catch (RuntimeException e) {
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                System.out.println("Отменен через " + millis + " мс: " + e.getClass().getSimpleName());
+                check(Deadline.isTimeout(e), "ошибка распознана как таймаут");
+                // JDBC считает таймаут в секундах: во встроенной H2 отмена — не позже чем через секунду
+                check(millis < 3_000, "запрос не выполнялся до конца");
+            }
+            System.out.println();
+
+            System.out.println("Таймауты по операциям: " + Deadline.getTimeouts());
+            System.out.println();
+            System.out.println("====Все тесты пройдены====");
+        } catch (Exception | AssertionError e) {
+            System.err.println("Ошибка при тестировании сроков вызовов:");
+            e.printStackTrace();
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError("Проверка не пройдена: " + message);
+        }
+    }
+}
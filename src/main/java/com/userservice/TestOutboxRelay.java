@@ -0,0 +1,133 @@
+package com.userservice;
+
+import com.userservice.dao.UserDao;
+import com.userservice.dao.UserDaoImpl;
+import com.userservice.entity.User;
+import com.userservice.outbox.LocalBrokerSink;
+import com.userservice.outbox.OutboxEvent;
+import com.userservice.outbox.OutboxEventType;
+import com.userservice.outbox.OutboxRelay;
+import com.userservice.outbox.UserOutbox;
+import com.userservice.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestOutboxRelay {
+
+    public static void main(String[] args) {
+        System.out.println("===Тестирование outbox===");
+
+        UserDao userDao = new UserDaoImpl();
+        LocalBrokerSink broker = new LocalBrokerSink();
+        List<OutboxEvent> received = new ArrayList<>();
+        broker.subscribe("test", received::add);
+
+        OutboxRelay relay = new OutboxRelay("test", HibernateUtil.getSessionFactory(), broker);
+
+        try {
+            // События, накопленные до первого запуска, тоже будут доставлены
+            relay.drain();
+            received.clear();
+
+            System.out.println("1. Изменения пишут события в user_outbox\n");
+            User user = userDao.save(new User("Outbox Test", "outbox" + System.nanoTime() + "@test.com", 30));
+            user.setName("Outbox Test Updated");
+            userDao.update(user);
+            userDao.delete(user.getId());
+
+            System.out.println("2. Ретранслятор доставляет их по порядку\n");
+            relay.drain();
+            for (OutboxEvent event : received) {
+                System.out.println("  - " + event + " -> " + event.getUser());
+            }
+
+            System.out.println("\n3. Повторная выборка ничего не доставляет\n");
+            int before = received.size();
+            relay.drain();
+            System.out.println("Новых событий: " + (received.size() - before));
+
+            System.out.println("\n4. Транзакция с меньшим id события фиксируется позже соседней\n");
+            interleavedCommits(userDao, relay, received);
+
+            System.out.println("\n5. Откатившаяся транзакция оставляет пропуск в id\n");
+            rolledBackGap(userDao, relay, received);
+
+            System.out.println("\n" + relay.getStats());
+        } catch (Exception | AssertionError e) {
+            System.err.println("Ошибка: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            relay.close();
+            HibernateUtil.shutdown();
+        }
+    }
+
+    // T1 первой получает id события, T2 фиксируется раньше. Пока T1 не завершена, ретранслятор
+    // не должен сдвинуть контрольную точку за событие T2: событие T1 было бы потеряно
+    private static void interleavedCommits(UserDao userDao, OutboxRelay relay, List<OutboxEvent> received) {
+        User first = userDao.save(new User("Outbox First", "outbox-first" + System.nanoTime() + "@test.com", 31));
+        User second = userDao.save(new User("Outbox Second", "outbox-second" + System.nanoTime() + "@test.com", 32));
+        relay.drain();
+        received.clear();
+
+        try (Session t1 = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction tx1 = t1.beginTransaction();
+            User firstUser = t1.get(User.class, first.getId());
+            firstUser.setName("Outbox First Updated");
+            UserOutbox.append(t1, OutboxEventType.USER_UPDATED, firstUser);
+
+            second.setName("Outbox Second Updated");
+            userDao.update(second);
+            relay.drain();
+            System.out.println("Доставлено до фиксации T1: " + received.size());
+            check(received.isEmpty(), "событие T2 ждет завершения T1");
+
+            tx1.commit();
+            relay.drain();
+        }
+
+        for (OutboxEvent event : received) {
+            System.out.println("  - " + event + " -> " + event.getUser());
+        }
+        check(received.size() == 2, "доставлены события обеих транзакций");
+        check(received.get(0).getUserId().equals(first.getId())
+                && received.get(1).getUserId().equals(second.getId()), "события в порядке id");
+    }
+
+    // id откатившейся транзакции не заполнится никогда: после ее завершения контрольная точка идет дальше
+    private static void rolledBackGap(UserDao userDao, OutboxRelay relay, List<OutboxEvent> received) {
+        User user = userDao.save(new User("Outbox Gap", "outbox-gap" + System.nanoTime() + "@test.com", 33));
+        User deleted = userDao.save(new User("Outbox Gap Deleted", "outbox-gap-del" + System.nanoTime() + "@test.com", 34));
+        relay.drain();
+        received.clear();
+
+        try (Session t1 = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction tx1 = t1.beginTransaction();
+            User rolledBack = t1.get(User.class, user.getId());
+            rolledBack.setName("Outbox Gap Rolled Back");
+            UserOutbox.append(t1, OutboxEventType.USER_UPDATED, rolledBack);
+
+            userDao.delete(deleted.getId());
+            relay.drain();
+            check(received.isEmpty(), "событие за пропуском ждет завершения T1");
+
+            tx1.rollback();
+            relay.drain();
+        }
+
+        for (OutboxEvent event : received) {
+            System.out.println("  - " + event + " -> " + event.getUser());
+        }
+        check(received.size() == 1 && received.get(0).getType() == OutboxEventType.USER_DELETED,
+                "доставлено только зафиксированное удаление");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError("Проверка не пройдена: " + message);
+        }
+    }
+}
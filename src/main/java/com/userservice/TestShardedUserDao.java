@@ -0,0 +1,78 @@
+package com.userservice;
+
+import com.userservice.config.AppConfig;
+import com.userservice.dao.ShardedUserDao;
+import com.userservice.entity.User;
+import com.userservice.util.HibernateUtil;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+// Локальная проверка шардирования на нескольких экземплярах PostgreSQL, например:
+// docker run -d -p 5433:5432 -e POSTGRES_DB=user_service_shard0 -e POSTGRES_USER=user_service_user -e POSTGRES_PASSWORD=4221 postgres
+// docker run -d -p 5434:5432 -e POSTGRES_DB=user_service_shard1 -e POSTGRES_USER=user_service_user -e POSTGRES_PASSWORD=4221 postgres
+// Адреса переопределяются через -Duserservice.shard.<i>.url=...
+public class TestShardedUserDao {
+
+    public static void main(String[] args) {
+        System.out.println("===Тестирование ShardedUserDao===");
+
+        Properties properties = new Properties();
+        properties.setProperty("userservice.shard.count", "2");
+        for (int i = 0; i < 2; i++) {
+            properties.setProperty("userservice.shard." + i + ".url",
+                    "jdbc:postgresql://localhost:" + (5433 + i) + "/user_service_shard" + i);
+            properties.setProperty("userservice.shard." + i + ".username", "user_service_user");
+            properties.setProperty("userservice.shard." + i + ".password", "4221");
+        }
+        properties.putAll(AppConfig.toProperties());
+
+        ShardedUserDao userDao = ShardedUserDao.fromProperties(properties);
+
+        try {
+            userDao.deleteAll();
+
+            System.out.println("1. Тест CREATE\n");
+            for (int i = 0; i < 10; i++) {
+                User user = userDao.save(new User("Пользователь " + i, "user" + i + "@shard.test", 20 + i));
+                System.out.println("  - " + user + " -> шард " + ShardedUserDao.shardOf(user.getId()));
+            }
+            System.out.println();
+
+            System.out.println("2. Тест COUNT (scatter-gather)\n");
+            System.out.println("Всего пользователей во всех шардах: " + userDao.count());
+            System.out.println();
+
+            System.out.println("3. Тест FIND BY EMAIL через справочник\n");
+            Optional<User> byEmail = userDao.findByEmail("user7@shard.test");
+            System.out.println(byEmail.map(u -> "Найден пользователь: " + u).orElse("Пользователь не найден"));
+            System.out.println();
+
+            System.out.println("4. Тест UPDATE со сменой email\n");
+            User user = byEmail.orElseThrow();
+            user.setEmail("renamed7@shard.test");
+            userDao.update(user);
+            System.out.println("Старый email существует: " + userDao.existsByEmail("user7@shard.test"));
+            System.out.println("Новый email существует: " + userDao.existsByEmail("renamed7@shard.test"));
+            System.out.println();
+
+            System.out.println("5. Тест FIND ALL (scatter-gather)\n");
+            List<User> users = userDao.findAll();
+            users.forEach(u -> System.out.println("  - " + u));
+            System.out.println();
+
+            System.out.println("6. Тест DELETE\n");
+            System.out.println("Пользователь удален: " + userDao.delete(user.getId()));
+            System.out.println("Осталось пользователей: " + userDao.count());
+            System.out.println();
+
+            System.out.println("====Все тесты пройдены====");
+        } catch (Exception e) {
+            System.err.println("Ошибка при тестировании шардирования:");
+            e.printStackTrace();
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.userservice;
+
+import com.userservice.entity.User;
+import com.userservice.service.TracingUserService;
+import com.userservice.service.UserService;
+import com.userservice.service.UserServiceImpl;
+import com.userservice.tracing.InMemorySpanExporter;
+import com.userservice.tracing.Span;
+import com.userservice.tracing.Tracing;
+import com.userservice.util.HibernateUtil;
+
+import java.util.List;
+
+// Трасса createUser и поиска: спаны сервиса, DAO, получения соединения и JDBC в памяти.
+// Нужен локальный PostgreSQL из HibernateUtil
+public class TestTracing {
+
+    public static void main(String[] args) {
+        // До первого обращения к Tracing: настройки читаются при инициализации класса
+        System.setProperty("userservice.tracing.exporter", "memory");
+        System.setProperty("userservice.tracing.sampleRatio", "1.0");
+
+        System.out.println("===Тестирование трассировки===");
+
+        UserService userService = TracingUserService.wrapIfEnabled(new UserServiceImpl());
+        InMemorySpanExporter exporter = (InMemorySpanExporter) Tracing.getExporter();
+
+        try {
+            System.out.println("\n1. createUser\n");
+            User user = userService.createUser("Трасса Тест", "trace" + System.nanoTime() + "@test.com", 30);
+            printTrace(exporter);
+
+            System.out.println("\n2. findUserById (есть) и findUserById (нет)\n");
+            userService.findUserById(user.getId());
+            userService.findUserById(Long.MAX_VALUE);
+            printTrace(exporter);
+
+            System.out.println("\n3. Ошибка валидации отмечается в спане\n");
+            try {
+                userService.createUser("", "bad", -1);
+            } catch (RuntimeException e) {
+                System.out.println("Ожидаемая ошибка: " + e.getMessage());
+            }
+            printTrace(exporter);
+
+            userService.deleteUser(user.getId());
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static void printTrace(InMemorySpanExporter exporter) {
+        Tracing.flush();
+        List<Span> spans = exporter.getSpans();
+        for (Span span : spans) {
+            System.out.println("  " + span.getTraceId().substring(0, 8) + " "
+                    + (span.getParentSpanId() == null ? "" : "  ") + span);
+        }
+        exporter.reset();
+    }
+}
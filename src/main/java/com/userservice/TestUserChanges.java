@@ -0,0 +1,88 @@
+package com.userservice;
+
+import com.userservice.changes.ChangeCursor;
+import com.userservice.changes.ChangePage;
+import com.userservice.changes.UserChange;
+import com.userservice.changes.UserChangesDao;
+import com.userservice.dao.UserDao;
+import com.userservice.dao.UserDaoImpl;
+import com.userservice.entity.User;
+import com.userservice.util.HibernateUtil;
+
+public class TestUserChanges {
+
+    public static void main(String[] args) {
+        System.out.println("===Тестирование ленты изменений===");
+
+        UserDao userDao = new UserDaoImpl();
+        UserChangesDao changesDao = new UserChangesDao();
+        userDao.deleteAll();
+
+        try {
+            System.out.println("1. Полная синхронизация страницами\n");
+            User first = userDao.save(new User("Changes One", "changes1@test.com", 21));
+            User second = userDao.save(new User("Changes Two", "changes2@test.com", 22));
+            userDao.save(new User("Changes Three", "changes3@test.com", 23));
+            settle();
+
+            ChangeCursor cursor = ChangeCursor.START;
+            ChangePage page;
+            do {
+                page = changesDao.changesSince(cursor, 2);
+                print(page);
+                cursor = page.getNext();
+            } while (page.hasMore());
+
+            System.out.println("2. Только изменения после курсора, удаление — надгробием\n");
+            first.setName("Changes One Updated");
+            userDao.update(first);
+            userDao.delete(second.getId());
+            settle();
+
+            page = changesDao.changesSince(cursor, 100);
+            print(page);
+            check(page.getChanges().size() == 2, "обновление и удаление");
+            check(!page.getChanges().get(0).isDeleted()
+                    && page.getChanges().get(0).getUser().getName().equals("Changes One Updated"), "обновление первым");
+            check(page.getChanges().get(1).isDeleted()
+                    && page.getChanges().get(1).getUserId() == second.getId(), "надгробие вторым");
+
+            System.out.println("3. Без новых изменений страница пуста, курсор не отстает\n");
+            ChangePage empty = changesDao.changesSince(page.getNext(), 100);
+            print(empty);
+            check(empty.getChanges().isEmpty(), "пустая страница");
+
+            System.out.println("4. Курсор переживает передачу строкой\n");
+            ChangeCursor parsed = ChangeCursor.parse(empty.getNext().toString());
+            check(parsed.equals(empty.getNext()), "разбор курсора " + parsed);
+            System.out.println("Курсор: " + parsed);
+            System.out.println();
+
+            System.out.println("====Все тесты пройдены====");
+        } catch (Exception | AssertionError e) {
+            System.err.println("Ошибка при тестировании ленты изменений:");
+            e.printStackTrace();
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    // Лента не отдает изменения моложе userservice.changes.settleMillis
+    private static void settle() throws InterruptedException {
+        Thread.sleep(UserChangesDao.SETTLE_MILLIS + 50);
+    }
+
+    private static void print(ChangePage page) {
+        for (UserChange change : page.getChanges()) {
+            System.out.println("  - " + change + (change.isDeleted() ? "" : " " + change.getUser()));
+        }
+        System.out.println("Следующий курсор: " + page.getNext() + ", есть еще: " + page.hasMore());
+        System.out.println();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError("Проверка не пройдена: " + message);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.userservice;
+
+import com.userservice.codec.UserCodec;
+import com.userservice.entity.User;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+public class TestUserCodec {
+
+    public static void main(String[] args) {
+        System.out.println("====test user codec====");
+
+        User full = new User(42L, "Иван Петров", "ivan.petrov@example.com", 31,
+                LocalDateTime.of(2024, 3, 15, 10, 20, 30, 123_456_000));
+        full.setVersion(7L);
+        full.setUpdatedAt(LocalDateTime.of(2024, 4, 1, 8, 0, 0, 5_000));
+
+        User empty = new User();
+
+        User edge = new User(Long.MAX_VALUE, "Emoji 😀 и \"кавычки\"", "x@y.io", -1,
+                LocalDateTime.of(1900, 1, 1, 0, 0));
+        edge.setVersion(0L);
+
+        for (User user : new User[]{full, empty, edge}) {
+            ByteBuffer encoded = UserCodec.encode(user);
+            int size = encoded.remaining();
+            User decoded = UserCodec.decode(encoded);
+
+            check(sameFields(user, decoded), "round trip: " + user);
+            check(!encoded.hasRemaining(), "буфер прочитан полностью");
+            System.out.println("ok: " + size + " байт — " + decoded);
+        }
+
+        // Несколько записей подряд в одном буфере
+        ByteBuffer stream = ByteBuffer.allocate(UserCodec.encodedSize(full) + UserCodec.encodedSize(edge));
+        UserCodec.encode(full, stream);
+        UserCodec.encode(edge, stream);
+        stream.flip();
+        check(sameFields(full, UserCodec.decode(stream)), "первая запись потока");
+        check(sameFields(edge, UserCodec.decode(stream)), "вторая запись потока");
+
+        // Запись будущей версии с дополнительным полем: старый декодер пропускает его
+        ByteBuffer current = UserCodec.encode(full);
+        ByteBuffer future = ByteBuffer.allocate(current.remaining() + 3);
+        future.put((byte) (UserCodec.VERSION + 1));
+        current.get();
+        int bodySize = current.get();
+        future.put((byte) (bodySize + 2));
+        future.put(current);
+        future.put((byte) 0x55).put((byte) 0x66);
+        future.put((byte) 0x77);
+        future.flip();
+        check(sameFields(full, UserCodec.decode(future)), "запись будущей версии");
+        check(future.remaining() == 1 && future.get() == 0x77, "позиция за записью будущей версии");
+
+        // Запись версии 1: поля updatedAt и его бита в маске еще нет
+        User legacy = new User(5L, "Old", "old@example.com", 40, LocalDateTime.of(2023, 1, 1, 0, 0));
+        legacy.setVersion(1L);
+        ByteBuffer v1 = UserCodec.encode(legacy);
+        v1.put(0, (byte) 1);
+        v1.put(2, (byte) (v1.get(2) & ~(1 << 6)));
+        check(sameFields(legacy, UserCodec.decode(v1)), "запись версии 1");
+
+        // Обрезанная запись
+        ByteBuffer truncated = UserCodec.encode(full);
+        truncated.limit(truncated.limit() - 5);
+        try {
+            UserCodec.decode(truncated);
+            check(false, "обрезанная запись должна отклоняться");
+        } catch (IllegalArgumentException e) {
+            System.out.println("ok: " + e.getMessage());
+        }
+
+        System.out.println("====test user codec passed====");
+    }
+
+    private static boolean sameFields(User expected, User actual) {
+        return Objects.equals(expected.getId(), actual.getId())
+                && Objects.equals(expected.getName(), actual.getName())
+                && Objects.equals(expected.getEmail(), actual.getEmail())
+                && Objects.equals(expected.getAge(), actual.getAge())
+                && Objects.equals(expected.getCreatedAt(), actual.getCreatedAt())
+                && Objects.equals(expected.getVersion(), actual.getVersion())
+                && Objects.equals(expected.getUpdatedAt(), actual.getUpdatedAt());
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError("Проверка не пройдена: " + message);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.userservice;
+
+import com.userservice.config.AppConfig;
+import com.userservice.dao.UserDao;
+import com.userservice.dao.UserDaoImpl;
+import com.userservice.entity.User;
+import com.userservice.partition.UserPartitionManager;
+import com.userservice.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Перевод на секционирование базы, созданной hbm2ddl до появления миграций (id — identity).
+// Сценарий пересоздает таблицы, поэтому запускается только на отдельной базе PostgreSQL:
+// -Duserservice.db.url=jdbc:postgresql://localhost:5432/user_service_partition_test
+public class TestUserPartitioning {
+
+    private static final String URL_PROPERTY = "userservice.db.url";
+
+    public static void main(String[] args) {
+        System.out.println("===Тестирование секционирования users===");
+
+        if (System.getProperty(URL_PROPERTY) == null) {
+            System.out.println("Сценарий пересоздает таблицы: укажите отдельную базу -D" + URL_PROPERTY + "=...");
+            return;
+        }
+
+        try {
+            System.out.println("1. База в том виде, в каком ее создал hbm2ddl\n");
+            long deletedId = createBaseline();
+            System.out.println("Удален последний пользователь ID " + deletedId);
+
+            System.out.println("\n2. Старт с секционированием: миграции и перевод таблицы\n");
+            System.setProperty(UserPartitionManager.ENABLED_PROPERTY, "true");
+            SessionFactory sessionFactory = HibernateUtil.getSessionFactory();
+            UserDao userDao = new UserDaoImpl();
+
+            try (Session session = sessionFactory.openSession()) {
+                Object kind = session.createNativeQuery("SELECT CAST(c.relkind AS VARCHAR) FROM pg_class c "
+                        + "JOIN pg_namespace n ON n.oid = c.relnamespace "
+                        + "WHERE c.relname = 'users' AND n.nspname = 'public'").uniqueResult();
+                check("p".equals(kind), "таблица users секционирована");
+            }
+            check(userDao.count() == 2, "перенесены все пользователи");
+            System.out.println("Пользователей после переноса: " + userDao.count());
+
+            System.out.println("\n3. Новые id продолжают последовательность identity\n");
+            User created = userDao.save(new User("Partition New", "partition-new@test.com", 40));
+            check(created != null && created.getId() > deletedId, "id удаленного пользователя не выдан повторно");
+            System.out.println("Создан: " + created);
+            check(userDao.findByEmail("PARTITION-OLD@test.com").isPresent(), "поиск по email в секциях");
+
+            System.out.println("\n4. Повторный перевод ничего не меняет\n");
+            new UserPartitionManager(sessionFactory).ensureSchema();
+            check(userDao.count() == 3, "пользователи на месте");
+            System.out.println("Пользователей: " + userDao.count());
+
+            System.out.println("\n====Все тесты пройдены====");
+        } catch (Exception | AssertionError e) {
+            System.out.println("Ошибка: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    // Таблица, как ее создавал PostgreSQL10Dialect: id identity, без version и updated_at, истории миграций нет.
+    // Последний пользователь удален: последовательность identity опережает MAX(id)
+    private static long createBaseline() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(AppConfig.require(URL_PROPERTY),
+                AppConfig.require("userservice.db.username"), AppConfig.getString("userservice.db.password", ""));
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS users, users_legacy, user_emails, user_email_directory, "
+                    + "user_outbox, user_outbox_checkpoint, user_stats_rollup, user_tombstones, "
+                    + "batch_job_checkpoint, flyway_schema_history CASCADE");
+            statement.execute("DROP SEQUENCE IF EXISTS users_id_seq");
+            statement.execute("DROP FUNCTION IF EXISTS users_email_guard()");
+
+            statement.execute("CREATE TABLE users (id BIGINT GENERATED BY DEFAULT AS IDENTITY, age INTEGER, "
+                    + "created_at TIMESTAMP(6) NOT NULL, email VARCHAR(255) NOT NULL, name VARCHAR(255) NOT NULL, "
+                    + "PRIMARY KEY (id))");
+            statement.execute("ALTER TABLE users ADD CONSTRAINT uk_users_email UNIQUE (email)");
+            statement.execute("INSERT INTO users (age, created_at, email, name) VALUES "
+                    + "(30, LOCALTIMESTAMP - INTERVAL '2 months', 'partition-old@test.com', 'Partition Old'), "
+                    + "(31, LOCALTIMESTAMP, 'partition-current@test.com', 'Partition Current'), "
+                    + "(32, LOCALTIMESTAMP, 'partition-deleted@test.com', 'Partition Deleted')");
+            try (ResultSet resultSet = statement.executeQuery(
+                    "DELETE FROM users WHERE email = 'partition-deleted@test.com' RETURNING id")) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError("Проверка не пройдена: " + message);
+        }
+    }
+}
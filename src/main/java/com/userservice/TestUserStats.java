@@ -0,0 +1,69 @@
+package com.userservice;
+
+import com.userservice.dao.UserDao;
+import com.userservice.dao.UserDaoImpl;
+import com.userservice.entity.User;
+import com.userservice.stats.RollupReconciler;
+import com.userservice.stats.UserStatsDao;
+import com.userservice.stats.UserStatsDao.Source;
+import com.userservice.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+import java.time.LocalDate;
+
+public class TestUserStats {
+
+    public static void main(String[] args) {
+        System.out.println("===Тестирование сводок===");
+
+        UserDao userDao = new UserDaoImpl();
+        UserStatsDao statsDao = new UserStatsDao();
+        userDao.deleteAll();
+
+        try {
+            System.out.println("1. Сводки меняются вместе с пользователями\n");
+            User young = userDao.save(new User("Stats Young", "young@gmail.com", 17));
+            User adult = userDao.save(new User("Stats Adult", "adult@gmail.com", 30));
+            userDao.save(new User("Stats Senior", "senior@mail.ru", 70));
+            adult.setAge(40);
+            adult.setEmail("adult@yandex.ru");
+            userDao.update(adult);
+            userDao.delete(young.getId());
+            compare(statsDao);
+
+            System.out.println("2. Дрейф после записи в обход DAO исправляет сверка\n");
+            try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+                Transaction transaction = session.beginTransaction();
+                session.createNativeQuery("UPDATE users SET age = 20").executeUpdate();
+                transaction.commit();
+            }
+            System.out.println("До сверки:");
+            compare(statsDao);
+
+            RollupReconciler.Report report = new RollupReconciler(HibernateUtil.getSessionFactory(), 1).reconcile();
+            System.out.println("Исправлено корзин: " + report.getDriftedBuckets()
+                    + ", расхождение пользователей: " + report.getDriftUsers());
+            System.out.println("После сверки:");
+            compare(statsDao);
+
+            System.out.println("====Все тесты пройдены====");
+        } catch (Exception e) {
+            System.err.println("Ошибка при тестировании сводок:");
+            e.printStackTrace();
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static void compare(UserStatsDao statsDao) {
+        LocalDate today = LocalDate.now();
+        for (Source source : Source.values()) {
+            System.out.println("  " + source + ":");
+            System.out.println("    возраст: " + statsDao.ageDistribution(source));
+            System.out.println("    регистрации: " + statsDao.signupsPerDay(today.minusDays(7), today, source));
+            System.out.println("    домены: " + statsDao.topEmailDomains(10, source));
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,487 @@
+package com.userservice.batch;
+
+import com.userservice.config.AppConfig;
+import com.userservice.config.EmbeddedDatabase;
+import com.userservice.entity.User;
+import com.userservice.exception.DatabaseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Пакетная обработка users вместо обхода getAllUsers() в одной сессии: таблица делится на диапазоны id
+// по userservice.batch.rangeSize, диапазоны обрабатываются параллельно (userservice.batch.parallelism потоков),
+// каждый в своей stateless-сессии порциями по userservice.batch.chunkSize строк с фиксацией после каждой.
+//
+// Контрольная точка диапазона (batch_job_checkpoint) сдвигается в транзакции порции: после сбоя запуск
+// с тем же именем задачи продолжает с первой незафиксированной порции, ни одна не обрабатывается дважды.
+// Строки, созданные после первого запуска за границей последнего диапазона, в задачу не попадают.
+// Скорость ограничена userservice.batch.maxRowsPerSecond на все потоки — задача не вытесняет
+// рабочую нагрузку основной БД. Одну задачу одновременно выполняет один узел (advisory-блокировка)
+public class BatchJobRunner {
+
+    private static final Logger logger = LogManager.getLogger(BatchJobRunner.class);
+
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    public static final long DEFAULT_RANGE_SIZE = 50_000;
+    public static final double DEFAULT_MAX_ROWS_PER_SECOND = 2_000;
+
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 1_000;
+    private static final long PROGRESS_INTERVAL_SECONDS = 10;
+
+    private final SessionFactory sessionFactory;
+    private final int parallelism;
+    private final int chunkSize;
+    private final long rangeSize;
+    private final double maxRowsPerSecond;
+
+    private volatile Progress progress;
+
+    public BatchJobRunner(SessionFactory sessionFactory, int parallelism, int chunkSize, long rangeSize,
+                          double maxRowsPerSecond) {
+        if (parallelism <= 0 || chunkSize <= 0 || rangeSize <= 0) {
+            throw new IllegalArgumentException("parallelism, chunkSize и rangeSize должны быть положительными");
+        }
+        this.sessionFactory = sessionFactory;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.rangeSize = rangeSize;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+    }
+
+    public static BatchJobRunner fromProperties(SessionFactory sessionFactory) {
+        return new BatchJobRunner(sessionFactory,
+                AppConfig.getInt("userservice.batch.parallelism", DEFAULT_PARALLELISM),
+                AppConfig.getInt("userservice.batch.chunkSize", DEFAULT_CHUNK_SIZE),
+                AppConfig.getLong("userservice.batch.rangeSize", DEFAULT_RANGE_SIZE),
+                AppConfig.getDouble("userservice.batch.maxRowsPerSecond", DEFAULT_MAX_ROWS_PER_SECOND));
+    }
+
+    // Прогресс текущего или последнего запуска; null до первого запуска
+    public Progress getProgress() {
+        return progress;
+    }
+
+    public Progress run(UserBatchJob job) {
+        String name = job.getName();
+        try (JobLock lock = JobLock.acquire(sessionFactory, name)) {
+            if (lock == null) {
+                throw new IllegalStateException("Задача " + name + " уже выполняется на другом узле");
+            }
+
+            List<Range> ranges = loadOrPlan(name);
+            Progress current = new Progress(name, ranges);
+            progress = current;
+            if (ranges.isEmpty()) {
+                logger.info("Задача {}: таблица пользователей пуста", name);
+                return current.finish();
+            }
+
+            List<Range> pending = new ArrayList<>();
+            for (Range range : ranges) {
+                if (!range.done) {
+                    pending.add(range);
+                }
+            }
+            logger.info("Задача {}: диапазонов {}, осталось {}, потоков {}, порция {}, не больше {} строк/с",
+                    name, ranges.size(), pending.size(), Math.min(parallelism, pending.size()), chunkSize,
+                    maxRowsPerSecond > 0 ? maxRowsPerSecond : "∞");
+
+            runRanges(job, pending, current);
+            current.finish();
+
+            if (current.getFailedRanges() == 0) {
+                deleteCheckpoints(name);
+                logger.info("Задача {} завершена: {}", name, current);
+            } else {
+                logger.error("Задача {} завершена с ошибками: {}. Повторный запуск продолжит с контрольных точек",
+                        name, current);
+            }
+            return current;
+        }
+    }
+
+    private void runRanges(UserBatchJob job, List<Range> pending, Progress current) {
+        Throttle throttle = new Throttle(maxRowsPerSecond);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(parallelism, pending.size()), runnable -> {
+            Thread thread = new Thread(runnable, "batch-" + job.getName() + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-" + job.getName() + "-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> logger.info("Задача {}: {}", job.getName(), current),
+                PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>(pending.size());
+            for (Range range : pending) {
+                futures.add(workers.submit(() -> {
+                    processRange(job, range, throttle, current);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    current.failedRanges.increment();
+                    logger.error("Задача {}: диапазон {} не обработан", job.getName(), pending.get(i), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Пакетная задача " + job.getName() + " прервана", e);
+        } finally {
+            workers.shutdownNow();
+            reporter.shutdownNow();
+        }
+    }
+
+    private void processRange(UserBatchJob job, Range range, Throttle throttle, Progress current)
+            throws InterruptedException {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            while (!range.done) {
+                // До начала транзакции: ожидание не держит ее открытой
+                throttle.acquire(chunkSize);
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        processChunk(session, job, range, current);
+                        break;
+                    } catch (RuntimeException e) {
+                        if (attempt >= MAX_CHUNK_ATTEMPTS) {
+                            throw e;
+                        }
+                        logger.warn("Задача {}: порция после id {} не обработана, попытка {} из {}",
+                                job.getName(), range.lastId, attempt, MAX_CHUNK_ATTEMPTS, e);
+                        session.close();
+                        TimeUnit.MILLISECONDS.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                        session = sessionFactory.openStatelessSession();
+                    }
+                }
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    // Порция и сдвиг контрольной точки фиксируются вместе
+    private void processChunk(StatelessSession session, UserBatchJob job, Range range, Progress current) {
+        Transaction transaction = session.beginTransaction();
+        try {
+            List<User> chunk = session.createNamedQuery(User.FIND_ID_RANGE, User.class)
+                    .setParameter("from", range.lastId + 1)
+                    .setParameter("to", range.end)
+                    .setMaxResults(chunkSize)
+                    .list();
+
+            int modified = chunk.isEmpty() ? 0 : job.process(session, chunk);
+            long lastId = chunk.isEmpty() ? range.end - 1 : chunk.get(chunk.size() - 1).getId();
+            boolean done = chunk.size() < chunkSize;
+
+            session.createNativeQuery("UPDATE batch_job_checkpoint SET last_id = :lastId, "
+                            + "processed = processed + :processed, modified = modified + :modified, done = :done, "
+                            + "updated_at = :now WHERE job = :job AND range_start = :start")
+                    .setParameter("lastId", lastId)
+                    .setParameter("processed", (long) chunk.size())
+                    .setParameter("modified", (long) modified)
+                    .setParameter("done", done)
+                    .setParameter("now", LocalDateTime.now())
+                    .setParameter("job", job.getName())
+                    .setParameter("start", range.start)
+                    .executeUpdate();
+            transaction.commit();
+
+            range.lastId = lastId;
+            range.done = done;
+            current.record(chunk.size(), modified, done);
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    // Сохраненные контрольные точки прерванного запуска или новый план по текущим границам id
+    private List<Range> loadOrPlan(String job) {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = session.createNativeQuery("SELECT range_start, range_end, last_id, processed, "
+                            + "modified, done FROM batch_job_checkpoint WHERE job = :job ORDER BY range_start")
+                    .setParameter("job", job)
+                    .list();
+
+            List<Range> ranges = new ArrayList<>();
+            if (!rows.isEmpty()) {
+                for (Object[] row : rows) {
+                    ranges.add(new Range(((Number) row[0]).longValue(), ((Number) row[1]).longValue(),
+                            ((Number) row[2]).longValue(), ((Number) row[3]).longValue(),
+                            ((Number) row[4]).longValue(), (Boolean) row[5]));
+                }
+                logger.info("Задача {}: продолжение прерванного запуска с контрольных точек", job);
+                transaction.commit();
+                return ranges;
+            }
+
+            Object[] bounds = session.createNamedQuery(User.FIND_ID_BOUNDS, Object[].class).uniqueResult();
+            if (bounds == null || bounds[0] == null) {
+                transaction.commit();
+                return ranges;
+            }
+            long min = ((Number) bounds[0]).longValue();
+            long max = ((Number) bounds[1]).longValue();
+            for (long start = min; start <= max; start += rangeSize) {
+                ranges.add(new Range(start, Math.min(start + rangeSize, max + 1), start - 1, 0, 0, false));
+            }
+
+            session.doWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement("INSERT INTO batch_job_checkpoint "
+                        + "(job, range_start, range_end, last_id) VALUES (?, ?, ?, ?)")) {
+                    for (Range range : ranges) {
+                        statement.setString(1, job);
+                        statement.setLong(2, range.start);
+                        statement.setLong(3, range.end);
+                        statement.setLong(4, range.lastId);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            });
+            transaction.commit();
+            return ranges;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    private void deleteCheckpoints(String job) {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            session.createNativeQuery("DELETE FROM batch_job_checkpoint WHERE job = :job")
+                    .setParameter("job", job)
+                    .executeUpdate();
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    // Диапазон [start, end); поля меняет только поток, обрабатывающий диапазон
+    private static final class Range {
+        final long start;
+        final long end;
+        final long initialProcessed;
+        final long initialModified;
+        long lastId;
+        boolean done;
+
+        Range(long start, long end, long lastId, long processed, long modified, boolean done) {
+            this.start = start;
+            this.end = end;
+            this.lastId = lastId;
+            this.initialProcessed = processed;
+            this.initialModified = modified;
+            this.done = done;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + start + ", " + end + ")";
+        }
+    }
+
+    // Сессионная advisory-блокировка на отдельном соединении из пула: держится весь запуск,
+    // не открывая транзакцию. Во встроенной H2 узел один, блокировка не нужна
+    private static final class JobLock implements AutoCloseable {
+        private final ConnectionProvider provider;
+        private final Connection connection;
+        private final String job;
+
+        private JobLock(ConnectionProvider provider, Connection connection, String job) {
+            this.provider = provider;
+            this.connection = connection;
+            this.job = job;
+        }
+
+        // null — задачу уже выполняет другой узел
+        static JobLock acquire(SessionFactory sessionFactory, String job) {
+            ConnectionProvider provider = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+                    .getService(ConnectionProvider.class);
+            Connection connection = null;
+            try {
+                connection = provider.getConnection();
+                if (EmbeddedDatabase.isEmbedded(connection)) {
+                    return new JobLock(provider, connection, null);
+                }
+                connection.setAutoCommit(true);
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT pg_try_advisory_lock(hashtext(?))")) {
+                    statement.setString(1, "batch_job:" + job);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        if (resultSet.next() && resultSet.getBoolean(1)) {
+                            return new JobLock(provider, connection, job);
+                        }
+                    }
+                }
+                provider.closeConnection(connection);
+                return null;
+            } catch (SQLException e) {
+                if (connection != null) {
+                    closeQuietly(provider, connection);
+                }
+                throw new DatabaseException("Не удалось захватить блокировку задачи " + job, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (job != null) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT pg_advisory_unlock(hashtext(?))")) {
+                    statement.setString(1, "batch_job:" + job);
+                    statement.execute();
+                } catch (SQLException e) {
+                    logger.warn("Не удалось снять блокировку задачи {}", job, e);
+                }
+            }
+            closeQuietly(provider, connection);
+        }
+
+        private static void closeQuietly(ConnectionProvider provider, Connection connection) {
+            try {
+                provider.closeConnection(connection);
+            } catch (SQLException e) {
+                logger.warn("Ошибка при возврате соединения в пул", e);
+            }
+        }
+    }
+
+    // Прогресс запуска: диапазоны и строки с учетом прерванных запусков, скорость — только этого запуска
+    public static final class Progress {
+        private final String job;
+        private final int totalRanges;
+        private final long startNanos = System.nanoTime();
+        private final long initialProcessed;
+        private final LongAdder doneRanges = new LongAdder();
+        private final LongAdder failedRanges = new LongAdder();
+        private final LongAdder processedRows = new LongAdder();
+        private final LongAdder modifiedRows = new LongAdder();
+        private volatile long finishNanos;
+
+        Progress(String job, List<Range> ranges) {
+            this.job = job;
+            this.totalRanges = ranges.size();
+            long processed = 0;
+            for (Range range : ranges) {
+                processed += range.initialProcessed;
+                modifiedRows.add(range.initialModified);
+                if (range.done) {
+                    doneRanges.increment();
+                }
+            }
+            this.initialProcessed = processed;
+            processedRows.add(processed);
+        }
+
+        void record(int processed, int modified, boolean rangeDone) {
+            processedRows.add(processed);
+            modifiedRows.add(modified);
+            if (rangeDone) {
+                doneRanges.increment();
+            }
+        }
+
+        Progress finish() {
+            finishNanos = System.nanoTime();
+            return this;
+        }
+
+        public String getJob() {
+            return job;
+        }
+
+        public int getTotalRanges() {
+            return totalRanges;
+        }
+
+        public long getDoneRanges() {
+            return doneRanges.sum();
+        }
+
+        public long getFailedRanges() {
+            return failedRanges.sum();
+        }
+
+        public long getProcessedRows() {
+            return processedRows.sum();
+        }
+
+        public long getModifiedRows() {
+            return modifiedRows.sum();
+        }
+
+        public long getElapsedMillis() {
+            long end = finishNanos != 0 ? finishNanos : System.nanoTime();
+            return (end - startNanos) / 1_000_000;
+        }
+
+        public long getRowsPerSecond() {
+            long millis = getElapsedMillis();
+            return millis > 0 ? (getProcessedRows() - initialProcessed) * 1000 / millis : 0;
+        }
+
+        public boolean isFinished() {
+            return finishNanos != 0;
+        }
+
+        @Override
+        public String toString() {
+            return "диапазонов " + getDoneRanges() + "/" + totalRanges
+                    + (getFailedRanges() > 0 ? " (с ошибкой " + getFailedRanges() + ")" : "")
+                    + ", строк " + getProcessedRows() + ", изменено " + getModifiedRows()
+                    + ", " + getRowsPerSecond() + " строк/с, " + getElapsedMillis() + " мс";
+        }
+    }
+}
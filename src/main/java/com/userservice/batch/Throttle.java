@@ -0,0 +1,32 @@
+package com.userservice.batch;
+
+import java.util.concurrent.TimeUnit;
+
+// Ограничение скорости обработки, общее для всех потоков задачи: строки выдаются равномерно,
+// без всплесков после простоя. Вызывается до начала транзакции порции, чтобы ожидание не держало ее открытой
+final class Throttle {
+
+    private final long nanosPerPermit;
+    private long nextFreeNanos = System.nanoTime();
+
+    // permitsPerSecond <= 0 — без ограничения
+    Throttle(double permitsPerSecond) {
+        this.nanosPerPermit = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+    }
+
+    void acquire(int permits) throws InterruptedException {
+        if (nanosPerPermit == 0 || permits <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long start = Math.max(nextFreeNanos, now);
+            nextFreeNanos = start + permits * nanosPerPermit;
+            waitNanos = start - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.userservice.batch;
+
+import com.userservice.entity.User;
+import org.hibernate.StatelessSession;
+
+import java.util.List;
+
+// Пакетная задача над users для BatchJobRunner. process вызывается для каждой порции строк
+// в транзакции этой порции и из нескольких потоков сразу: состояние задачи должно быть потокобезопасным.
+// Stateless-сессия не вызывает @PreUpdate: изменяющая задача сама ставит updatedAt
+public interface UserBatchJob {
+
+    // Ключ контрольных точек: запуск с тем же именем продолжает прерванный
+    String getName();
+
+    // Возвращает число измененных строк порции
+    int process(StatelessSession session, List<User> chunk);
+}
@@ -0,0 +1,203 @@
+package com.userservice.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Подписка узла на канал user_invalidation через отдельное соединение (не из пула Hibernate).
+// Уведомления, пришедшие вместе, обрабатываются одной пачкой: повторы id схлопываются,
+// а слишком большая пачка заменяется полным сбросом кэша.
+// Пока соединения нет, кэш выключен; после переподключения он начинает работу пустым
+public class InvalidationListener implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(InvalidationListener.class);
+
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+    private static final long HEALTH_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1_000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30_000;
+
+    private final Supplier<SessionFactory> sessionFactory;
+    private final UserCache cache;
+    private final int fullFlushThreshold;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile Connection connection;
+
+    private final LongAdder notifications = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    public InvalidationListener(Supplier<SessionFactory> sessionFactory, UserCache cache, int fullFlushThreshold) {
+        this.sessionFactory = sessionFactory;
+        this.cache = cache;
+        this.fullFlushThreshold = fullFlushThreshold;
+        this.thread = new Thread(this::run, "user-invalidation-listener");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        long reconnectDelay = MIN_RECONNECT_DELAY_MILLIS;
+
+        while (running) {
+            try {
+                connection = connect();
+                // Уведомления после LISTEN уже не потеряются — теперь можно включать кэш
+                cache.setEnabled(true);
+                reconnectDelay = MIN_RECONNECT_DELAY_MILLIS;
+                logger.info("Подписка на {} установлена, кэш пользователей включен", UserInvalidation.CHANNEL);
+
+                listen(connection);
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                logger.error("Подписка на {} потеряна, кэш пользователей выключен до переподключения: {}",
+                        UserInvalidation.CHANNEL, e.getMessage());
+            } finally {
+                cache.setEnabled(false);
+                closeConnection();
+            }
+
+            if (running) {
+                reconnects.increment();
+                sleep(reconnectDelay);
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+    }
+
+    // getProperties() SessionFactory маскирует логин и пароль, исходные значения — в ConfigurationService
+    private Connection connect() throws SQLException {
+        // getSettings() возвращает Map без параметров типа
+        @SuppressWarnings("unchecked")
+        Map<String, Object> properties = sessionFactory.get().unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConfigurationService.class).getSettings();
+        Connection connection = DriverManager.getConnection((String) properties.get(Environment.URL),
+                (String) properties.get(Environment.USER), (String) properties.get(Environment.PASS));
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + UserInvalidation.CHANNEL);
+        }
+        return connection;
+    }
+
+    private void listen(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long lastActivity = System.nanoTime();
+
+        while (running) {
+            PGNotification[] received = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+            if (received != null && received.length > 0) {
+                apply(received);
+                lastActivity = System.nanoTime();
+            } else if (System.nanoTime() - lastActivity > HEALTH_CHECK_INTERVAL_NANOS) {
+                // Оборванное соединение без трафика само не обнаруживается
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT 1");
+                }
+                lastActivity = System.nanoTime();
+            }
+        }
+    }
+
+    private void apply(PGNotification[] received) {
+        notifications.add(received.length);
+        batches.increment();
+
+        if (received.length > fullFlushThreshold) {
+            cache.invalidateAll();
+            return;
+        }
+
+        Set<String> distinct = new HashSet<>();
+        for (PGNotification notification : received) {
+            String payload = notification.getParameter();
+            if (UserInvalidation.ALL.equals(payload)) {
+                cache.invalidateAll();
+                return;
+            }
+            distinct.add(payload);
+        }
+
+        for (String payload : distinct) {
+            int separator = payload.indexOf(':');
+            try {
+                Long id = Long.valueOf(separator >= 0 ? payload.substring(0, separator) : payload);
+                String email = separator >= 0 && separator + 1 < payload.length() ? payload.substring(separator + 1) : null;
+                cache.invalidate(id, email);
+            } catch (NumberFormatException e) {
+                logger.warn("Некорректное уведомление {}: {}, кэш сброшен полностью", UserInvalidation.CHANNEL, payload);
+                cache.invalidateAll();
+                return;
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private void closeConnection() {
+        Connection current = connection;
+        connection = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (SQLException e) {
+                logger.debug("Ошибка при закрытии соединения подписки", e);
+            }
+        }
+    }
+
+    public long getNotifications() {
+        return notifications.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeConnection();
+        logger.info("Подписка на {} остановлена: уведомлений={}, пачек={}, переподключений={}",
+                UserInvalidation.CHANNEL, getNotifications(), getBatches(), getReconnects());
+    }
+}
@@ -0,0 +1,175 @@
+package com.userservice.cache;
+
+import com.userservice.codec.UserCodec;
+import com.userservice.entity.User;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Кэш пользователей в памяти узла. Значения хранятся в формате UserCodec: каждое чтение получает
+// собственный экземпляр User, и изменение его вызывающим кодом не портит кэш.
+// Email указывает на id, а не на запись: после смены email старый ключ устаревает безопасно,
+// потому что найденная по id запись сверяется с запрошенным email.
+// Кэш выключен, пока нет подписки на уведомления об изменениях — иначе он может отдавать устаревшие данные
+public class UserCache {
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<Long, byte[]> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> idByEmail = new ConcurrentHashMap<>();
+
+    // Растет при каждой инвалидации: запись, загруженная до нее, в кэш не попадет
+    private final AtomicLong epoch = new AtomicLong();
+    private volatile boolean enabled;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder fullFlushes = new LongAdder();
+
+    public UserCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries должен быть положительным числом");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Любое переключение сбрасывает содержимое: пока кэш был выключен, уведомления могли быть пропущены
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        invalidateAll();
+    }
+
+    public long epoch() {
+        return epoch.get();
+    }
+
+    public User getById(Long id) {
+        byte[] encoded = enabled ? byId.get(id) : null;
+        if (encoded == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return UserCodec.decode(ByteBuffer.wrap(encoded));
+    }
+
+    public Long idForEmail(String canonicalEmail) {
+        return enabled ? idByEmail.get(canonicalEmail) : null;
+    }
+
+    // loadedAtEpoch — значение epoch() до чтения из БД
+    public void put(User user, long loadedAtEpoch) {
+        if (!enabled || user.getId() == null || epoch.get() != loadedAtEpoch) {
+            return;
+        }
+        if (byId.size() >= maxEntries) {
+            evictSome();
+        }
+
+        byte[] encoded = UserCodec.encode(user).array();
+        byId.put(user.getId(), encoded);
+        if (user.getEmail() != null) {
+            idByEmail.put(user.getEmail(), user.getId());
+        }
+
+        // Инвалидация между проверкой и записью: убрать то, что только что положили
+        if (epoch.get() != loadedAtEpoch) {
+            byId.remove(user.getId(), encoded);
+        }
+    }
+
+    public void invalidate(Long id, String email) {
+        epoch.incrementAndGet();
+        invalidations.increment();
+        if (id != null) {
+            byId.remove(id);
+        }
+        if (email != null) {
+            idByEmail.remove(email);
+        }
+    }
+
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        fullFlushes.increment();
+        byId.clear();
+        idByEmail.clear();
+    }
+
+    // Вытесняется примерно десятая часть записей в порядке обхода таблицы
+    private void evictSome() {
+        int toEvict = Math.max(1, maxEntries / 10);
+        Iterator<Long> iterator = byId.keySet().iterator();
+        while (toEvict-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        if (idByEmail.size() > maxEntries * 2) {
+            idByEmail.clear();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(enabled, byId.size(), hits.sum(), misses.sum(), invalidations.sum(), fullFlushes.sum());
+    }
+
+    public static final class Stats {
+        private final boolean enabled;
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long invalidations;
+        private final long fullFlushes;
+
+        Stats(boolean enabled, int size, long hits, long misses, long invalidations, long fullFlushes) {
+            this.enabled = enabled;
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.invalidations = invalidations;
+            this.fullFlushes = fullFlushes;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public long getFullFlushes() {
+            return fullFlushes;
+        }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{enabled=%s, size=%d, hits=%d, misses=%d, hitRate=%.2f, invalidations=%d, "
+                    + "fullFlushes=%d}", enabled, size, hits, misses, getHitRate(), invalidations, fullFlushes);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.userservice.cache;
+
+import com.userservice.entity.User;
+import org.hibernate.Session;
+import org.hibernate.SharedSessionContract;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// Уведомление других узлов об изменении пользователя: pg_notify в транзакции записи.
+// PostgreSQL доставляет его только после фиксации и схлопывает одинаковые уведомления одной транзакции
+public final class UserInvalidation {
+
+    public static final String CHANNEL = "user_invalidation";
+    static final String ALL = "*";
+
+    private UserInvalidation() {
+    }
+
+    // Полезная нагрузка: "<id>:<email>". Подходит и stateless-сессия пакетных задач
+    public static void publish(SharedSessionContract session, User user) {
+        notify(session, user.getId() + ":" + (user.getEmail() != null ? user.getEmail() : ""));
+    }
+
+    public static void publishAll(Session session) {
+        notify(session, ALL);
+    }
+
+    // Для удалений в обход DAO, например архивирования секции users
+    public static void publishAll(Connection connection) throws SQLException {
+        notify(connection, ALL);
+    }
+
+    // pg_notify возвращает void, поэтому вызов идет через JDBC, а не через native query Hibernate
+    private static void notify(SharedSessionContract session, String payload) {
+        session.doWork(connection -> notify(connection, payload));
+    }
+
+    private static void notify(Connection connection, String payload) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            statement.setString(1, CHANNEL);
+            statement.setString(2, payload);
+            statement.execute();
+        }
+    }
+}
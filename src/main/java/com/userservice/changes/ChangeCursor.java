@@ -0,0 +1,75 @@
+package com.userservice.changes;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.Objects;
+
+// Позиция в ленте изменений: (время изменения, id) последней выданной записи.
+// Снаружи — непрозрачная строка "<микросекунды эпохи UTC>-<id>": точность TIMESTAMP в БД — микросекунды
+public final class ChangeCursor {
+
+    public static final ChangeCursor START = new ChangeCursor(LocalDateTime.of(1970, 1, 1, 0, 0), 0);
+
+    static final Comparator<ChangeCursor> ORDER =
+            Comparator.comparing(ChangeCursor::getChangedAt).thenComparingLong(ChangeCursor::getId);
+
+    private final LocalDateTime changedAt;
+    private final long id;
+
+    public ChangeCursor(LocalDateTime changedAt, long id) {
+        this.changedAt = changedAt.truncatedTo(ChronoUnit.MICROS);
+        this.id = id;
+    }
+
+    public static ChangeCursor parse(String value) {
+        int separator = value.indexOf('-');
+        try {
+            if (separator <= 0) {
+                throw new NumberFormatException();
+            }
+            long micros = Long.parseLong(value.substring(0, separator));
+            long id = Long.parseLong(value.substring(separator + 1));
+            if (micros < 0 || id < 0) {
+                throw new NumberFormatException();
+            }
+            LocalDateTime changedAt = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                    (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+            return new ChangeCursor(changedAt, id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный курсор изменений: " + value);
+        }
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    static ChangeCursor max(ChangeCursor first, ChangeCursor second) {
+        return ORDER.compare(first, second) >= 0 ? first : second;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ChangeCursor that = (ChangeCursor) o;
+        return id == that.id && changedAt.equals(that.changedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(changedAt, id);
+    }
+
+    @Override
+    public String toString() {
+        long micros = changedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + changedAt.getNano() / 1_000;
+        return micros + "-" + id;
+    }
+}
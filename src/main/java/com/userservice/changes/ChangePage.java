@@ -0,0 +1,30 @@
+package com.userservice.changes;
+
+import java.util.List;
+
+// Страница ленты: изменения по возрастанию (время, id) и курсор для следующего запроса.
+// hasMore == false — лента прочитана до текущей границы; курсор тогда указывает на саму границу
+public final class ChangePage {
+
+    private final List<UserChange> changes;
+    private final ChangeCursor next;
+    private final boolean hasMore;
+
+    ChangePage(List<UserChange> changes, ChangeCursor next, boolean hasMore) {
+        this.changes = changes;
+        this.next = next;
+        this.hasMore = hasMore;
+    }
+
+    public List<UserChange> getChanges() {
+        return changes;
+    }
+
+    public ChangeCursor getNext() {
+        return next;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
@@ -0,0 +1,44 @@
+package com.userservice.changes;
+
+import com.userservice.entity.User;
+
+import java.time.LocalDateTime;
+
+// Элемент ленты изменений: текущее состояние пользователя или надгробие удаленного (user == null)
+public final class UserChange {
+
+    private final long userId;
+    private final LocalDateTime changedAt;
+    private final User user;
+
+    UserChange(long userId, LocalDateTime changedAt, User user) {
+        this.userId = userId;
+        this.changedAt = changedAt;
+        this.user = user;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public boolean isDeleted() {
+        return user == null;
+    }
+
+    ChangeCursor cursor() {
+        return new ChangeCursor(changedAt, userId);
+    }
+
+    @Override
+    public String toString() {
+        return "UserChange{userId=" + userId + ", changedAt=" + changedAt + (isDeleted() ? ", deleted" : "") + '}';
+    }
+}
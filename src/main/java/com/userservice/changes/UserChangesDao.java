@@ -0,0 +1,141 @@
+package com.userservice.changes;
+
+import com.userservice.config.AppConfig;
+import com.userservice.entity.User;
+import com.userservice.util.HibernateUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Лента изменений для зеркал users у потребителей: строки users и надгробия user_tombstones по возрастанию
+// (время изменения, id), постранично по курсору. Стоимость запроса — O(страницы), а не O(таблицы).
+//
+// Время изменения назначается до фиксации, поэтому транзакция с меньшим временем может зафиксироваться
+// позже той, что уже выдана. Лента не отдает изменения моложе userservice.changes.settleMillis:
+// окно должно превышать самую долгую пишущую транзакцию плюс расхождение часов узлов.
+// Строка, измененная во время чтения страниц, уходит в конец ленты и будет выдана снова — ни одно
+// состояние не теряется. Надгробия хранятся userservice.changes.tombstoneRetentionDays дней:
+// курсор старше этого срока требует полной синхронизации заново
+public class UserChangesDao {
+
+    private static final Logger logger = LogManager.getLogger(UserChangesDao.class);
+
+    public static final long SETTLE_MILLIS = AppConfig.getLong("userservice.changes.settleMillis", 5_000);
+    public static final int TOMBSTONE_RETENTION_DAYS =
+            AppConfig.getInt("userservice.changes.tombstoneRetentionDays", 30);
+
+    private final Supplier<SessionFactory> sessionFactory;
+
+    public UserChangesDao() {
+        this.sessionFactory = HibernateUtil::getSessionFactory;
+    }
+
+    public UserChangesDao(SessionFactory sessionFactory) {
+        this.sessionFactory = () -> sessionFactory;
+    }
+
+    public ChangePage changesSince(ChangeCursor cursor, int limit) {
+        ChangeCursor horizon = new ChangeCursor(LocalDateTime.now().minus(SETTLE_MILLIS, ChronoUnit.MILLIS),
+                Long.MAX_VALUE);
+
+        Session session = null;
+        try {
+            session = sessionFactory.get().openSession();
+            session.setDefaultReadOnly(true);
+
+            List<User> users = session.createNamedQuery(User.FIND_CHANGED_AFTER, User.class)
+                    .setParameter("at", cursor.getChangedAt())
+                    .setParameter("id", cursor.getId())
+                    .setParameter("horizon", horizon.getChangedAt())
+                    .setMaxResults(limit + 1)
+                    .list();
+            @SuppressWarnings("unchecked")
+            List<Object[]> tombstones = session.createNativeQuery(
+                            "SELECT user_id, deleted_at FROM user_tombstones WHERE deleted_at >= :at "
+                                    + "AND (deleted_at > :at OR user_id > :id) AND deleted_at <= :horizon "
+                                    + "ORDER BY deleted_at, user_id")
+                    .setParameter("at", cursor.getChangedAt())
+                    .setParameter("id", cursor.getId())
+                    .setParameter("horizon", horizon.getChangedAt())
+                    .setMaxResults(limit + 1)
+                    .list();
+
+            // Слияние двух упорядоченных потоков; по limit + 1 из каждого достаточно, чтобы знать hasMore
+            List<UserChange> changes = new ArrayList<>(Math.min(limit, users.size() + tombstones.size()));
+            int u = 0;
+            int t = 0;
+            while (changes.size() < limit && (u < users.size() || t < tombstones.size())) {
+                UserChange live = u < users.size() ? liveChange(users.get(u)) : null;
+                UserChange deleted = t < tombstones.size() ? tombstone(tombstones.get(t)) : null;
+                if (deleted == null
+                        || (live != null && ChangeCursor.ORDER.compare(live.cursor(), deleted.cursor()) < 0)) {
+                    changes.add(live);
+                    u++;
+                } else {
+                    changes.add(deleted);
+                    t++;
+                }
+            }
+            boolean hasMore = u < users.size() || t < tombstones.size();
+
+            ChangeCursor next = changes.isEmpty() ? cursor : changes.get(changes.size() - 1).cursor();
+            if (!hasMore) {
+                // Все до границы выдано: курсор переходит на нее, и у редко меняющейся таблицы
+                // он не устаревает за срок хранения надгробий
+                next = ChangeCursor.max(next, horizon);
+            }
+            logger.debug("Лента изменений после {}: {} записей, следующий курсор {}", cursor, changes.size(), next);
+            return new ChangePage(changes, next, hasMore);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    // Граница, раньше которой надгробия могли быть удалены
+    public LocalDateTime oldestAvailable() {
+        return LocalDateTime.now().minusDays(TOMBSTONE_RETENTION_DAYS);
+    }
+
+    public int purgeTombstones() {
+        Session session = null;
+        Transaction transaction = null;
+        try {
+            session = sessionFactory.get().openSession();
+            transaction = session.beginTransaction();
+            int purged = session.createNativeQuery("DELETE FROM user_tombstones WHERE deleted_at < :before")
+                    .setParameter("before", oldestAvailable())
+                    .executeUpdate();
+            transaction.commit();
+            logger.info("Удалено надгробий старше {} дней: {}", TOMBSTONE_RETENTION_DAYS, purged);
+            return purged;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.getStatus().canRollback()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private static UserChange liveChange(User user) {
+        return new UserChange(user.getId(), user.getUpdatedAt(), user);
+    }
+
+    private static UserChange tombstone(Object[] row) {
+        return new UserChange(((Number) row[0]).longValue(), ((Timestamp) row[1]).toLocalDateTime(), null);
+    }
+}
@@ -0,0 +1,41 @@
+package com.userservice.changes;
+
+import org.hibernate.Session;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+// Надгробия удаленных пользователей в user_tombstones: без них потребители ленты изменений
+// (см. UserChangesDao) не узнали бы об удалении строки. Пишутся в транзакции удаления
+// и тем же часами, что и users.updated_at (часы JVM), поэтому упорядочены вместе с обновлениями
+public final class UserTombstones {
+
+    private UserTombstones() {
+    }
+
+    public static void deleted(Session session, Long userId) {
+        session.createNativeQuery("INSERT INTO user_tombstones (user_id, deleted_at) VALUES (:userId, :deletedAt)")
+                .setParameter("userId", userId)
+                .setParameter("deletedAt", LocalDateTime.now())
+                .executeUpdate();
+    }
+
+    // До DELETE FROM users: надгробие получает каждая строка
+    public static void allDeleted(Session session) {
+        session.createNativeQuery("INSERT INTO user_tombstones (user_id, deleted_at) SELECT id, :deletedAt FROM users")
+                .setParameter("deletedAt", LocalDateTime.now())
+                .executeUpdate();
+    }
+
+    // Для удалений в обход DAO, например архивирования секции users
+    public static int allDeleted(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO user_tombstones (user_id, deleted_at) SELECT id, ? FROM " + table)) {
+            statement.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            return statement.executeUpdate();
+        }
+    }
+}
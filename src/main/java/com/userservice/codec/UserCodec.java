@@ -0,0 +1,319 @@
+package com.userservice.codec;
+
+import com.userservice.entity.User;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Компактное двоичное представление User для кэшей, снимков и сообщений.
+//
+// Формат записи (версия 2):
+//   byte    версия схемы
+//   varint  длина тела в байтах
+//   byte    битовая маска null-полей (NULL_*)
+//   varint  id
+//   varint  длина + UTF-8  name
+//   varint  длина + UTF-8  email
+//   zigzag  age
+//   zigzag  createdAt: секунды эпохи (UTC); varint наносекунды
+//   varint  version
+//   zigzag  updatedAt: секунды эпохи (UTC); varint наносекунды — с версии 2
+// Отсутствующие (null) поля не пишутся. Новые поля добавляются в конец тела со следующей версией:
+// старый декодер читает известные ему поля и пропускает остаток по длине тела
+public final class UserCodec {
+
+    public static final byte VERSION = 2;
+
+    private static final int NULL_ID = 1;
+    private static final int NULL_NAME = 1 << 1;
+    private static final int NULL_EMAIL = 1 << 2;
+    private static final int NULL_AGE = 1 << 3;
+    private static final int NULL_CREATED_AT = 1 << 4;
+    private static final int NULL_VERSION = 1 << 5;
+    private static final int NULL_UPDATED_AT = 1 << 6;
+
+    private UserCodec() {
+    }
+
+    // Точный размер записи: позволяет выделить буфер один раз
+    public static int encodedSize(User user) {
+        int bodySize = bodySize(user);
+        return 1 + varintSize(bodySize) + bodySize;
+    }
+
+    // Пишет запись с текущей позиции буфера; при нехватке места — BufferOverflowException,
+    // позиция буфера в этом случае не меняется
+    public static void encode(User user, ByteBuffer buffer) {
+        int bodySize = bodySize(user);
+        if (buffer.remaining() < 1 + varintSize(bodySize) + bodySize) {
+            throw new BufferOverflowException();
+        }
+
+        buffer.put(VERSION);
+        writeVarint(buffer, bodySize);
+        buffer.put((byte) nullMask(user));
+
+        if (user.getId() != null) {
+            writeVarint(buffer, user.getId());
+        }
+        if (user.getName() != null) {
+            writeString(buffer, user.getName());
+        }
+        if (user.getEmail() != null) {
+            writeString(buffer, user.getEmail());
+        }
+        if (user.getAge() != null) {
+            writeVarint(buffer, zigzag(user.getAge()));
+        }
+        if (user.getCreatedAt() != null) {
+            writeTimestamp(buffer, user.getCreatedAt());
+        }
+        if (user.getVersion() != null) {
+            writeVarint(buffer, user.getVersion());
+        }
+        if (user.getUpdatedAt() != null) {
+            writeTimestamp(buffer, user.getUpdatedAt());
+        }
+    }
+
+    public static ByteBuffer encode(User user) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(user));
+        encode(user, buffer);
+        return buffer.flip();
+    }
+
+    // Читает одну запись с текущей позиции; после вызова позиция стоит сразу за записью
+    public static User decode(ByteBuffer buffer) {
+        try {
+            byte version = buffer.get();
+            if (version < 1) {
+                throw new IllegalArgumentException("Некорректная версия записи User: " + version);
+            }
+            int bodySize = (int) readVarint(buffer);
+            int end = buffer.position() + bodySize;
+            if (bodySize < 1 || end > buffer.limit()) {
+                throw new IllegalArgumentException("Некорректная длина записи User: " + bodySize);
+            }
+
+            int mask = buffer.get();
+            User user = new User();
+            if ((mask & NULL_ID) == 0) {
+                user.setId(readVarint(buffer));
+            }
+            if ((mask & NULL_NAME) == 0) {
+                user.setName(readString(buffer));
+            }
+            if ((mask & NULL_EMAIL) == 0) {
+                user.setEmail(readString(buffer));
+            }
+            if ((mask & NULL_AGE) == 0) {
+                user.setAge((int) unzigzag(readVarint(buffer)));
+            }
+            if ((mask & NULL_CREATED_AT) == 0) {
+                user.setCreatedAt(readTimestamp(buffer));
+            }
+            if ((mask & NULL_VERSION) == 0) {
+                user.setVersion(readVarint(buffer));
+            }
+            // В записях версии 1 поля нет, и бит маски в них всегда сброшен
+            if (version >= 2 && (mask & NULL_UPDATED_AT) == 0) {
+                user.setUpdatedAt(readTimestamp(buffer));
+            }
+
+            if (buffer.position() > end) {
+                throw new IllegalArgumentException("Поля записи User выходят за длину тела");
+            }
+            // Поля более новых версий пропускаются
+            buffer.position(end);
+            return user;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Запись User обрезана", e);
+        }
+    }
+
+    private static int nullMask(User user) {
+        int mask = 0;
+        if (user.getId() == null) {
+            mask |= NULL_ID;
+        }
+        if (user.getName() == null) {
+            mask |= NULL_NAME;
+        }
+        if (user.getEmail() == null) {
+            mask |= NULL_EMAIL;
+        }
+        if (user.getAge() == null) {
+            mask |= NULL_AGE;
+        }
+        if (user.getCreatedAt() == null) {
+            mask |= NULL_CREATED_AT;
+        }
+        if (user.getVersion() == null) {
+            mask |= NULL_VERSION;
+        }
+        if (user.getUpdatedAt() == null) {
+            mask |= NULL_UPDATED_AT;
+        }
+        return mask;
+    }
+
+    private static int bodySize(User user) {
+        int size = 1;
+        if (user.getId() != null) {
+            size += varintSize(user.getId());
+        }
+        if (user.getName() != null) {
+            size += stringSize(user.getName());
+        }
+        if (user.getEmail() != null) {
+            size += stringSize(user.getEmail());
+        }
+        if (user.getAge() != null) {
+            size += varintSize(zigzag(user.getAge()));
+        }
+        if (user.getCreatedAt() != null) {
+            size += timestampSize(user.getCreatedAt());
+        }
+        if (user.getVersion() != null) {
+            size += varintSize(user.getVersion());
+        }
+        if (user.getUpdatedAt() != null) {
+            size += timestampSize(user.getUpdatedAt());
+        }
+        return size;
+    }
+
+    // ---- Время: секунды эпохи (UTC, zigzag) и наносекунды ----
+
+    private static void writeTimestamp(ByteBuffer buffer, LocalDateTime value) {
+        writeVarint(buffer, zigzag(value.toEpochSecond(ZoneOffset.UTC)));
+        writeVarint(buffer, value.getNano());
+    }
+
+    private static LocalDateTime readTimestamp(ByteBuffer buffer) {
+        long seconds = unzigzag(readVarint(buffer));
+        int nanos = (int) readVarint(buffer);
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    private static int timestampSize(LocalDateTime value) {
+        return varintSize(zigzag(value.toEpochSecond(ZoneOffset.UTC))) + varintSize(value.getNano());
+    }
+
+    // ---- varint (LEB128, без знака) и zigzag для знаковых значений ----
+
+    static void writeVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long readVarint(ByteBuffer buffer) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Слишком длинный varint");
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // ---- Строки: UTF-8 пишется посимвольно, без промежуточного byte[] ----
+
+    private static int stringSize(String value) {
+        int length = utf8Length(value);
+        return varintSize(length) + length;
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+        writeVarint(buffer, utf8Length(value));
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // Одиночный суррогат заменяется на '?', как в String.getBytes(UTF_8)
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    // Для буфера в куче строка создается прямо из его массива, без копии
+    private static String readString(ByteBuffer buffer) {
+        int length = (int) readVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Некорректная длина строки: " + length);
+        }
+
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,221 @@
+package com.userservice.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+// Настройки userservice.* слоями, каждый следующий перекрывает предыдущие:
+//   1. userservice.properties из classpath — значения по умолчанию
+//   2. userservice-<профиль>.properties из classpath (prod, test, bench)
+//   3. внешний файл: userservice.config / USERSERVICE_CONFIG, иначе ./userservice.properties, если он есть
+//   4. переменные окружения: userservice.db.poolSize -> USERSERVICE_DB_POOLSIZE
+//   5. системные свойства -Duserservice.*
+// Профиль задается userservice.profile в любом из слоев, кроме файла профиля
+public final class AppConfig {
+
+    private static final Logger logger = LogManager.getLogger(AppConfig.class);
+
+    public static final String PROFILE_PROPERTY = "userservice.profile";
+    private static final String CONFIG_FILE_PROPERTY = "userservice.config";
+    private static final String DEFAULTS_RESOURCE = "userservice.properties";
+    private static final Path LOCAL_CONFIG_FILE = Paths.get("userservice.properties");
+
+    private static final List<String> sources = new ArrayList<>();
+    private static final Properties fileProperties = new Properties();
+    private static final String profile;
+
+    static {
+        Properties defaults = loadResource(DEFAULTS_RESOURCE);
+        Properties external = loadExternalFile();
+
+        String selected = System.getProperty(PROFILE_PROPERTY);
+        if (selected == null) {
+            selected = System.getenv(envName(PROFILE_PROPERTY));
+        }
+        if (selected == null) {
+            selected = external.getProperty(PROFILE_PROPERTY, defaults.getProperty(PROFILE_PROPERTY));
+        }
+        profile = selected != null && !selected.isEmpty() ? selected : null;
+
+        fileProperties.putAll(defaults);
+        if (profile != null) {
+            Properties profileProperties = loadResource("userservice-" + profile + ".properties");
+            if (profileProperties.isEmpty()) {
+                logger.warn("Профиль {} не найден, используются значения по умолчанию", profile);
+            }
+            fileProperties.putAll(profileProperties);
+        }
+        fileProperties.putAll(external);
+
+        logger.info("Конфигурация: профиль {}, файлы {}", profile != null ? profile : "по умолчанию", sources);
+    }
+
+    private AppConfig() {
+    }
+
+    public static String getProfile() {
+        return profile;
+    }
+
+    public static String getString(String key) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(envName(key));
+        }
+        return value != null ? value : fileProperties.getProperty(key);
+    }
+
+    public static String getString(String key, String defaultValue) {
+        String value = getString(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public static String require(String key) {
+        String value = getString(key);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalStateException("Не задана настройка " + key);
+        }
+        return value;
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw invalid(key, value);
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw invalid(key, value);
+        }
+    }
+
+    public static double getDouble(String key, double defaultValue) {
+        String value = getString(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw invalid(key, value);
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        value = value.trim();
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw invalid(key, value);
+    }
+
+    // Все настройки userservice.* с учетом слоев; для компонентов, которые принимают Properties.
+    // Переменные окружения без соответствующего ключа в файлах переводятся в нижний регистр с точками
+    public static Properties toProperties() {
+        Properties result = new Properties();
+        result.putAll(fileProperties);
+
+        String prefix = envName("userservice.");
+        for (Map.Entry<String, String> variable : System.getenv().entrySet()) {
+            if (variable.getKey().startsWith(prefix)) {
+                result.setProperty(keyForEnv(variable.getKey(), result), variable.getValue());
+            }
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("userservice.")) {
+                result.setProperty(key, System.getProperty(key));
+            }
+        }
+        return result;
+    }
+
+    private static String keyForEnv(String variable, Properties known) {
+        for (String key : known.stringPropertyNames()) {
+            if (envName(key).equals(variable)) {
+                return key;
+            }
+        }
+        return variable.toLowerCase(Locale.ROOT).replace('_', '.');
+    }
+
+    static String envName(String key) {
+        return key.toUpperCase(Locale.ROOT).replace('.', '_').replace("-", "");
+    }
+
+    private static IllegalStateException invalid(String key, String value) {
+        return new IllegalStateException("Некорректное значение настройки " + key + ": " + value);
+    }
+
+    private static Properties loadResource(String name) {
+        Properties properties = new Properties();
+        try (InputStream in = AppConfig.class.getClassLoader().getResourceAsStream(name)) {
+            if (in != null) {
+                try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+                sources.add("classpath:" + name);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать " + name, e);
+        }
+        return properties;
+    }
+
+    private static Properties loadExternalFile() {
+        String configured = System.getProperty(CONFIG_FILE_PROPERTY);
+        if (configured == null) {
+            configured = System.getenv(envName(CONFIG_FILE_PROPERTY));
+        }
+
+        Path file;
+        if (configured != null) {
+            file = Paths.get(configured);
+        } else if (Files.isRegularFile(LOCAL_CONFIG_FILE)) {
+            file = LOCAL_CONFIG_FILE;
+        } else {
+            return new Properties();
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать файл настроек " + file, e);
+        }
+        sources.add(file.toAbsolutePath().toString());
+        return properties;
+    }
+}
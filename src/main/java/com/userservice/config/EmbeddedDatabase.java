@@ -0,0 +1,52 @@
+package com.userservice.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Встроенная H2 в режиме PostgreSQL для профилей test и bench: без сервера и сети.
+// Функции PostgreSQL, которые вызываются при каждой записи, заменены заглушками:
+// pg_notify ничего не рассылает (узел один), txid_current возрастает с каждым вызовом.
+// Секционирование, LISTEN, ретранслятор outbox и прогрев prepared statements здесь не работают
+public final class EmbeddedDatabase {
+
+    private static final Logger logger = LogManager.getLogger(EmbeddedDatabase.class);
+
+    private static final AtomicLong txid = new AtomicLong();
+
+    private EmbeddedDatabase() {
+    }
+
+    public static boolean isEmbedded(String url) {
+        return url.startsWith("jdbc:h2:");
+    }
+
+    public static boolean isEmbedded(Connection connection) throws SQLException {
+        return isEmbedded(connection.getMetaData().getURL());
+    }
+
+    // До миграций: V3 использует txid_current() как значение по умолчанию
+    public static void install(String url, String username, String password) {
+        String className = EmbeddedDatabase.class.getName();
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE ALIAS IF NOT EXISTS txid_current FOR '" + className + ".txidCurrent'");
+            statement.execute("CREATE ALIAS IF NOT EXISTS pg_notify FOR '" + className + ".pgNotify'");
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось подготовить встроенную БД " + url, e);
+        }
+        logger.info("Встроенная БД {}", url);
+    }
+
+    public static long txidCurrent() {
+        return txid.incrementAndGet();
+    }
+
+    public static void pgNotify(String channel, String payload) {
+    }
+}
@@ -0,0 +1,165 @@
+package com.userservice.dao;
+
+import com.userservice.cache.InvalidationListener;
+import com.userservice.cache.UserCache;
+import com.userservice.config.AppConfig;
+import com.userservice.entity.User;
+import com.userservice.tracing.Tracing;
+import com.userservice.util.Emails;
+import com.userservice.util.HibernateUtil;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+// Кэширует поиск по id и email. Записи этого узла сбрасывают кэш сразу,
+// записи других узлов — через уведомления user_invalidation (InvalidationListener)
+public class CachingUserDao implements UserDao, AutoCloseable {
+
+    public static final boolean ENABLED = AppConfig.getBoolean("userservice.cache.enabled", false);
+    private static final int DEFAULT_MAX_ENTRIES = AppConfig.getInt("userservice.cache.maxEntries", 10_000);
+    private static final int FULL_FLUSH_THRESHOLD = AppConfig.getInt("userservice.cache.fullFlushThreshold", 1_000);
+
+    private final UserDao delegate;
+    private final UserCache cache;
+    private final InvalidationListener listener;
+
+    public CachingUserDao(UserDao delegate) {
+        this.delegate = delegate;
+        this.cache = new UserCache(DEFAULT_MAX_ENTRIES);
+        this.listener = new InvalidationListener(HibernateUtil::getSessionFactory, cache, FULL_FLUSH_THRESHOLD);
+        this.listener.start();
+        HibernateUtil.registerShutdownAction(this::close);
+    }
+
+    // Для узла без подписки (например, в тестах): кэш управляется вызывающим
+    public CachingUserDao(UserDao delegate, UserCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.listener = null;
+    }
+
+    // Кэш включается свойством userservice.cache.enabled
+    public static UserDao wrapIfEnabled(UserDao delegate) {
+        return ENABLED ? new CachingUserDao(delegate) : delegate;
+    }
+
+    @Override
+    public User save(User user) {
+        User saved = delegate.save(user);
+        if (saved != null) {
+            cache.invalidate(saved.getId(), saved.getEmail());
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        User cached = cache.getById(id);
+        Tracing.current().setAttribute("cache.hit", cached != null);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long epoch = cache.epoch();
+        Optional<User> user = delegate.findById(id);
+        user.ifPresent(found -> cache.put(found, epoch));
+        return user;
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        String canonicalEmail = Emails.canonical(email);
+        User cached = findCachedByEmail(canonicalEmail);
+        Tracing.current().setAttribute("cache.hit", cached != null);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long epoch = cache.epoch();
+        Optional<User> user = delegate.findByEmail(email);
+        user.ifPresent(found -> cache.put(found, epoch));
+        return user;
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        boolean hit = findCachedByEmail(Emails.canonical(email)) != null;
+        Tracing.current().setAttribute("cache.hit", hit);
+        return hit || delegate.existsByEmail(email);
+    }
+
+    private User findCachedByEmail(String canonicalEmail) {
+        Long id = cache.idForEmail(canonicalEmail);
+        if (id == null) {
+            return null;
+        }
+        User cached = cache.getById(id);
+        // Ключ мог устареть после смены email у этого id
+        return cached != null && canonicalEmail.equals(cached.getEmail()) ? cached : null;
+    }
+
+    @Override
+    public User update(User user) {
+        try {
+            return delegate.update(user);
+        } finally {
+            cache.invalidate(user.getId(), user.getEmail());
+        }
+    }
+
+    @Override
+    public List<User> updateAll(List<User> users) {
+        try {
+            return delegate.updateAll(users);
+        } finally {
+            for (User user : users) {
+                cache.invalidate(user.getId(), user.getEmail());
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(Long id) {
+        try {
+            return delegate.delete(id);
+        } finally {
+            cache.invalidate(id, null);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        try {
+            delegate.deleteAll();
+        } finally {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public List<User> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<User> findByCreatedAtBetween(LocalDateTime from, LocalDateTime to) {
+        return delegate.findByCreatedAtBetween(from, to);
+    }
+
+    @Override
+    public Long count() {
+        return delegate.count();
+    }
+
+    public UserCache.Stats getStats() {
+        return cache.getStats();
+    }
+
+    @Override
+    public void close() {
+        if (listener != null) {
+            listener.close();
+        }
+    }
+}
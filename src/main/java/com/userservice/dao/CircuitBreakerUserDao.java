@@ -0,0 +1,103 @@
+package com.userservice.dao;
+
+import com.userservice.config.AppConfig;
+import com.userservice.entity.User;
+import com.userservice.exception.ValidationException;
+import com.userservice.util.CircuitBreaker;
+import com.userservice.util.Deadline;
+
+import javax.persistence.OptimisticLockException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+// Все операции UserDao проходят через общий выключатель: при недоступной БД
+// вызовы сразу завершаются DatabaseException вместо ожидания таймаута соединения.
+// Выключатель видит только исключения: делегат не должен скрывать отказ БД за пустым результатом
+public class CircuitBreakerUserDao implements UserDao {
+
+    private static final int WINDOW_SIZE = AppConfig.getInt("userservice.dao.breakerWindow", 20);
+    private static final int MINIMUM_CALLS = AppConfig.getInt("userservice.dao.breakerMinimumCalls", 10);
+    private static final double FAILURE_RATE = AppConfig.getDouble("userservice.dao.breakerFailureRate", 0.5);
+    private static final long OPEN_MILLIS = AppConfig.getLong("userservice.dao.breakerOpenMillis", 5_000);
+    private static final int HALF_OPEN_PROBES = AppConfig.getInt("userservice.dao.breakerHalfOpenProbes", 3);
+
+    private final UserDao delegate;
+    private final CircuitBreaker circuitBreaker;
+
+    public CircuitBreakerUserDao(UserDao delegate) {
+        this(delegate, new CircuitBreaker("userDao", WINDOW_SIZE, MINIMUM_CALLS, FAILURE_RATE, OPEN_MILLIS,
+                HALF_OPEN_PROBES, CircuitBreakerUserDao::isDatabaseFailure));
+    }
+
+    public CircuitBreakerUserDao(UserDao delegate, CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public User save(User user) {
+        return circuitBreaker.execute(() -> delegate.save(user));
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return circuitBreaker.execute(() -> delegate.findById(id));
+    }
+
+    @Override
+    public List<User> findAll() {
+        return circuitBreaker.execute(delegate::findAll);
+    }
+
+    @Override
+    public List<User> findByCreatedAtBetween(LocalDateTime from, LocalDateTime to) {
+        return circuitBreaker.execute(() -> delegate.findByCreatedAtBetween(from, to));
+    }
+
+    @Override
+    public User update(User user) {
+        return circuitBreaker.execute(() -> delegate.update(user));
+    }
+
+    @Override
+    public boolean delete(Long id) {
+        return circuitBreaker.execute(() -> delegate.delete(id));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return circuitBreaker.execute(() -> delegate.findByEmail(email));
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return circuitBreaker.execute(() -> delegate.existsByEmail(email));
+    }
+
+    @Override
+    public Long count() {
+        return circuitBreaker.execute(delegate::count);
+    }
+
+    @Override
+    public void deleteAll() {
+        circuitBreaker.execute(() -> {
+            delegate.deleteAll();
+            return null;
+        });
+    }
+
+    public CircuitBreaker.Stats getStats() {
+        return circuitBreaker.getStats();
+    }
+
+    // Конфликт версий, ошибки входных данных и отказ по сроку до обращения к БД не говорят о ее состоянии.
+    // Таймаут выполнившегося запроса считается: постоянно медленная БД должна размыкать выключатель
+    private static boolean isDatabaseFailure(Throwable e) {
+        return !(e instanceof OptimisticLockException
+                || e instanceof IllegalArgumentException
+                || e instanceof ValidationException
+                || Deadline.isRejectedBeforeStart(e));
+    }
+}
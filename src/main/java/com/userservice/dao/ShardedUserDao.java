@@ -0,0 +1,420 @@
+package com.userservice.dao;
+
+import com.userservice.entity.User;
+import com.userservice.util.Emails;
+import com.userservice.util.HibernateUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Шардирование users по нескольким БД. Номер шарда хранится в старших битах ID:
+// последовательность users.id каждого шарда начинается с (shard << SHARD_SHIFT).
+// Глобальный справочник email -> шард обеспечивает уникальность email и поиск по нему
+// (таблица user_email_directory создается миграцией V10).
+public class ShardedUserDao implements UserDao, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ShardedUserDao.class);
+
+    public static final int SHARD_SHIFT = 52;
+    public static final int MAX_SHARDS = 1 << (63 - SHARD_SHIFT);
+
+    private final List<SessionFactory> shardFactories;
+    private final List<UserDaoImpl> shards;
+    private final SessionFactory directory;
+    private final ExecutorService scatterExecutor;
+    private final boolean ownsFactories;
+
+    public ShardedUserDao(List<SessionFactory> shardFactories, SessionFactory directory) {
+        this(shardFactories, directory, false);
+    }
+
+    private ShardedUserDao(List<SessionFactory> shardFactories, SessionFactory directory, boolean ownsFactories) {
+        if (shardFactories.isEmpty() || shardFactories.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("Количество шардов должно быть от 1 до " + MAX_SHARDS);
+        }
+        this.shardFactories = new ArrayList<>(shardFactories);
+        this.directory = directory;
+        this.ownsFactories = ownsFactories;
+
+        this.shards = new ArrayList<>(shardFactories.size());
+        for (SessionFactory factory : shardFactories) {
+            shards.add(new UserDaoImpl(factory));
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.scatterExecutor = Executors.newFixedThreadPool(shardFactories.size(), runnable -> {
+            Thread thread = new Thread(runnable, "user-shard-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int shard = 0; shard < shardFactories.size(); shard++) {
+            initIdSequence(shard);
+        }
+
+        HibernateUtil.registerShutdownAction(this::close);
+        logger.info("Шардирование включено: шардов={}", shardFactories.size());
+    }
+
+    // userservice.shard.count, userservice.shard.<i>.url|username|password,
+    // userservice.shard.directory.url|username|password (по умолчанию — шард 0)
+    public static ShardedUserDao fromProperties(Properties properties) {
+        int count = Integer.parseInt(properties.getProperty("userservice.shard.count", "1"));
+
+        List<SessionFactory> factories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            factories.add(buildFactory(properties, "userservice.shard." + i));
+        }
+
+        SessionFactory directory = properties.getProperty("userservice.shard.directory.url") != null
+                ? buildFactory(properties, "userservice.shard.directory")
+                : factories.get(0);
+
+        return new ShardedUserDao(factories, directory, true);
+    }
+
+    public static int shardOf(long id) {
+        return (int) (id >>> SHARD_SHIFT);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public User save(User user) {
+        int shard = Math.floorMod(Emails.canonical(user.getEmail()).hashCode(), shards.size());
+
+        // Сначала резервируется email в справочнике: уникальность проверяется глобально
+        reserveEmail(user.getEmail(), shard);
+
+        User saved;
+        try {
+            saved = shards.get(shard).save(user);
+        } catch (RuntimeException e) {
+            releaseEmail(user.getEmail());
+            throw e;
+        }
+
+        if (saved == null || saved.getId() == null) {
+            releaseEmail(user.getEmail());
+            throw new RuntimeException("Не удалось сохранить пользователя в шард " + shard);
+        }
+        if (shardOf(saved.getId()) != shard) {
+            logger.warn("ID {} не содержит номер шарда {}: проверьте последовательность users.id", saved.getId(), shard);
+        }
+
+        bindEmail(user.getEmail(), saved.getId());
+        return saved;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        UserDaoImpl shard = shardFor(id);
+        return shard != null ? shard.findById(id) : Optional.empty();
+    }
+
+    @Override
+    public List<User> findAll() {
+        List<User> users = new ArrayList<>();
+        for (List<User> part : scatter(UserDao::findAll)) {
+            users.addAll(part);
+        }
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+
+    @Override
+    public List<User> findByCreatedAtBetween(LocalDateTime from, LocalDateTime to) {
+        List<User> users = new ArrayList<>();
+        for (List<User> part : scatter(shard -> shard.findByCreatedAtBetween(from, to))) {
+            users.addAll(part);
+        }
+        users.sort(Comparator.comparing(User::getCreatedAt));
+        return users;
+    }
+
+    @Override
+    public User update(User user) {
+        UserDaoImpl shard = shardFor(user.getId());
+        if (shard == null) {
+            throw new IllegalArgumentException("ID " + user.getId() + " не принадлежит ни одному шарду");
+        }
+
+        String previousEmail = findEmailById(user.getId());
+        boolean emailChanged = previousEmail != null && !previousEmail.equals(Emails.canonical(user.getEmail()));
+
+        if (emailChanged) {
+            reserveEmail(user.getEmail(), shardOf(user.getId()));
+            bindEmail(user.getEmail(), user.getId());
+        }
+
+        try {
+            User updated = shard.update(user);
+            if (emailChanged) {
+                releaseEmail(previousEmail);
+            }
+            return updated;
+        } catch (RuntimeException e) {
+            if (emailChanged) {
+                releaseEmail(user.getEmail());
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean delete(Long id) {
+        UserDaoImpl shard = shardFor(id);
+        if (shard == null) {
+            return false;
+        }
+
+        boolean deleted = shard.delete(id);
+        if (deleted) {
+            executeInDirectory(session -> session
+                    .createNativeQuery("DELETE FROM user_email_directory WHERE user_id = :id")
+                    .setParameter("id", id)
+                    .executeUpdate());
+        }
+        return deleted;
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        Integer shard = findShardByEmail(email);
+        return shard != null ? shards.get(shard).findByEmail(email) : Optional.empty();
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return findShardByEmail(email) != null;
+    }
+
+    @Override
+    public Long count() {
+        long total = 0;
+        for (Long count : scatter(UserDao::count)) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public void deleteAll() {
+        logger.warn("Удаление ВСЕХ ПОЛЬЗОВАТЕЛЕЙ во всех шардах");
+        scatter(shard -> {
+            shard.deleteAll();
+            return null;
+        });
+        executeInDirectory(session -> session
+                .createNativeQuery("DELETE FROM user_email_directory")
+                .executeUpdate());
+    }
+
+    @Override
+    public void close() {
+        scatterExecutor.shutdownNow();
+        if (ownsFactories) {
+            for (SessionFactory factory : shardFactories) {
+                closeQuietly(factory);
+            }
+            if (!shardFactories.contains(directory)) {
+                closeQuietly(directory);
+            }
+        }
+    }
+
+    private UserDaoImpl shardFor(Long id) {
+        if (id == null || id <= 0) {
+            return null;
+        }
+        int shard = shardOf(id);
+        return shard < shards.size() ? shards.get(shard) : null;
+    }
+
+    // Параллельный опрос всех шардов; результаты в порядке номеров шардов
+    private <T> List<T> scatter(Function<UserDao, T> operation) {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (UserDaoImpl shard : shards) {
+            Callable<T> task = () -> operation.apply(shard);
+            futures.add(scatterExecutor.submit(task));
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Опрос шардов прерван", e);
+        } catch (ExecutionException e) {
+            logger.error("Ошибка при опросе шардов", e.getCause());
+            throw new RuntimeException("Не удалось выполнить операцию на всех шардах", e.getCause());
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    // Сдвигает последовательность шарда в его диапазон, если в нем еще нет строк
+    private void initIdSequence(int shard) {
+        long base = ((long) shard << SHARD_SHIFT) + 1;
+        long limit = (long) (shard + 1) << SHARD_SHIFT;
+
+        Session session = null;
+        Transaction transaction = null;
+        try {
+            session = shardFactories.get(shard).openSession();
+            transaction = session.beginTransaction();
+
+            session.createNativeQuery("SELECT setval(pg_get_serial_sequence('users', 'id'), :base, false) "
+                            + "WHERE NOT EXISTS (SELECT 1 FROM users WHERE id >= :base AND id < :limit)")
+                    .setParameter("base", base)
+                    .setParameter("limit", limit)
+                    .list();
+
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().canRollback()) {
+                transaction.rollback();
+            }
+            logger.error("Не удалось настроить последовательность ID для шарда {}", shard, e);
+            throw new RuntimeException("Не удалось инициализировать шард " + shard, e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private void reserveEmail(String email, int shard) {
+        try {
+            executeInDirectory(session -> session
+                    .createNativeQuery("INSERT INTO user_email_directory (email, shard_id) VALUES (:email, :shard)")
+                    .setParameter("email", Emails.canonical(email))
+                    .setParameter("shard", shard)
+                    .executeUpdate());
+        } catch (RuntimeException e) {
+            logger.warn("Email {} уже зарезервирован в справочнике", email);
+            throw e;
+        }
+    }
+
+    private void bindEmail(String email, Long id) {
+        executeInDirectory(session -> session
+                .createNativeQuery("UPDATE user_email_directory SET user_id = :id WHERE email = :email")
+                .setParameter("id", id)
+                .setParameter("email", Emails.canonical(email))
+                .executeUpdate());
+    }
+
+    private void releaseEmail(String email) {
+        try {
+            executeInDirectory(session -> session
+                    .createNativeQuery("DELETE FROM user_email_directory WHERE email = :email")
+                    .setParameter("email", Emails.canonical(email))
+                    .executeUpdate());
+        } catch (RuntimeException e) {
+            logger.error("Не удалось освободить email {} в справочнике", email, e);
+        }
+    }
+
+    private Integer findShardByEmail(String email) {
+        Session session = null;
+        try {
+            session = directory.openSession();
+            List<?> rows = session
+                    .createNativeQuery("SELECT shard_id FROM user_email_directory WHERE email = :email")
+                    .setParameter("email", Emails.canonical(email))
+                    .list();
+            return rows.isEmpty() ? null : ((Number) rows.get(0)).intValue();
+        } catch (Exception e) {
+            logger.error("Ошибка при поиске шарда по email {}", email, e);
+            throw new RuntimeException("Не удалось найти шард по email", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private String findEmailById(Long id) {
+        Session session = null;
+        try {
+            session = directory.openSession();
+            List<?> rows = session
+                    .createNativeQuery("SELECT email FROM user_email_directory WHERE user_id = :id")
+                    .setParameter("id", id)
+                    .list();
+            return rows.isEmpty() ? null : (String) rows.get(0);
+        } catch (Exception e) {
+            logger.error("Ошибка при поиске email по ID {} в справочнике", id, e);
+            throw new RuntimeException("Не удалось найти email в справочнике", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private <T> T executeInDirectory(Function<Session, T> work) {
+        Session session = null;
+        Transaction transaction = null;
+        try {
+            session = directory.openSession();
+            transaction = session.beginTransaction();
+            T result = work.apply(session);
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.getStatus().canRollback()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private static SessionFactory buildFactory(Properties properties, String prefix) {
+        String url = properties.getProperty(prefix + ".url");
+        if (url == null) {
+            throw new IllegalArgumentException("Не задан " + prefix + ".url");
+        }
+        return HibernateUtil.buildSessionFactory(url,
+                properties.getProperty(prefix + ".username", "user_service_user"),
+                properties.getProperty(prefix + ".password", ""));
+    }
+
+    private static void closeQuietly(SessionFactory factory) {
+        try {
+            if (!factory.isClosed()) {
+                factory.close();
+            }
+        } catch (Exception e) {
+            logger.error("Ошибка при закрытии SessionFactory шарда", e);
+        }
+    }
+}
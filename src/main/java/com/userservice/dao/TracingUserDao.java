@@ -0,0 +1,87 @@
+package com.userservice.dao;
+
+import com.userservice.entity.User;
+import com.userservice.tracing.Tracing;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+// Спан на каждый метод UserDao. Стоит снаружи кэша и автомата-предохранителя, поэтому
+// включает их время; попадание в кэш отмечает CachingUserDao атрибутом cache.hit
+public class TracingUserDao implements UserDao {
+
+    private final UserDao delegate;
+
+    public TracingUserDao(UserDao delegate) {
+        this.delegate = delegate;
+    }
+
+    public static UserDao wrapIfEnabled(UserDao delegate) {
+        return Tracing.ENABLED ? new TracingUserDao(delegate) : delegate;
+    }
+
+    @Override
+    public User save(User user) {
+        return Tracing.inSpan("UserDao.save", () -> delegate.save(user));
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return Tracing.inSpan("UserDao.findById", () -> found(delegate.findById(id)));
+    }
+
+    @Override
+    public List<User> findAll() {
+        return Tracing.inSpan("UserDao.findAll", () -> withCount(delegate.findAll()));
+    }
+
+    @Override
+    public List<User> findByCreatedAtBetween(LocalDateTime from, LocalDateTime to) {
+        return Tracing.inSpan("UserDao.findByCreatedAtBetween",
+                () -> withCount(delegate.findByCreatedAtBetween(from, to)));
+    }
+
+    @Override
+    public User update(User user) {
+        return Tracing.inSpan("UserDao.update", () -> delegate.update(user));
+    }
+
+    @Override
+    public boolean delete(Long id) {
+        return Tracing.inSpan("UserDao.delete", () -> delegate.delete(id));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return Tracing.inSpan("UserDao.findByEmail", () -> found(delegate.findByEmail(email)));
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return Tracing.inSpan("UserDao.existsByEmail", () -> delegate.existsByEmail(email));
+    }
+
+    @Override
+    public Long count() {
+        return Tracing.inSpan("UserDao.count", delegate::count);
+    }
+
+    @Override
+    public void deleteAll() {
+        Tracing.inSpan("UserDao.deleteAll", () -> {
+            delegate.deleteAll();
+            return null;
+        });
+    }
+
+    private static Optional<User> found(Optional<User> user) {
+        Tracing.current().setAttribute("user.found", user.isPresent());
+        return user;
+    }
+
+    private static List<User> withCount(List<User> users) {
+        Tracing.current().setAttribute("user.count", users.size());
+        return users;
+    }
+}
@@ -2,6 +2,8 @@ package com.userservice.dao;
 
 import com.userservice.entity.User;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,8 +15,19 @@ public interface UserDao {
 
     List<User> findAll();
 
+    List<User> findByCreatedAtBetween(LocalDateTime from, LocalDateTime to);
+
     User update(User user);
 
+    // Пачка обновлений. По умолчанию — по одному, без общей транзакции; UserDaoImpl пишет пачку одной транзакцией
+    default List<User> updateAll(List<User> users) {
+        List<User> updated = new ArrayList<>(users.size());
+        for (User user : users) {
+            updated.add(update(user));
+        }
+        return updated;
+    }
+
     boolean delete(Long id);
 
     Optional<User> findByEmail(String email);
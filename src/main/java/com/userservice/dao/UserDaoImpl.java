@@ -1,21 +1,53 @@
 package com.userservice.dao;
 
+import com.userservice.cache.UserInvalidation;
+import com.userservice.changes.UserTombstones;
 import com.userservice.entity.User;
+import com.userservice.exception.DatabaseException;
+import com.userservice.exception.DeadlineExceededException;
+import com.userservice.outbox.OutboxEventType;
+import com.userservice.outbox.UserOutbox;
+import com.userservice.stats.UserRollup;
+import com.userservice.util.Deadline;
+import com.userservice.util.Emails;
 import com.userservice.util.HibernateUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
 import org.hibernate.Transaction;
 import org.hibernate.query.Query;
 
+import javax.persistence.OptimisticLockException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
+// Каждое изменение пишет событие в user_outbox (см. UserOutbox), уведомление для кэшей других узлов
+// (см. UserInvalidation) и изменение сводок (см. UserRollup) в той же транзакции.
+// updated_at назначает сама сущность (@PrePersist/@PreUpdate), удаление оставляет надгробие (см. UserTombstones)
 public class UserDaoImpl implements UserDao {
 
     private static final Logger logger = LogManager.getLogger(UserDaoImpl.class);
 
+    private final Supplier<SessionFactory> sessionFactory;
+
+    public UserDaoImpl() {
+        this(HibernateUtil::getSessionFactory);
+    }
+
+    public UserDaoImpl(SessionFactory sessionFactory) {
+        this(() -> sessionFactory);
+    }
+
+    private UserDaoImpl(Supplier<SessionFactory> sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
     @Override
     public User save(User user) {
         logger.debug("Попытка сохранить пользователя", user);
@@ -24,29 +56,35 @@ public class UserDaoImpl implements UserDao {
         Session session = null;
 
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = sessionFactory.get().openSession();
             transaction = session.beginTransaction();
 
+            user.setEmail(Emails.canonical(user.getEmail()));
             session.save(user);
+            UserOutbox.append(session, OutboxEventType.USER_CREATED, user);
+            UserInvalidation.publish(session, user);
+            UserRollup.added(session, user);
 
             transaction.commit();
             logger.info("Пользователь успешно сохранен с ID", user.getId());
 
             return user;
         } catch (Exception e) {
-            if (transaction != null) {
+            if (transaction != null && transaction.getStatus().canRollback()) {
                 transaction.rollback();
                 logger.error("Транзакция отменена при сохранении пользователя", e);
-                user = null;
             }
             logger.error("Ошибка при сохранении пользователя", e);
+            if (Deadline.isTimeout(e)) {
+                throw new DeadlineExceededException("Пользователь не сохранен в срок вызова", e);
+            }
+            // Отказ должен дойти до выключателя (CircuitBreakerUserDao), а не превратиться в null
+            throw new DatabaseException("Не удалось сохранить пользователя", e);
         } finally {
             if (session != null) {
                 session.close();
             }
-
         }
-        return user;
     }
 
     @Override
@@ -56,7 +94,7 @@ public class UserDaoImpl implements UserDao {
         Session session = null;
 
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = sessionFactory.get().openSession();
             User user = session.get(User.class, id);
 
             if (user != null) {
@@ -82,16 +120,47 @@ public class UserDaoImpl implements UserDao {
         Session session = null;
 
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = sessionFactory.get().openSession();
 
-            Query<User> query = session.createQuery("FROM User", User.class);
+            Query<User> query = session.createNamedQuery(User.FIND_ALL, User.class);
             List<User> users = query.list();
 
             logger.info("Найдено пользователей", users.size());
             return users;
         } catch (Exception e) {
             logger.error("Ошибка при получении всех пользователей", e);
-            return new ArrayList<>();
+            // Пустой список вместо отказа скрыл бы от вызывающего и выключателя недоступность БД
+            if (Deadline.isTimeout(e)) {
+                throw new DeadlineExceededException("Пользователи не получены в срок вызова", e);
+            }
+            throw new DatabaseException("Не удалось получить всех пользователей", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    // Условие по created_at позволяет PostgreSQL отсечь лишние секции users
+    @Override
+    public List<User> findByCreatedAtBetween(LocalDateTime from, LocalDateTime to) {
+        logger.debug("Поиск пользователей, созданных с {} по {}", from, to);
+
+        Session session = null;
+
+        try {
+            session = sessionFactory.get().openSession();
+
+            Query<User> query = session.createNamedQuery(User.FIND_BY_CREATED_AT_BETWEEN, User.class);
+            query.setParameter("from", from);
+            query.setParameter("to", to);
+            List<User> users = query.list();
+
+            logger.info("Найдено пользователей за период: {}", users.size());
+            return users;
+        } catch (Exception e) {
+            logger.error("Ошибка при поиске пользователей за период", e);
+            throw new RuntimeException("Не удалось найти пользователей за период", e);
         } finally {
             if (session != null) {
                 session.close();
@@ -107,20 +176,36 @@ public class UserDaoImpl implements UserDao {
         Session session = null;
 
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = sessionFactory.get().openSession();
             transaction = session.beginTransaction();
 
+            // UPDATE ... WHERE id = ? AND version = ? — параллельное изменение не затирается молча
+            user.setEmail(Emails.canonical(user.getEmail()));
+            User before = UserRollup.currentState(session, user.getId());
             session.update(user);
+            UserOutbox.append(session, OutboxEventType.USER_UPDATED, user);
+            UserInvalidation.publish(session, user);
+            if (before != null) {
+                UserRollup.changed(session, before, user);
+            }
 
             transaction.commit();
             logger.info("Пользователь успешно обновлен", user);
 
+        } catch (OptimisticLockException | StaleStateException e) {
+            if (transaction != null && transaction.getStatus().canRollback()) {
+                transaction.rollback();
+            }
+            logger.warn("Конфликт версий при обновлении пользователя ID {} (версия {})", user.getId(), user.getVersion());
+            throw e instanceof OptimisticLockException
+                    ? (OptimisticLockException) e
+                    : new OptimisticLockException("Пользователь был изменен параллельно", e, user);
         } catch (Exception e) {
-            if (transaction != null) {
+            if (transaction != null && transaction.getStatus().canRollback()) {
                 transaction.rollback();
-                logger.error("Ошибка при обновлении пользователя", e);
-                throw new RuntimeException(e);
             }
+            logger.error("Ошибка при обновлении пользователя", e);
+            throw new RuntimeException(e);
         } finally {
             if (session != null) {
                 session.close();
@@ -129,6 +214,65 @@ public class UserDaoImpl implements UserDao {
         return user;
     }
 
+    // Вся пачка — одна транзакция. Строки обновляются в порядке id: пересекающиеся пачки
+    // ждут друг друга, а не блокируют взаимно. События пишутся после всех UPDATE (см. UserOutbox)
+    @Override
+    public List<User> updateAll(List<User> users) {
+        logger.debug("Попытка обновить пачку из {} пользователей", users.size());
+
+        List<User> ordered = new ArrayList<>(users);
+        ordered.sort(Comparator.comparing(User::getId));
+        Transaction transaction = null;
+        Session session = null;
+
+        try {
+            session = sessionFactory.get().openSession();
+            transaction = session.beginTransaction();
+
+            List<User> before = new ArrayList<>(ordered.size());
+            for (User user : ordered) {
+                user.setEmail(Emails.canonical(user.getEmail()));
+                before.add(UserRollup.currentState(session, user.getId()));
+                session.update(user);
+            }
+            session.flush();
+            for (int i = 0; i < ordered.size(); i++) {
+                User user = ordered.get(i);
+                UserOutbox.append(session, OutboxEventType.USER_UPDATED, user);
+                UserInvalidation.publish(session, user);
+                if (before.get(i) != null) {
+                    UserRollup.changed(session, before.get(i), user);
+                }
+            }
+
+            transaction.commit();
+            logger.info("Пачка из {} пользователей успешно обновлена", ordered.size());
+            return users;
+
+        } catch (OptimisticLockException | StaleStateException e) {
+            if (transaction != null && transaction.getStatus().canRollback()) {
+                transaction.rollback();
+            }
+            logger.warn("Конфликт версий в пачке из {} обновлений", ordered.size());
+            throw e instanceof OptimisticLockException
+                    ? (OptimisticLockException) e
+                    : new OptimisticLockException("Пользователь из пачки был изменен параллельно", e);
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().canRollback()) {
+                transaction.rollback();
+            }
+            logger.error("Ошибка при обновлении пачки пользователей", e);
+            if (Deadline.isTimeout(e)) {
+                throw new DeadlineExceededException("Пачка пользователей не обновлена в срок вызова", e);
+            }
+            throw new RuntimeException(e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
     @Override
     public boolean delete(Long id) {
         logger.debug("Попытка удалить пользователя с ID", id);
@@ -137,13 +281,17 @@ public class UserDaoImpl implements UserDao {
         Session session = null;
 
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = sessionFactory.get().openSession();
             transaction = session.beginTransaction();
 
             User user = session.get(User.class, id);
 
             if (user != null) {
                 session.delete(user);
+                UserOutbox.append(session, OutboxEventType.USER_DELETED, user);
+                UserInvalidation.publish(session, user);
+                UserRollup.removed(session, user);
+                UserTombstones.deleted(session, id);
                 transaction.commit();
                 logger.info("Пользователь удален");
                 return true;
@@ -172,10 +320,10 @@ public class UserDaoImpl implements UserDao {
         Session session = null;
 
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = sessionFactory.get().openSession();
 
-            Query<User> query = session.createQuery("FROM User WHERE email = :email", User.class);
-            query.setParameter("email", email);
+            Query<User> query = session.createNamedQuery(User.FIND_BY_EMAIL, User.class);
+            query.setParameter("email", Emails.canonical(email));
 
             User user = query.uniqueResult();
 
@@ -203,9 +351,9 @@ public class UserDaoImpl implements UserDao {
         Session session = null;
 
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
-            Query<Long> query = session.createQuery("SELECT COUNT(*) FROM User WHERE email = :email", Long.class);
-            query.setParameter("email", email);
+            session = sessionFactory.get().openSession();
+            Query<Long> query = session.createNamedQuery(User.COUNT_BY_EMAIL, Long.class);
+            query.setParameter("email", Emails.canonical(email));
 
             Long count = query.uniqueResult();
             boolean exists = count != null && count > 0;
@@ -230,9 +378,9 @@ public class UserDaoImpl implements UserDao {
         Session session = null;
 
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = sessionFactory.get().openSession();
 
-            Query<Long> query = session.createQuery("SELECT COUNT(*) FROM User", Long.class);
+            Query<Long> query = session.createNamedQuery(User.COUNT, Long.class);
 
             Long count = query.uniqueResult();
 
@@ -241,7 +389,10 @@ public class UserDaoImpl implements UserDao {
             return count != null ? count : 0L;
         } catch (Exception e) {
             logger.error("Ошибка при подсчете пользователей", e);
-            return 0L;
+            if (Deadline.isTimeout(e)) {
+                throw new DeadlineExceededException("Пользователи не подсчитаны в срок вызова", e);
+            }
+            throw new DatabaseException("Не удалось подсчитать пользователей", e);
         } finally {
             if (session != null) {
                 session.close();
@@ -257,11 +408,17 @@ public class UserDaoImpl implements UserDao {
         Session session = null;
 
         try {
-            session = HibernateUtil.getSessionFactory().openSession();
+            session = sessionFactory.get().openSession();
             transaction = session.beginTransaction();
 
-            Query query = session.createQuery("DELETE FROM User");
+            UserTombstones.allDeleted(session);
+            Query query = session.createNamedQuery(User.DELETE_ALL);
             int deletedCount = query.executeUpdate();
+            if (deletedCount > 0) {
+                UserOutbox.appendAllDeleted(session);
+                UserInvalidation.publishAll(session);
+            }
+            UserRollup.cleared(session);
 
             transaction.commit();
             logger.info("Удалено {} пользователей", deletedCount);
@@ -0,0 +1,127 @@
+package com.userservice.dao;
+
+import com.userservice.entity.User;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import javax.persistence.NamedQueries;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Прогрев соединений пула при старте. pgjdbc переводит запрос на серверный prepared statement
+// только после prepareThreshold выполнений на одном соединении, поэтому частые точечные запросы
+// выполняются нужное число раз на каждом соединении заранее.
+// Прогреваются только чтения с пустым результатом: поиск по id (загрузчик сущности) и по email.
+// Запросы по всей таблице (findAll, count) не выполняются, для них Hibernate заранее разобрал HQL
+public final class UserQueryWarmup {
+
+    private static final Logger logger = LogManager.getLogger(UserQueryWarmup.class);
+
+    private static final long MISSING_ID = -1L;
+    private static final String MISSING_EMAIL = "";
+
+    private static volatile Report lastReport;
+
+    private UserQueryWarmup() {
+    }
+
+    // connections не должен превышать размер пула: все сессии держат соединения одновременно
+    public static Report run(SessionFactory factory, int connections, int prepareThreshold) {
+        long start = System.nanoTime();
+        int namedQueries = User.class.getAnnotation(NamedQueries.class).value().length;
+        List<Session> sessions = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+        int warmed = 0;
+        long serverPrepared = 0;
+
+        try {
+            // Открытая транзакция удерживает соединение за сессией до конца прогрева
+            for (int i = 0; i < connections; i++) {
+                Session session = factory.openSession();
+                sessions.add(session);
+                transactions.add(session.beginTransaction());
+            }
+
+            for (Session session : sessions) {
+                for (int i = 0; i < prepareThreshold; i++) {
+                    session.get(User.class, MISSING_ID);
+                    session.createNamedQuery(User.FIND_BY_EMAIL, User.class)
+                            .setParameter("email", MISSING_EMAIL)
+                            .uniqueResult();
+                    session.createNamedQuery(User.COUNT_BY_EMAIL, Long.class)
+                            .setParameter("email", MISSING_EMAIL)
+                            .uniqueResult();
+                }
+                serverPrepared += ((Number) session
+                        .createNativeQuery("SELECT count(*) FROM pg_prepared_statements WHERE NOT from_sql")
+                        .uniqueResult()).longValue();
+                warmed++;
+            }
+        } catch (Exception e) {
+            logger.warn("Прогрев соединений прерван после {} из {}: {}", warmed, connections, e.getMessage());
+        } finally {
+            for (Transaction transaction : transactions) {
+                try {
+                    transaction.rollback();
+                } catch (Exception e) {
+                    logger.debug("Ошибка отката транзакции прогрева", e);
+                }
+            }
+            for (Session session : sessions) {
+                session.close();
+            }
+        }
+
+        Report report = new Report(namedQueries, warmed, serverPrepared,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        lastReport = report;
+        logger.info("Прогрев запросов: {}", report);
+        return report;
+    }
+
+    public static Report getLastReport() {
+        return lastReport;
+    }
+
+    public static final class Report {
+        private final int namedQueries;
+        private final int connections;
+        private final long serverPreparedStatements;
+        private final long millis;
+
+        private Report(int namedQueries, int connections, long serverPreparedStatements, long millis) {
+            this.namedQueries = namedQueries;
+            this.connections = connections;
+            this.serverPreparedStatements = serverPreparedStatements;
+            this.millis = millis;
+        }
+
+        public int getNamedQueries() {
+            return namedQueries;
+        }
+
+        public int getConnections() {
+            return connections;
+        }
+
+        public long getServerPreparedStatements() {
+            return serverPreparedStatements;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return "именованных запросов разобрано " + namedQueries
+                    + ", соединений прогрето " + connections
+                    + ", серверных prepared statements " + serverPreparedStatements
+                    + ", " + millis + " мс";
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package com.userservice.dao;
+
+import com.userservice.config.AppConfig;
+import com.userservice.entity.User;
+import com.userservice.util.HibernateUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.persistence.OptimisticLockException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Отложенная запись обновлений: обновления одного пользователя схлопываются в очереди по ID,
+// фоновый поток записывает их пачкой через delegate.updateAll по порогу размера или времени.
+// Изъятая из очереди пачка до фиксации остается видимой чтению (inFlight). Буферизованный пользователь
+// читается и возвращается из update с версией, которую он получит после записи, — как при записи сразу:
+// следующее обновление того же объекта не конфликтует. Записи в очереди хранят версию, проверяемую в БД.
+// Конфликт версий при записи не теряется: следующее обновление этого пользователя получает
+// OptimisticLockException
+public class WriteBehindUserDao implements UserDao, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(WriteBehindUserDao.class);
+
+    public static final boolean ENABLED = AppConfig.getBoolean("userservice.dao.writeBehind", false);
+    public static final int DEFAULT_BATCH_SIZE = AppConfig.getInt("userservice.dao.writeBehindBatchSize", 100);
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS =
+            AppConfig.getLong("userservice.dao.writeBehindFlushMillis", 500);
+
+    private final UserDao delegate;
+    private final int batchSize;
+    private final int maxQueueSize;
+
+    private final ConcurrentHashMap<Long, User> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, User> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, OptimisticLockException> conflicts = new ConcurrentHashMap<>();
+    // Переходы между pending и inFlight и проверка версии при постановке в очередь
+    private final Object queueLock = new Object();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final LongAdder enqueuedUpdates = new LongAdder();
+    private final LongAdder coalescedUpdates = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder conflictedRows = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    public WriteBehindUserDao(UserDao delegate) {
+        this(delegate, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    public WriteBehindUserDao(UserDao delegate, int batchSize, long flushIntervalMillis) {
+        if (batchSize <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Размер пачки и интервал сброса должны быть положительными");
+        }
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        // При переполнении очереди сброс выполняет вызывающий поток — так очередь не растет бесконечно
+        this.maxQueueSize = batchSize * 10;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+
+        HibernateUtil.registerShutdownAction(this::close);
+        logger.info("Отложенная запись включена: batchSize={}, flushInterval={} мс", batchSize, flushIntervalMillis);
+    }
+
+    // Отложенная запись включается свойством userservice.dao.writeBehind
+    public static UserDao wrapIfEnabled(UserDao delegate) {
+        return ENABLED ? new WriteBehindUserDao(delegate) : delegate;
+    }
+
+    @Override
+    public User save(User user) {
+        // Вставка выполняется сразу: вызывающему нужен сгенерированный ID
+        return delegate.save(user);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        User buffered = buffered(id);
+        if (buffered != null) {
+            return Optional.of(visible(buffered));
+        }
+        return delegate.findById(id);
+    }
+
+    @Override
+    public List<User> findAll() {
+        flush();
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<User> findByCreatedAtBetween(LocalDateTime from, LocalDateTime to) {
+        flush();
+        return delegate.findByCreatedAtBetween(from, to);
+    }
+
+    @Override
+    public User update(User user) {
+        if (closed.get()) {
+            return delegate.update(user);
+        }
+        if (user.getId() == null) {
+            throw new IllegalArgumentException("Нельзя отложить обновление пользователя без ID");
+        }
+
+        synchronized (queueLock) {
+            OptimisticLockException conflict = conflicts.remove(user.getId());
+            if (conflict != null) {
+                throw new OptimisticLockException("Предыдущее отложенное обновление не записано: "
+                        + "пользователь был изменен параллельно", conflict, user);
+            }
+            // Обновление строится на прочитанном состоянии: версия должна совпасть с той,
+            // которую буферизованный пользователь получит после записи
+            User buffered = buffered(user.getId());
+            if (buffered != null && !Objects.equals(writtenVersion(buffered), user.getVersion())) {
+                throw new OptimisticLockException("Пользователь был изменен параллельно", null, user);
+            }
+            // Замена записи в очереди проверяет в БД ту же версию, что и замененная
+            User queued = pending.get(user.getId());
+            User entry = user.copy();
+            if (queued != null) {
+                entry.setVersion(queued.getVersion());
+            }
+            enqueuedUpdates.increment();
+            if (pending.put(user.getId(), entry) != null) {
+                coalescedUpdates.increment();
+            }
+            user.setVersion(writtenVersion(entry));
+        }
+
+        int depth = pending.size();
+        if (depth >= maxQueueSize) {
+            flush();
+        } else if (depth >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+        return user;
+    }
+
+    @Override
+    public boolean delete(Long id) {
+        synchronized (queueLock) {
+            pending.remove(id);
+            // Записываемая пачка может еще содержать пользователя: ее исход для него больше не учитывается
+            inFlight.remove(id);
+            conflicts.remove(id);
+        }
+        return delegate.delete(id);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        User buffered = bufferedByEmail(email);
+        if (buffered != null) {
+            return Optional.of(visible(buffered));
+        }
+        return delegate.findByEmail(email);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return bufferedByEmail(email) != null || delegate.existsByEmail(email);
+    }
+
+    @Override
+    public Long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public void deleteAll() {
+        synchronized (queueLock) {
+            pending.clear();
+            conflicts.clear();
+        }
+        delegate.deleteAll();
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            while (!pending.isEmpty()) {
+                List<User> batch = drain();
+                if (batch.isEmpty()) {
+                    return;
+                }
+                if (!writeBatch(batch)) {
+                    // Сбой не из-за версий (например, БД недоступна): остаток запишет следующий сброс
+                    return;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        logger.info("Остановка отложенной записи, в очереди: {}", pending.size());
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flusher.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!pending.isEmpty()) {
+            logger.error("Отложенная запись остановлена, не записано обновлений: {}", pending.size());
+        }
+        logger.info("Отложенная запись остановлена: {}", getStats());
+    }
+
+    public Stats getStats() {
+        long flushes = flushCount.sum();
+        return new Stats(pending.size() + inFlight.size(), enqueuedUpdates.sum(), coalescedUpdates.sum(),
+                flushedRows.sum(), conflictedRows.sum(), failedRows.sum(), flushes,
+                flushes == 0 ? 0 : totalFlushNanos.sum() / flushes / 1_000,
+                maxFlushNanos.get() / 1_000, lastFlushNanos / 1_000);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Ошибка при фоновом сбросе отложенных обновлений", e);
+        }
+    }
+
+    // Очередь новее записываемой пачки
+    private User buffered(Long id) {
+        User queued = pending.get(id);
+        return queued != null ? queued : inFlight.get(id);
+    }
+
+    private User bufferedByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        for (User buffered : pending.values()) {
+            if (email.equalsIgnoreCase(buffered.getEmail())) {
+                return buffered;
+            }
+        }
+        for (User buffered : inFlight.values()) {
+            if (email.equalsIgnoreCase(buffered.getEmail()) && !pending.containsKey(buffered.getId())) {
+                return buffered;
+            }
+        }
+        return null;
+    }
+
+    // Запись переходит в inFlight раньше, чем покидает pending: чтение всегда видит одну из них
+    private List<User> drain() {
+        List<User> batch = new ArrayList<>(Math.min(pending.size(), batchSize));
+        synchronized (queueLock) {
+            Iterator<Map.Entry<Long, User>> entries = pending.entrySet().iterator();
+            while (entries.hasNext() && batch.size() < batchSize) {
+                Map.Entry<Long, User> entry = entries.next();
+                inFlight.put(entry.getKey(), entry.getValue());
+                entries.remove();
+                batch.add(entry.getValue());
+            }
+        }
+        return batch;
+    }
+
+    // Записи из inFlight не меняются: delegate получает копии, версию которых повышает Hibernate
+    private boolean writeBatch(List<User> batch) {
+        long start = System.nanoTime();
+        try {
+            List<User> copies = new ArrayList<>(batch.size());
+            for (User user : batch) {
+                copies.add(user.copy());
+            }
+            delegate.updateAll(copies);
+            for (User user : batch) {
+                written(user);
+            }
+            flushedRows.add(batch.size());
+            logger.debug("Записана пачка отложенных обновлений: {}", batch.size());
+            return true;
+        } catch (Exception e) {
+            logger.warn("Пачка из {} обновлений не записана, повтор по одному", batch.size(), e);
+            return writeOneByOne(batch);
+        } finally {
+            recordFlush(System.nanoTime() - start);
+        }
+    }
+
+    private boolean writeOneByOne(List<User> batch) {
+        boolean completed = true;
+        for (User user : batch) {
+            try {
+                delegate.update(user.copy());
+                written(user);
+                flushedRows.increment();
+            } catch (OptimisticLockException e) {
+                conflictedRows.increment();
+                synchronized (queueLock) {
+                    // Удаленному во время записи пользователю сообщать о конфликте некому
+                    if (inFlight.remove(user.getId(), user)) {
+                        // Обновления, построенные на незаписанном состоянии, тоже отбрасываются
+                        pending.remove(user.getId());
+                        conflicts.put(user.getId(), e);
+                    }
+                }
+                logger.warn("Конфликт версий отложенного обновления пользователя ID {} (версия {}): "
+                        + "сообщается при следующем обновлении", user.getId(), user.getVersion());
+            } catch (Exception e) {
+                failedRows.increment();
+                completed = false;
+                synchronized (queueLock) {
+                    if (inFlight.remove(user.getId(), user)) {
+                        requeue(user);
+                    }
+                }
+                logger.error("Отложенное обновление пользователя ID {} не записано, возвращено в очередь",
+                        user.getId(), e);
+            }
+        }
+        return completed;
+    }
+
+    // Следующее обновление в очереди уже строилось на версии после записи
+    private void written(User user) {
+        synchronized (queueLock) {
+            inFlight.remove(user.getId(), user);
+        }
+    }
+
+    // Вызывается под queueLock. Обновление, поставленное поверх незаписанного, содержит и его изменения:
+    // оно остается в очереди, но проверяет в БД прежнюю версию
+    private void requeue(User user) {
+        User next = pending.get(user.getId());
+        if (next == null) {
+            pending.put(user.getId(), user);
+        } else if (Objects.equals(next.getVersion(), writtenVersion(user))) {
+            next.setVersion(user.getVersion());
+        }
+    }
+
+    private void recordFlush(long nanos) {
+        flushCount.increment();
+        totalFlushNanos.add(nanos);
+        lastFlushNanos = nanos;
+        maxFlushNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Версия, которую пользователь получит после записи буферизованного обновления
+    private static Long writtenVersion(User buffered) {
+        return buffered.getVersion() != null ? buffered.getVersion() + 1 : null;
+    }
+
+    private static User visible(User buffered) {
+        User copy = buffered.copy();
+        copy.setVersion(writtenVersion(buffered));
+        return copy;
+    }
+
+    public static final class Stats {
+        private final int queueDepth;
+        private final long enqueuedUpdates;
+        private final long coalescedUpdates;
+        private final long flushedRows;
+        private final long conflictedRows;
+        private final long failedRows;
+        private final long flushCount;
+        private final long avgFlushMicros;
+        private final long maxFlushMicros;
+        private final long lastFlushMicros;
+
+        Stats(int queueDepth, long enqueuedUpdates, long coalescedUpdates, long flushedRows, long conflictedRows,
+              long failedRows, long flushCount, long avgFlushMicros, long maxFlushMicros, long lastFlushMicros) {
+            this.queueDepth = queueDepth;
+            this.enqueuedUpdates = enqueuedUpdates;
+            this.coalescedUpdates = coalescedUpdates;
+            this.flushedRows = flushedRows;
+            this.conflictedRows = conflictedRows;
+            this.failedRows = failedRows;
+            this.flushCount = flushCount;
+            this.avgFlushMicros = avgFlushMicros;
+            this.maxFlushMicros = maxFlushMicros;
+            this.lastFlushMicros = lastFlushMicros;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getEnqueuedUpdates() {
+            return enqueuedUpdates;
+        }
+
+        public long getCoalescedUpdates() {
+            return coalescedUpdates;
+        }
+
+        public long getFlushedRows() {
+            return flushedRows;
+        }
+
+        public long getConflictedRows() {
+            return conflictedRows;
+        }
+
+        public long getFailedRows() {
+            return failedRows;
+        }
+
+        public long getFlushCount() {
+            return flushCount;
+        }
+
+        public long getAvgFlushMicros() {
+            return avgFlushMicros;
+        }
+
+        public long getMaxFlushMicros() {
+            return maxFlushMicros;
+        }
+
+        public long getLastFlushMicros() {
+            return lastFlushMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{queueDepth=" + queueDepth + ", enqueued=" + enqueuedUpdates + ", coalesced=" + coalescedUpdates
+                    + ", flushedRows=" + flushedRows + ", conflictedRows=" + conflictedRows + ", failedRows=" + failedRows + ", flushes=" + flushCount
+                    + ", avgFlushUs=" + avgFlushMicros + ", maxFlushUs=" + maxFlushMicros
+                    + ", lastFlushUs=" + lastFlushMicros + '}';
+        }
+    }
+}
@@ -6,7 +6,36 @@ import java.util.Objects;
 
 @Entity
 @Table(name = "users")
+// Запросы DAO объявлены заранее: Hibernate разбирает и проверяет их при старте, а не при каждом вызове
+@NamedQueries({
+        @NamedQuery(name = User.FIND_ALL, query = "FROM User"),
+        @NamedQuery(name = User.FIND_BY_CREATED_AT_BETWEEN,
+                query = "FROM User WHERE createdAt >= :from AND createdAt < :to ORDER BY createdAt"),
+        // lower(email) совпадает с выражением функционального индекса на users
+        @NamedQuery(name = User.FIND_BY_EMAIL, query = "FROM User WHERE lower(email) = :email"),
+        @NamedQuery(name = User.COUNT_BY_EMAIL, query = "SELECT COUNT(*) FROM User WHERE lower(email) = :email"),
+        @NamedQuery(name = User.COUNT, query = "SELECT COUNT(*) FROM User"),
+        @NamedQuery(name = User.DELETE_ALL, query = "DELETE FROM User"),
+        @NamedQuery(name = User.FIND_ALL_ORDER_BY_ID, query = "FROM User u ORDER BY u.id"),
+        @NamedQuery(name = User.FIND_ID_RANGE, query = "FROM User u WHERE u.id >= :from AND u.id < :to ORDER BY u.id"),
+        @NamedQuery(name = User.FIND_ID_BOUNDS, query = "SELECT MIN(u.id), MAX(u.id) FROM User u"),
+        // Первое условие — граница диапазона индекса idx_users_updated_at (updated_at, id)
+        @NamedQuery(name = User.FIND_CHANGED_AFTER, query = "FROM User u WHERE u.updatedAt >= :at "
+                + "AND (u.updatedAt > :at OR u.id > :id) AND u.updatedAt <= :horizon "
+                + "ORDER BY u.updatedAt, u.id")
+})
 public class User {
+    public static final String FIND_ALL = "User.findAll";
+    public static final String FIND_BY_CREATED_AT_BETWEEN = "User.findByCreatedAtBetween";
+    public static final String FIND_BY_EMAIL = "User.findByEmail";
+    public static final String COUNT_BY_EMAIL = "User.countByEmail";
+    public static final String COUNT = "User.count";
+    public static final String DELETE_ALL = "User.deleteAll";
+    public static final String FIND_ALL_ORDER_BY_ID = "User.findAllOrderById";
+    public static final String FIND_ID_RANGE = "User.findIdRange";
+    public static final String FIND_ID_BOUNDS = "User.findIdBounds";
+    public static final String FIND_CHANGED_AFTER = "User.findChangedAfter";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
@@ -19,6 +48,12 @@ public class User {
     private Integer age;
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
+    // Время последней записи строки: по (updated_at, id) читается лента изменений (см. UserChangesDao)
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
 
     public User() {
     }
@@ -37,9 +72,23 @@ public class User {
         this.createdAt = createdAt;
     }
 
+    // Отсоединенная копия со всеми полями, включая version
+    public User copy() {
+        User copy = new User(id, name, email, age, createdAt);
+        copy.updatedAt = updatedAt;
+        copy.version = version;
+        return copy;
+    }
+
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
+        this.updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
     }
 
     public Long getId() {
@@ -82,6 +131,22 @@ public class User {
         this.createdAt = createdAt;
     }
 
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
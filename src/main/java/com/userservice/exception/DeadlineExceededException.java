@@ -0,0 +1,12 @@
+package com.userservice.exception;
+
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message, null, true, StackTraces.ENABLED);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause, true, StackTraces.ENABLED);
+    }
+}
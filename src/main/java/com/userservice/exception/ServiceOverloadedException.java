@@ -0,0 +1,12 @@
+package com.userservice.exception;
+
+public class ServiceOverloadedException extends RuntimeException {
+
+    public ServiceOverloadedException(String message) {
+        this(message, StackTraces.ENABLED);
+    }
+
+    public ServiceOverloadedException(String message, boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+    }
+}
@@ -0,0 +1,14 @@
+package com.userservice.exception;
+
+import com.userservice.config.AppConfig;
+
+// Ожидаемые исключения (не найден, занят email, ошибка валидации, перегрузка) сообщают о результате,
+// а не об ошибке в коде: их стек почти никогда не читают, а заполнение стека — основная цена throw.
+// userservice.exceptions.stackTraces=false отключает стек для всех таких исключений
+final class StackTraces {
+
+    static final boolean ENABLED = AppConfig.getBoolean("userservice.exceptions.stackTraces", true);
+
+    private StackTraces() {
+    }
+}
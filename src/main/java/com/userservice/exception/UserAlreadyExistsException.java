@@ -3,6 +3,10 @@ package com.userservice.exception;
 public class UserAlreadyExistsException extends RuntimeException {
 
     public UserAlreadyExistsException(String email) {
-        super("Пользователь с email " + email + " уже существует");
+        this(email, StackTraces.ENABLED);
     }
-}
\ No newline at end of file
+
+    public UserAlreadyExistsException(String email, boolean writableStackTrace) {
+        super("Пользователь с email " + email + " уже существует", null, true, writableStackTrace);
+    }
+}
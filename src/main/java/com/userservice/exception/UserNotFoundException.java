@@ -2,10 +2,15 @@ package com.userservice.exception;
 
 public class UserNotFoundException extends RuntimeException {
     public UserNotFoundException(String message) {
-        super(message);
+        this(message, StackTraces.ENABLED);
     }
 
     public UserNotFoundException(Long id) {
-        super("Пользователь с ID " + id + " не найден");
+        this("Пользователь с ID " + id + " не найден");
     }
-}
\ No newline at end of file
+
+    // writableStackTrace = false — исключение без стека для частых ожидаемых промахов
+    public UserNotFoundException(String message, boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+    }
+}
@@ -3,6 +3,10 @@ package com.userservice.exception;
 public class ValidationException extends RuntimeException {
 
     public ValidationException(String message) {
-        super(message);
+        this(message, StackTraces.ENABLED);
     }
-}
\ No newline at end of file
+
+    public ValidationException(String message, boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+    }
+}
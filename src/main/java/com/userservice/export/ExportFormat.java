@@ -0,0 +1,26 @@
+package com.userservice.export;
+
+public enum ExportFormat {
+    CSV("csv"),
+    NDJSON("ndjson"),
+    JSON("json");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static ExportFormat fromString(String value) {
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(value) || format.extension.equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный формат экспорта: " + value);
+    }
+}
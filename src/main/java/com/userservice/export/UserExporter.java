@@ -0,0 +1,287 @@
+package com.userservice.export;
+
+import com.userservice.entity.User;
+import com.userservice.exception.DatabaseException;
+import com.userservice.util.HibernateUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.query.Query;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+public class UserExporter {
+
+    private static final Logger logger = LogManager.getLogger(UserExporter.class);
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int fetchSize;
+
+    public UserExporter() {
+        this(DEFAULT_FETCH_SIZE);
+    }
+
+    public UserExporter(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("fetchSize должен быть положительным числом");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public long export(Path file, ExportFormat format, boolean gzip) {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            return export(out, format, gzip);
+        } catch (IOException e) {
+            logger.error("Ошибка при записи файла экспорта {}", file, e);
+            throw new DatabaseException("Не удалось экспортировать пользователей в " + file, e);
+        }
+    }
+
+    // Поток вызывающего не закрывается, только дописывается и сбрасывается
+    public long export(OutputStream out, ExportFormat format, boolean gzip) {
+        logger.info("Экспорт пользователей: format={}, gzip={}", format, gzip);
+        return export(out, format, gzip, session -> session.createNamedQuery(User.FIND_ALL_ORDER_BY_ID, User.class));
+    }
+
+    // Пользователи, созданные в [from, to), в порядке created_at — тем же курсором, что и полная выгрузка
+    public long exportCreatedBetween(OutputStream out, ExportFormat format, boolean gzip,
+                                     LocalDateTime from, LocalDateTime to) {
+        logger.info("Экспорт пользователей, созданных с {} по {}: format={}, gzip={}", from, to, format, gzip);
+        return export(out, format, gzip, session -> session.createNamedQuery(User.FIND_BY_CREATED_AT_BETWEEN, User.class)
+                .setParameter("from", from)
+                .setParameter("to", to));
+    }
+
+    private long export(OutputStream out, ExportFormat format, boolean gzip,
+                        Function<StatelessSession, Query<User>> queryFactory) {
+        long start = System.nanoTime();
+
+        GzipStream gzipOut = null;
+        try {
+            gzipOut = gzip ? new GzipStream(out) : null;
+            Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(gzipOut != null ? gzipOut : out, StandardCharsets.UTF_8),
+                    BUFFER_SIZE);
+
+            long rows = exportQuery(writer, format, queryFactory, true);
+
+            writer.flush();
+            if (gzipOut != null) {
+                gzipOut.finish();
+            }
+            out.flush();
+
+            logger.info("Экспортировано пользователей: {} за {} мс", rows, (System.nanoTime() - start) / 1_000_000);
+            return rows;
+        } catch (IOException e) {
+            logger.error("Ошибка при экспорте пользователей", e);
+            throw new DatabaseException("Не удалось экспортировать пользователей", e);
+        } finally {
+            if (gzipOut != null) {
+                gzipOut.end();
+            }
+        }
+    }
+
+    // Параллельный экспорт: таблица делится на диапазоны id, каждый диапазон пишется в свой файл
+    public ExportResult exportParallel(Path directory, String baseName, ExportFormat format,
+                                       boolean gzip, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism должен быть положительным числом");
+        }
+        logger.info("Параллельный экспорт пользователей в {}: потоков={}", directory, parallelism);
+        long start = System.nanoTime();
+
+        long[] bounds = findIdBounds();
+        if (bounds == null) {
+            logger.info("Таблица пользователей пуста, экспортировать нечего");
+            return new ExportResult(0, Collections.emptyList());
+        }
+
+        List<long[]> ranges = splitRange(bounds[0], bounds[1] + 1, parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(ranges.size());
+
+        try {
+            Files.createDirectories(directory);
+
+            List<Future<Long>> futures = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                Path file = directory.resolve(String.format("%s-%05d.%s%s",
+                        baseName, i, format.getExtension(), gzip ? ".gz" : ""));
+                files.add(file);
+                futures.add(executor.submit(() -> exportRangeToFile(file, format, gzip, range[0], range[1])));
+            }
+
+            long rows = 0;
+            for (Future<Long> future : futures) {
+                rows += future.get();
+            }
+
+            logger.info("Параллельно экспортировано пользователей: {} в {} файлов за {} мс",
+                    rows, files.size(), (System.nanoTime() - start) / 1_000_000);
+            return new ExportResult(rows, files);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Экспорт пользователей прерван", e);
+        } catch (ExecutionException e) {
+            logger.error("Ошибка при параллельном экспорте пользователей", e.getCause());
+            throw new DatabaseException("Не удалось экспортировать пользователей", e.getCause());
+        } catch (IOException e) {
+            logger.error("Ошибка при создании каталога экспорта {}", directory, e);
+            throw new DatabaseException("Не удалось экспортировать пользователей в " + directory, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long exportRangeToFile(Path file, ExportFormat format, boolean gzip,
+                                   long fromInclusive, long toExclusive) throws IOException {
+        try (OutputStream fileOut = Files.newOutputStream(file);
+             OutputStream out = gzip ? new GZIPOutputStream(fileOut, BUFFER_SIZE) : fileOut;
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+
+            long rows = exportQuery(writer, format, session -> session.createNamedQuery(User.FIND_ID_RANGE, User.class)
+                    .setParameter("from", fromInclusive)
+                    .setParameter("to", toExclusive), true);
+            logger.debug("Диапазон [{}, {}) экспортирован в {}: {} записей", fromInclusive, toExclusive, file, rows);
+            return rows;
+        }
+    }
+
+    // Однонаправленный курсор в stateless-сессии: сущности не накапливаются в контексте персистентности
+    private long exportQuery(Writer writer, ExportFormat format, Function<StatelessSession, Query<User>> queryFactory,
+                             boolean header) throws IOException {
+        UserRecordWriter recordWriter = UserRecordWriter.create(format, writer);
+        if (header) {
+            recordWriter.writeHeader();
+        }
+
+        StatelessSession session = null;
+        Transaction transaction = null;
+        long rows = 0;
+
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            // PostgreSQL использует серверный курсор только вне режима autocommit
+            transaction = session.beginTransaction();
+
+            Query<User> query = queryFactory.apply(session);
+            query.setFetchSize(fetchSize);
+            query.setReadOnly(true);
+
+            try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    recordWriter.write((User) results.get(0));
+                    rows++;
+                }
+            }
+            recordWriter.writeFooter();
+
+            transaction.commit();
+            return rows;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private long[] findIdBounds() {
+        StatelessSession session = null;
+
+        try {
+            session = HibernateUtil.getSessionFactory().openStatelessSession();
+            Object[] row = session.createNamedQuery(User.FIND_ID_BOUNDS, Object[].class)
+                    .uniqueResult();
+
+            if (row == null || row[0] == null) {
+                return null;
+            }
+            return new long[]{((Number) row[0]).longValue(), ((Number) row[1]).longValue()};
+        } catch (Exception e) {
+            logger.error("Ошибка при определении диапазона ID пользователей", e);
+            throw new DatabaseException("Не удалось определить диапазон ID пользователей", e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    static List<long[]> splitRange(long fromInclusive, long toExclusive, int parts) {
+        long total = toExclusive - fromInclusive;
+        int count = (int) Math.max(1, Math.min(parts, total));
+        long step = total / count;
+        long remainder = total % count;
+
+        List<long[]> ranges = new ArrayList<>(count);
+        long from = fromInclusive;
+        for (int i = 0; i < count; i++) {
+            long to = from + step + (i < remainder ? 1 : 0);
+            ranges.add(new long[]{from, to});
+            from = to;
+        }
+        return ranges;
+    }
+
+    public static final class ExportResult {
+        private final long rows;
+        private final List<Path> files;
+
+        public ExportResult(long rows, List<Path> files) {
+            this.rows = rows;
+            this.files = files;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public List<Path> getFiles() {
+            return files;
+        }
+    }
+
+    // GZIPOutputStream освобождает Deflater только в close(), а поток вызывающего закрывать нельзя.
+    // При ошибке окончание gzip не дописывается: оборванная выгрузка не выглядит целой
+    private static final class GzipStream extends GZIPOutputStream {
+
+        GzipStream(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+        }
+
+        void end() {
+            def.end();
+        }
+    }
+}
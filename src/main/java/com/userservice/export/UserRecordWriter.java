@@ -0,0 +1,190 @@
+package com.userservice.export;
+
+import com.userservice.entity.User;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// Пишет записи напрямую в Writer, без промежуточной строки на каждую запись
+abstract class UserRecordWriter {
+
+    protected final Writer out;
+
+    protected UserRecordWriter(Writer out) {
+        this.out = out;
+    }
+
+    static UserRecordWriter create(ExportFormat format, Writer out) {
+        switch (format) {
+            case CSV:
+                return new CsvWriter(out);
+            case NDJSON:
+                return new NdjsonWriter(out);
+            case JSON:
+                return new JsonArrayWriter(out);
+            default:
+                throw new IllegalArgumentException("Неизвестный формат экспорта: " + format);
+        }
+    }
+
+    abstract void writeHeader() throws IOException;
+
+    abstract void write(User user) throws IOException;
+
+    void writeFooter() throws IOException {
+    }
+
+    private static final class CsvWriter extends UserRecordWriter {
+
+        CsvWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            out.write("id,name,email,age,created_at\n");
+        }
+
+        @Override
+        void write(User user) throws IOException {
+            out.write(String.valueOf(user.getId()));
+            out.write(',');
+            writeField(user.getName());
+            out.write(',');
+            writeField(user.getEmail());
+            out.write(',');
+            if (user.getAge() != null) {
+                out.write(String.valueOf(user.getAge()));
+            }
+            out.write(',');
+            if (user.getCreatedAt() != null) {
+                out.write(user.getCreatedAt().toString());
+            }
+            out.write('\n');
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (!needsQuoting(value)) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    out.write('"');
+                }
+                out.write(c);
+            }
+            out.write('"');
+        }
+
+        private static boolean needsQuoting(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class NdjsonWriter extends UserRecordWriter {
+
+        NdjsonWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+        }
+
+        @Override
+        void write(User user) throws IOException {
+            writeObject(user);
+            out.write('\n');
+        }
+
+        final void writeObject(User user) throws IOException {
+            out.write("{\"id\":");
+            out.write(String.valueOf(user.getId()));
+            out.write(",\"name\":");
+            writeString(user.getName());
+            out.write(",\"email\":");
+            writeString(user.getEmail());
+            out.write(",\"age\":");
+            out.write(user.getAge() != null ? String.valueOf(user.getAge()) : "null");
+            out.write(",\"createdAt\":");
+            writeString(user.getCreatedAt() != null ? user.getCreatedAt().toString() : null);
+            out.write('}');
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                out.write("null");
+                return;
+            }
+            out.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        out.write("\\\"");
+                        break;
+                    case '\\':
+                        out.write("\\\\");
+                        break;
+                    case '\n':
+                        out.write("\\n");
+                        break;
+                    case '\r':
+                        out.write("\\r");
+                        break;
+                    case '\t':
+                        out.write("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            out.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.write(c);
+                        }
+                }
+            }
+            out.write('"');
+        }
+    }
+
+    // Один JSON-массив: запись за записью, без сборки списка в памяти
+    private static final class JsonArrayWriter extends NdjsonWriter {
+
+        private boolean first = true;
+
+        JsonArrayWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            out.write('[');
+        }
+
+        @Override
+        void write(User user) throws IOException {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            writeObject(user);
+        }
+
+        @Override
+        void writeFooter() throws IOException {
+            out.write("]\n");
+        }
+    }
+}
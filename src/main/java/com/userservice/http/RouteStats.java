@@ -0,0 +1,57 @@
+package com.userservice.http;
+
+import com.userservice.util.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Задержка запросов одного маршрута и число ответов с ошибкой
+final class RouteStats {
+
+    private final String route;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder clientErrors = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+
+    RouteStats(String route) {
+        this.route = route;
+    }
+
+    void record(int status, long latencyNanos) {
+        latency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+
+        if (status >= 500) {
+            serverErrors.increment();
+        } else if (status >= 400) {
+            clientErrors.increment();
+        }
+    }
+
+    String getRoute() {
+        return route;
+    }
+
+    long getRequests() {
+        return latency.getCount();
+    }
+
+    long getClientErrors() {
+        return clientErrors.sum();
+    }
+
+    long getServerErrors() {
+        return serverErrors.sum();
+    }
+
+    long getAvgMicros() {
+        return latency.getAvgMicros();
+    }
+
+    long getMaxMicros() {
+        return latency.getMaxMicros();
+    }
+
+    long percentileMicros(double percentile) {
+        return latency.percentileMicros(percentile);
+    }
+}
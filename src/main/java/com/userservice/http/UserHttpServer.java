@@ -0,0 +1,694 @@
+package com.userservice.http;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.userservice.changes.ChangeCursor;
+import com.userservice.changes.ChangePage;
+import com.userservice.changes.UserChange;
+import com.userservice.config.AppConfig;
+import com.userservice.dao.UserQueryWarmup;
+import com.userservice.entity.User;
+import com.userservice.exception.DatabaseException;
+import com.userservice.exception.DeadlineExceededException;
+import com.userservice.exception.ServiceOverloadedException;
+import com.userservice.exception.UserAlreadyExistsException;
+import com.userservice.exception.UserNotFoundException;
+import com.userservice.exception.ValidationException;
+import com.userservice.export.ExportFormat;
+import com.userservice.export.UserExporter;
+import com.userservice.service.SingleFlight;
+import com.userservice.service.UserService;
+import com.userservice.service.admission.AdmissionControlledUserService;
+import com.userservice.service.admission.Bulkhead;
+import com.userservice.service.admission.ConnectionBudget;
+import com.userservice.sql.SqlMonitor;
+import com.userservice.stats.RollupReconciler;
+import com.userservice.sql.StatementStats;
+import com.userservice.tracing.Span;
+import com.userservice.tracing.SpanKind;
+import com.userservice.tracing.Tracing;
+import com.userservice.util.Deadline;
+import com.userservice.util.HibernateUtil;
+import com.userservice.util.JsonWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// HTTP/JSON API поверх UserService на встроенном сервере JDK.
+// Соединения (включая keep-alive между запросами) обслуживает один поток-диспетчер на NIO-селекторе,
+// обработчики выполняются в небольшом фиксированном пуле. Списки и выгрузки пишутся потоково (chunked)
+public class UserHttpServer {
+
+    private static final Logger logger = LogManager.getLogger(UserHttpServer.class);
+
+    public static final int DEFAULT_PORT = AppConfig.getInt("userservice.http.port", 8080);
+    private static final int DEFAULT_THREADS = AppConfig.getInt("userservice.http.threads", 16);
+    private static final int STOP_GRACE_SECONDS = 5;
+    private static final int SQL_METRICS_LIMIT = 20;
+    private static final int DEFAULT_SIGNUP_DAYS = 30;
+    private static final int DEFAULT_TOP_DOMAINS = 20;
+    private static final int DEFAULT_CHANGES_PAGE = 100;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    // Срок обработки запроса; клиент может сократить его заголовком, но не продлить. 0 — без срока
+    private static final long REQUEST_TIMEOUT_MILLIS =
+            AppConfig.getLong("userservice.http.requestTimeoutMillis", 5_000);
+    private static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout-Millis";
+
+    private final UserService userService;
+    private final UserExporter exporter = new UserExporter();
+    // Выгрузки держат соединение с БД все время передачи ответа
+    private final Bulkhead exportBulkhead = ConnectionBudget.exportBulkhead();
+
+    private final List<Route> routes = new ArrayList<>();
+    private final Map<String, RouteStats> stats = new ConcurrentHashMap<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public UserHttpServer(UserService userService, int port) throws IOException {
+        this(userService, port, DEFAULT_THREADS);
+    }
+
+    public UserHttpServer(UserService userService, int port, int threads) throws IOException {
+        this.userService = userService;
+
+        route("GET", "/health", "GET /health", this::health);
+        route("GET", "/metrics", "GET /metrics", this::metrics);
+        streamingRoute("GET", "/users", "GET /users", this::listUsers);
+        route("POST", "/users", "POST /users", this::createUser);
+        route("GET", "/users/count", "GET /users/count", this::countUsers);
+        streamingRoute("GET", "/users/export", "GET /users/export", this::exportUsers);
+        route("GET", "/users/changes", "GET /users/changes", this::userChanges);
+        route("GET", "/users/(\\d+)", "GET /users/{id}", this::getUser);
+        route("PUT", "/users/(\\d+)", "PUT /users/{id}", this::updateUser);
+        route("DELETE", "/users/(\\d+)", "DELETE /users/{id}", this::deleteUser);
+        route("GET", "/stats/age", "GET /stats/age", this::ageStats);
+        route("GET", "/stats/signups", "GET /stats/signups", this::signupStats);
+        route("GET", "/stats/domains", "GET /stats/domains", this::domainStats);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "user-http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        HibernateUtil.registerShutdownAction(this::stop);
+        logger.info("HTTP API запущен на порту {}", getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Новые соединения больше не принимаются, начатые запросы дорабатывают не дольше STOP_GRACE_SECONDS
+    public void stop() {
+        if (stopped.getCount() == 0) {
+            return;
+        }
+        logger.info("Остановка HTTP API...");
+        server.stop(STOP_GRACE_SECONDS);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(STOP_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        logger.info("HTTP API остановлен");
+        stopped.countDown();
+    }
+
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    private void route(String method, String pattern, String name, Handler handler) {
+        addRoute(new Route(method, Pattern.compile(pattern), name, handler, false));
+    }
+
+    // Потоковая выгрузка идет, пока клиент читает ответ: ее ограничивает exportBulkhead, а не срок запроса
+    private void streamingRoute(String method, String pattern, String name, Handler handler) {
+        addRoute(new Route(method, Pattern.compile(pattern), name, handler, true));
+    }
+
+    private void addRoute(Route route) {
+        routes.add(route);
+        stats.put(route.name, new RouteStats(route.name));
+    }
+
+    private void handle(HttpExchange exchange) {
+        long start = System.nanoTime();
+        String routeName = "UNMATCHED";
+        int status = 500;
+        Span span = Tracing.startSpan("HTTP " + exchange.getRequestMethod(), SpanKind.SERVER);
+
+        try {
+            String path = exchange.getRequestURI().getPath();
+            boolean pathMatched = false;
+
+            for (Route route : routes) {
+                Matcher matcher = route.pattern.matcher(path);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                pathMatched = true;
+                if (route.method.equals(exchange.getRequestMethod())) {
+                    routeName = route.name;
+                    status = invoke(route, exchange, matcher);
+                    return;
+                }
+            }
+
+            status = pathMatched ? 405 : 404;
+            sendError(exchange, status, pathMatched ? "Метод не поддерживается" : "Ресурс не найден");
+        } catch (IOException e) {
+            // Клиент закрыл соединение или поток ответа оборвался после отправки заголовков
+            logger.debug("Ошибка ввода-вывода при обработке {} {}", exchange.getRequestMethod(),
+                    exchange.getRequestURI(), e);
+        } finally {
+            exchange.close();
+            RouteStats routeStats = stats.computeIfAbsent(routeName, RouteStats::new);
+            routeStats.record(status, System.nanoTime() - start);
+
+            span.updateName(routeName)
+                    .setAttribute("http.request.method", exchange.getRequestMethod())
+                    .setAttribute("http.route", routeName)
+                    .setAttribute("http.response.status_code", status);
+            if (status >= 500) {
+                span.setError("HTTP " + status);
+            }
+            span.close();
+        }
+    }
+
+    private int invoke(Route route, HttpExchange exchange, Matcher matcher) throws IOException {
+        try (Deadline.Scope deadline = route.streaming ? null : requestDeadline(exchange)) {
+            return route.handler.handle(exchange, matcher);
+        } catch (RuntimeException e) {
+            int status = statusOf(e);
+            if (exchange.getResponseCode() != -1) {
+                // Заголовки уже ушли — остается только оборвать ответ
+                logger.error("Ошибка при потоковой передаче ответа {}", route.name, e);
+                throw new IOException("Ответ прерван", e);
+            }
+            if (status >= 500) {
+                logger.error("Ошибка при обработке {}", route.name, e);
+            }
+            if (e instanceof ServiceOverloadedException) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            }
+            sendError(exchange, status, e.getMessage());
+            return status;
+        }
+    }
+
+    // null — без срока
+    private static Deadline.Scope requestDeadline(HttpExchange exchange) {
+        long timeout = REQUEST_TIMEOUT_MILLIS;
+        String header = exchange.getRequestHeaders().getFirst(REQUEST_TIMEOUT_HEADER);
+        if (header != null) {
+            long requested;
+            try {
+                requested = Long.parseLong(header.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректный " + REQUEST_TIMEOUT_HEADER + ": " + header);
+            }
+            if (requested <= 0) {
+                throw new IllegalArgumentException(REQUEST_TIMEOUT_HEADER + " должен быть положительным");
+            }
+            timeout = timeout > 0 ? Math.min(timeout, requested) : requested;
+        }
+        return timeout > 0 ? Deadline.within(Duration.ofMillis(timeout)) : null;
+    }
+
+    private static int statusOf(RuntimeException e) {
+        if (e instanceof ValidationException || e instanceof IllegalArgumentException
+                || e instanceof DateTimeParseException) {
+            return 400;
+        }
+        if (e instanceof UserNotFoundException) {
+            return 404;
+        }
+        if (e instanceof UserAlreadyExistsException) {
+            return 409;
+        }
+        if (e instanceof ServiceOverloadedException) {
+            return 503;
+        }
+        if (e instanceof DeadlineExceededException) {
+            return 504;
+        }
+        if (e instanceof DatabaseException && HibernateUtil.isDegraded()) {
+            return 503;
+        }
+        return 500;
+    }
+
+    // ---- Маршруты ----
+
+    private int health(HttpExchange exchange, Matcher matcher) throws IOException {
+        boolean degraded;
+        try {
+            // Первый вызов инициализирует SessionFactory, если к БД еще не обращались
+            HibernateUtil.getSessionFactory();
+            degraded = false;
+        } catch (DatabaseException e) {
+            degraded = true;
+        }
+        int status = degraded ? 503 : 200;
+        JsonWriter json = beginJson(exchange, status);
+        json.beginObject().name("status").value(degraded ? "DEGRADED" : "UP").endObject();
+        json.flush();
+        return status;
+    }
+
+    private int metrics(HttpExchange exchange, Matcher matcher) throws IOException {
+        JsonWriter json = beginJson(exchange, 200);
+        json.beginObject().name("routes").beginArray();
+        for (RouteStats routeStats : stats.values()) {
+            json.beginObject()
+                    .name("route").value(routeStats.getRoute())
+                    .name("requests").value(routeStats.getRequests())
+                    .name("clientErrors").value(routeStats.getClientErrors())
+                    .name("serverErrors").value(routeStats.getServerErrors())
+                    .name("avgMicros").value(routeStats.getAvgMicros())
+                    .name("p50Micros").value(routeStats.percentileMicros(0.50))
+                    .name("p99Micros").value(routeStats.percentileMicros(0.99))
+                    .name("maxMicros").value(routeStats.getMaxMicros())
+                    .endObject();
+        }
+        json.endArray();
+
+        json.name("bulkheads").beginArray();
+        writeBulkhead(json, exportBulkhead.getStats());
+        if (userService instanceof AdmissionControlledUserService) {
+            AdmissionControlledUserService admission = (AdmissionControlledUserService) userService;
+            writeBulkhead(json, admission.getInteractiveStats());
+            writeBulkhead(json, admission.getBulkStats());
+        }
+        json.endArray();
+
+        UserQueryWarmup.Report warmup = UserQueryWarmup.getLastReport();
+        if (warmup != null) {
+            json.name("statementWarmup").beginObject()
+                    .name("namedQueries").value(warmup.getNamedQueries())
+                    .name("connections").value(warmup.getConnections())
+                    .name("serverPreparedStatements").value(warmup.getServerPreparedStatements())
+                    .name("millis").value(warmup.getMillis())
+                    .endObject();
+        }
+
+        RollupReconciler.Report reconcile = RollupReconciler.getLastReport();
+        if (reconcile != null) {
+            json.name("rollupReconcile").beginObject()
+                    .name("buckets").value(reconcile.getBuckets())
+                    .name("driftedBuckets").value(reconcile.getDriftedBuckets())
+                    .name("driftUsers").value(reconcile.getDriftUsers())
+                    .name("millis").value(reconcile.getMillis())
+                    .endObject();
+        }
+
+        json.name("deadlineTimeouts").beginObject();
+        for (Map.Entry<String, Long> timeouts : Deadline.getTimeouts().entrySet()) {
+            json.name(timeouts.getKey()).value(timeouts.getValue());
+        }
+        json.endObject();
+
+        // Схлопывание одновременных одинаковых чтений (SingleFlight)
+        json.name("coalescing").beginArray();
+        for (SingleFlight.Stats flight : SingleFlight.getAllStats().values()) {
+            json.beginObject()
+                    .name("name").value(flight.getName())
+                    .name("calls").value(flight.getCalls())
+                    .name("shared").value(flight.getShared())
+                    .name("executed").value(flight.getExecuted())
+                    .name("inFlight").value(flight.getInFlight())
+                    .name("hitRate").value(flight.getHitRate())
+                    .endObject();
+        }
+        json.endArray();
+
+        // Формы SQL с наибольшим суммарным временем
+        json.name("sql").beginArray();
+        List<StatementStats> sqlStats = SqlMonitor.getStats();
+        for (StatementStats statement : sqlStats.subList(0, Math.min(SQL_METRICS_LIMIT, sqlStats.size()))) {
+            json.beginObject()
+                    .name("shape").value(statement.getShape())
+                    .name("executions").value(statement.getExecutions())
+                    .name("errors").value(statement.getErrors())
+                    .name("totalMicros").value(statement.getTotalMicros())
+                    .name("avgMicros").value(statement.getAvgMicros())
+                    .name("p99Micros").value(statement.percentileMicros(0.99))
+                    .name("maxMicros").value(statement.getMaxMicros())
+                    .name("rowsReturned").value(statement.getRowsReturned())
+                    .name("rowsAffected").value(statement.getRowsAffected())
+                    .name("slowExecutions").value(statement.getSlowExecutions())
+                    .name("nPlusOneSuspects").value(statement.getNPlusOneSuspects())
+                    .endObject();
+        }
+        json.endArray().endObject();
+        json.flush();
+        return 200;
+    }
+
+    private static void writeBulkhead(JsonWriter json, Bulkhead.Stats bulkhead) throws IOException {
+        json.beginObject()
+                .name("name").value(bulkhead.getName())
+                .name("limit").value(bulkhead.getLimit())
+                .name("inFlight").value(bulkhead.getInFlight())
+                .name("queued").value(bulkhead.getQueued())
+                .name("accepted").value(bulkhead.getAccepted())
+                .name("rejected").value(bulkhead.getRejected())
+                .name("timedOut").value(bulkhead.getTimedOut())
+                .endObject();
+    }
+
+    // GET /users?email=... | ?createdFrom=...&createdTo=... | без параметров — вся таблица курсором
+    private int listUsers(HttpExchange exchange, Matcher matcher) throws IOException {
+        Map<String, String> query = queryParams(exchange);
+
+        String email = query.get("email");
+        if (email != null) {
+            Optional<User> user;
+            try (Deadline.Scope ignored = requestDeadline(exchange)) {
+                user = userService.findUserByEmail(email);
+            }
+            return sendUser(exchange, user, "Пользователь с email " + email + " не найден");
+        }
+
+        String from = query.get("createdFrom");
+        String to = query.get("createdTo");
+        if (from != null || to != null) {
+            if (from == null || to == null) {
+                throw new IllegalArgumentException("Нужны оба параметра: createdFrom и createdTo");
+            }
+            LocalDateTime createdFrom = LocalDateTime.parse(from);
+            LocalDateTime createdTo = LocalDateTime.parse(to);
+            if (!createdFrom.isBefore(createdTo)) {
+                throw new ValidationException("Начало периода должно быть раньше конца");
+            }
+            return streamExport(exchange, ExportFormat.JSON,
+                    (out, gzip) -> exporter.exportCreatedBetween(out, ExportFormat.JSON, gzip, createdFrom, createdTo));
+        }
+
+        return streamExport(exchange, ExportFormat.JSON);
+    }
+
+    private int exportUsers(HttpExchange exchange, Matcher matcher) throws IOException {
+        String format = queryParams(exchange).get("format");
+        return streamExport(exchange, format != null ? ExportFormat.fromString(format) : ExportFormat.NDJSON);
+    }
+
+    private int streamExport(HttpExchange exchange, ExportFormat format) throws IOException {
+        return streamExport(exchange, format, (out, gzip) -> exporter.export(out, format, gzip));
+    }
+
+    private int streamExport(HttpExchange exchange, ExportFormat format, ExportWork work) throws IOException {
+        boolean gzip = acceptsGzip(exchange);
+
+        exportBulkhead.acquire();
+        long start = System.nanoTime();
+        try {
+            // Недоступность БД должна стать кодом ответа, а не пустым телом после 200
+            HibernateUtil.getSessionFactory();
+
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", contentTypeOf(format));
+            if (gzip) {
+                headers.set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, 0);
+            work.write(exchange.getResponseBody(), gzip);
+            return 200;
+        } finally {
+            exportBulkhead.release(System.nanoTime() - start);
+        }
+    }
+
+    private int createUser(HttpExchange exchange, Matcher matcher) throws IOException {
+        Map<String, Object> body = readBody(exchange);
+        User user = userService.createUser(stringField(body, "name"), stringField(body, "email"),
+                intField(body, "age"));
+        exchange.getResponseHeaders().set("Location", "/users/" + user.getId());
+        return sendUser(exchange, 201, user);
+    }
+
+    private int countUsers(HttpExchange exchange, Matcher matcher) throws IOException {
+        long count = userService.getUserCount();
+        JsonWriter json = beginJson(exchange, 200);
+        json.beginObject().name("count").value(count).endObject();
+        json.flush();
+        return 200;
+    }
+
+    private int getUser(HttpExchange exchange, Matcher matcher) throws IOException {
+        long id = Long.parseLong(matcher.group(1));
+        return sendUser(exchange, userService.findUserById(id), "Пользователь с ID " + id + " не найден");
+    }
+
+    // Отсутствующие или пустые поля не меняются
+    private int updateUser(HttpExchange exchange, Matcher matcher) throws IOException {
+        Map<String, Object> body = readBody(exchange);
+        User user = userService.updateUser(Long.parseLong(matcher.group(1)), stringField(body, "name"),
+                stringField(body, "email"), intField(body, "age"));
+        return sendUser(exchange, 200, user);
+    }
+
+    private int deleteUser(HttpExchange exchange, Matcher matcher) throws IOException {
+        userService.deleteUser(Long.parseLong(matcher.group(1)));
+        exchange.sendResponseHeaders(204, -1);
+        return 204;
+    }
+
+    // GET /users/changes?cursor=...&limit=100: без курсора — с начала ленты
+    private int userChanges(HttpExchange exchange, Matcher matcher) throws IOException {
+        Map<String, String> query = queryParams(exchange);
+        ChangeCursor cursor = query.containsKey("cursor") ? ChangeCursor.parse(query.get("cursor")) : null;
+        int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : DEFAULT_CHANGES_PAGE;
+        ChangePage page = userService.getChangesSince(cursor, limit);
+
+        JsonWriter json = beginJson(exchange, 200);
+        json.beginObject().name("changes").beginArray();
+        for (UserChange change : page.getChanges()) {
+            json.beginObject()
+                    .name("id").value(change.getUserId())
+                    .name("changedAt").value(change.getChangedAt().toString())
+                    .name("deleted").value(change.isDeleted());
+            if (!change.isDeleted()) {
+                json.name("user").user(change.getUser());
+            }
+            json.endObject();
+        }
+        json.endArray()
+                .name("cursor").value(page.getNext().toString())
+                .name("hasMore").value(page.hasMore())
+                .endObject();
+        json.flush();
+        return 200;
+    }
+
+    private int ageStats(HttpExchange exchange, Matcher matcher) throws IOException {
+        return sendCounts(exchange, "bucket", userService.getAgeDistribution());
+    }
+
+    // GET /stats/signups?from=2024-01-01&to=2024-01-31; по умолчанию — последние 30 дней
+    private int signupStats(HttpExchange exchange, Matcher matcher) throws IOException {
+        Map<String, String> query = queryParams(exchange);
+        LocalDate to = query.containsKey("to") ? LocalDate.parse(query.get("to")) : LocalDate.now();
+        LocalDate from = query.containsKey("from")
+                ? LocalDate.parse(query.get("from"))
+                : to.minusDays(DEFAULT_SIGNUP_DAYS - 1);
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        userService.getSignupsPerDay(from, to).forEach((day, count) -> counts.put(day.toString(), count));
+        return sendCounts(exchange, "day", counts);
+    }
+
+    // GET /stats/domains?limit=20
+    private int domainStats(HttpExchange exchange, Matcher matcher) throws IOException {
+        String limit = queryParams(exchange).get("limit");
+        return sendCounts(exchange, "domain",
+                userService.getTopEmailDomains(limit != null ? Integer.parseInt(limit) : DEFAULT_TOP_DOMAINS));
+    }
+
+    // ---- Вспомогательные методы ----
+
+    private static int sendCounts(HttpExchange exchange, String key, Map<String, Long> counts) throws IOException {
+        JsonWriter json = beginJson(exchange, 200);
+        json.beginArray();
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            json.beginObject().name(key).value(entry.getKey()).name("count").value(entry.getValue()).endObject();
+        }
+        json.endArray();
+        json.flush();
+        return 200;
+    }
+
+    private static int sendUser(HttpExchange exchange, int status, User user) throws IOException {
+        JsonWriter json = beginJson(exchange, status);
+        json.user(user);
+        json.flush();
+        return status;
+    }
+
+    // Промах поиска отвечает 404 без исключения
+    private static int sendUser(HttpExchange exchange, Optional<User> user, String notFoundMessage) throws IOException {
+        if (user.isPresent()) {
+            return sendUser(exchange, 200, user.get());
+        }
+        sendError(exchange, 404, notFoundMessage);
+        return 404;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonWriter json = beginJson(exchange, status);
+        json.beginObject().name("error").value(message).endObject();
+        json.flush();
+    }
+
+    // Ответ передается chunked: длина тела заранее не вычисляется и не буферизуется
+    private static JsonWriter beginJson(HttpExchange exchange, int status) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, 0);
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), BUFFER_SIZE);
+        return new JsonWriter(writer);
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+                if (body.size() > MAX_BODY_BYTES) {
+                    throw new IllegalArgumentException("Тело запроса больше " + MAX_BODY_BYTES + " байт");
+                }
+            }
+        }
+        if (body.size() == 0) {
+            throw new IllegalArgumentException("Пустое тело запроса");
+        }
+        return JsonReader.parseObject(body.toString(StandardCharsets.UTF_8));
+    }
+
+    private static String stringField(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException("Поле " + name + " должно быть строкой");
+        }
+        return (String) value;
+    }
+
+    private static Integer intField(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof Long) || (Long) value < Integer.MIN_VALUE || (Long) value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Поле " + name + " должно быть целым числом");
+        }
+        return ((Long) value).intValue();
+    }
+
+    private static Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    private static String contentTypeOf(ExportFormat format) {
+        switch (format) {
+            case CSV:
+                return "text/csv; charset=utf-8";
+            case NDJSON:
+                return "application/x-ndjson; charset=utf-8";
+            default:
+                return JSON_TYPE;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        int handle(HttpExchange exchange, Matcher matcher) throws IOException;
+    }
+
+    // Запись тела выгрузки после заголовков ответа; gzip — клиент принимает сжатый ответ
+    @FunctionalInterface
+    private interface ExportWork {
+        void write(OutputStream out, boolean gzip);
+    }
+
+    private static final class Route {
+        private final String method;
+        private final Pattern pattern;
+        private final String name;
+        private final Handler handler;
+        private final boolean streaming;
+
+        Route(String method, Pattern pattern, String name, Handler handler, boolean streaming) {
+            this.method = method;
+            this.pattern = pattern;
+            this.name = name;
+            this.handler = handler;
+            this.streaming = streaming;
+        }
+    }
+}
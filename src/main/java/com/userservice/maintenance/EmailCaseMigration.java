@@ -0,0 +1,236 @@
+package com.userservice.maintenance;
+
+import com.userservice.batch.BatchJobRunner;
+import com.userservice.exception.DatabaseException;
+import com.userservice.partition.UserPartitionManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Переход на email без учета регистра: поиск дублей, различающихся только регистром,
+// приведение остальных адресов к нижнему регистру и уникальный индекс по lower(email)
+public class EmailCaseMigration {
+
+    private static final Logger logger = LogManager.getLogger(EmailCaseMigration.class);
+
+    private static final String INDEX_NAME = "ux_users_email_lower";
+    private static final int PARALLEL_WORKERS = 4;
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private final SessionFactory sessionFactory;
+
+    public EmailCaseMigration(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    // Индекс не создается, пока в таблице есть дубли по регистру — они попадут в отчет
+    public boolean ensureUniqueIndex() {
+        if (UserPartitionManager.isEnabled()) {
+            // Для секционированной таблицы уникальность держит user_emails
+            return true;
+        }
+
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            return session.doReturningWork(connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(true);
+                try {
+                    return createUniqueIndex(connection);
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    // CREATE INDEX CONCURRENTLY не блокирует запись в users, но выполняется только вне транзакции
+    // (connection в режиме autocommit). Прерванная сборка оставляет невалидный индекс — он удаляется
+    // перед повторной попыткой, иначе IF NOT EXISTS его пропустит
+    public static boolean createUniqueIndex(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery("SELECT c.relkind FROM pg_class c "
+                    + "WHERE c.oid = to_regclass('users')")) {
+                if (resultSet.next() && "p".equals(resultSet.getString(1))) {
+                    // Для секционированной таблицы уникальность держит user_emails
+                    return true;
+                }
+            }
+
+            try (ResultSet resultSet = statement.executeQuery("SELECT i.indisvalid FROM pg_index i "
+                    + "WHERE i.indexrelid = to_regclass('" + INDEX_NAME + "')")) {
+                if (resultSet.next() && !resultSet.getBoolean(1)) {
+                    logger.warn("Удаление невалидного индекса {} после прерванной сборки", INDEX_NAME);
+                    statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME);
+                }
+            }
+
+            statement.execute("CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS " + INDEX_NAME
+                    + " ON users (lower(email))");
+            return true;
+        } catch (SQLException e) {
+            if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                throw e;
+            }
+            logger.warn("Уникальный индекс по lower(email) не создан: в users есть email, различающиеся только "
+                    + "регистром. Запустите normalize-emails для отчета", e);
+            // Невалидный остаток сборки удаляется сразу, чтобы не замедлять запись
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME);
+            }
+            return false;
+        }
+    }
+
+    // Один проход по таблице: GROUP BY lower(email) с параллельным сканированием и агрегацией
+    public List<DuplicateGroup> findCaseDuplicates() {
+        List<DuplicateGroup> duplicates = new ArrayList<>();
+
+        doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LOCAL max_parallel_workers_per_gather = " + PARALLEL_WORKERS);
+                try (ResultSet resultSet = statement.executeQuery(
+                        "SELECT lower(email), array_agg(id ORDER BY id), array_agg(email ORDER BY id) "
+                                + "FROM users GROUP BY lower(email) HAVING count(*) > 1 ORDER BY 1")) {
+                    while (resultSet.next()) {
+                        duplicates.add(new DuplicateGroup(resultSet.getString(1),
+                                Arrays.asList((Long[]) toArray(resultSet.getArray(2))),
+                                Arrays.asList((String[]) toArray(resultSet.getArray(3)))));
+                    }
+                }
+            }
+        });
+
+        logger.info("Групп email, различающихся только регистром: {}", duplicates.size());
+        for (DuplicateGroup group : duplicates) {
+            logger.warn("Дубли email {}: {}", group.getCanonicalEmail(), group);
+        }
+        return duplicates;
+    }
+
+    // Дубли не трогаются: их разрешение требует решения о слиянии учетных записей.
+    // Порциями через BatchJobRunner: без долгой блокировки строк и с продолжением после сбоя
+    public int normalizeNonConflicting() {
+        BatchJobRunner.Progress progress =
+                BatchJobRunner.fromProperties(sessionFactory).run(new NormalizeEmailsJob());
+        if (progress.getFailedRanges() > 0) {
+            throw new DatabaseException("Нормализация email не завершена: диапазонов с ошибкой "
+                    + progress.getFailedRanges());
+        }
+        logger.info("Email приведены к нижнему регистру: {}", progress.getModifiedRows());
+        return (int) progress.getModifiedRows();
+    }
+
+    public Report run(boolean apply) {
+        List<DuplicateGroup> duplicates = findCaseDuplicates();
+        int normalized = apply ? normalizeNonConflicting() : 0;
+        boolean indexCreated = apply && duplicates.isEmpty() && ensureUniqueIndex();
+        return new Report(duplicates, normalized, indexCreated);
+    }
+
+    private static Object[] toArray(Array array) throws SQLException {
+        try {
+            return (Object[]) array.getArray();
+        } finally {
+            array.free();
+        }
+    }
+
+    private void doWork(SqlWork work) {
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            session.doWork(connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    work.execute(connection);
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void execute(Connection connection) throws SQLException;
+    }
+
+    public static final class DuplicateGroup {
+        private final String canonicalEmail;
+        private final List<Long> ids;
+        private final List<String> emails;
+
+        DuplicateGroup(String canonicalEmail, List<Long> ids, List<String> emails) {
+            this.canonicalEmail = canonicalEmail;
+            this.ids = ids;
+            this.emails = emails;
+        }
+
+        public String getCanonicalEmail() {
+            return canonicalEmail;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        public List<String> getEmails() {
+            return emails;
+        }
+
+        @Override
+        public String toString() {
+            return "ids=" + ids + ", emails=" + emails;
+        }
+    }
+
+    public static final class Report {
+        private final List<DuplicateGroup> duplicates;
+        private final int normalized;
+        private final boolean indexCreated;
+
+        Report(List<DuplicateGroup> duplicates, int normalized, boolean indexCreated) {
+            this.duplicates = Collections.unmodifiableList(duplicates);
+            this.normalized = normalized;
+            this.indexCreated = indexCreated;
+        }
+
+        public List<DuplicateGroup> getDuplicates() {
+            return duplicates;
+        }
+
+        public int getNormalized() {
+            return normalized;
+        }
+
+        public boolean isIndexCreated() {
+            return indexCreated;
+        }
+    }
+}
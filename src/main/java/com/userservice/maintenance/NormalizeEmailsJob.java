@@ -0,0 +1,54 @@
+package com.userservice.maintenance;
+
+import com.userservice.batch.UserBatchJob;
+import com.userservice.cache.UserInvalidation;
+import com.userservice.entity.User;
+import com.userservice.outbox.OutboxEventType;
+import com.userservice.outbox.UserOutbox;
+import com.userservice.util.Emails;
+import org.hibernate.StatelessSession;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Приведение email к нижнему регистру порциями вместо одного UPDATE на всю таблицу.
+// Адреса, у которых есть дубль по регистру, не трогаются — они остаются в отчете EmailCaseMigration.
+// Каждое изменение проходит как обычное обновление: событие в outbox, сброс кэшей, сдвиг updatedAt
+// для ленты изменений. Сводки по доменам не меняются — домены в них уже в нижнем регистре
+public class NormalizeEmailsJob implements UserBatchJob {
+
+    public static final String NAME = "normalize-emails";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int process(StatelessSession session, List<User> chunk) {
+        int modified = 0;
+        for (User user : chunk) {
+            String canonical = Emails.canonical(user.getEmail());
+            if (canonical == null || canonical.equals(user.getEmail()) || hasCaseDuplicate(session, user, canonical)) {
+                continue;
+            }
+            user.setEmail(canonical);
+            // Stateless-сессия не вызывает @PreUpdate
+            user.setUpdatedAt(LocalDateTime.now());
+            session.update(user);
+            UserOutbox.append(session, OutboxEventType.USER_UPDATED, user);
+            UserInvalidation.publish(session, user);
+            modified++;
+        }
+        return modified;
+    }
+
+    private static boolean hasCaseDuplicate(StatelessSession session, User user, String canonical) {
+        Number duplicates = (Number) session.createNativeQuery("SELECT count(*) AS total FROM users "
+                        + "WHERE lower(email) = :email AND id <> :id")
+                .setParameter("email", canonical)
+                .setParameter("id", user.getId())
+                .uniqueResult();
+        return duplicates.longValue() > 0;
+    }
+}
@@ -0,0 +1,62 @@
+package com.userservice.maintenance;
+
+import com.userservice.batch.UserBatchJob;
+import com.userservice.entity.User;
+import com.userservice.validation.UserValidator;
+import com.userservice.validation.ValidationError;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.StatelessSession;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Проверка сохраненных пользователей по текущим правилам UserValidator, например после ужесточения правил.
+// Только чтение: нарушения считаются по видам, первые id попадают в лог.
+// При продолжении прерванного запуска счетчики покрывают лишь строки этого запуска
+public class RevalidateUsersJob implements UserBatchJob {
+
+    private static final Logger logger = LogManager.getLogger(RevalidateUsersJob.class);
+
+    public static final String NAME = "revalidate-users";
+    private static final int LOGGED_USERS = 20;
+
+    private final UserValidator validator = new UserValidator();
+    private final Map<ValidationError, LongAdder> errors = new ConcurrentHashMap<>();
+    private final AtomicInteger logged = new AtomicInteger();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int process(StatelessSession session, List<User> chunk) {
+        for (User user : chunk) {
+            record(user, validator.checkName(user.getName()));
+            record(user, validator.checkEmail(user.getEmail()));
+            record(user, validator.checkAge(user.getAge()));
+        }
+        return 0;
+    }
+
+    public Map<ValidationError, Long> getErrors() {
+        Map<ValidationError, Long> result = new EnumMap<>(ValidationError.class);
+        errors.forEach((error, count) -> result.put(error, count.sum()));
+        return result;
+    }
+
+    private void record(User user, ValidationError error) {
+        if (error == null) {
+            return;
+        }
+        errors.computeIfAbsent(error, key -> new LongAdder()).increment();
+        if (logged.getAndIncrement() < LOGGED_USERS) {
+            logger.warn("Пользователь id={} не проходит проверку: {}", user.getId(), error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.userservice.migration;
+
+import com.userservice.config.AppConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+
+import java.util.Collections;
+
+// Версионные миграции схемы (Flyway): SQL-скрипты из db/migration и Java-миграции этого пакета.
+// Узлы, стартующие одновременно, выполняют миграции по очереди под advisory lock Flyway.
+// Блокировка сессионная, а не транзакционная: CREATE INDEX CONCURRENTLY ждет завершения всех
+// открытых транзакций, в том числе той, что держала бы транзакционную блокировку
+public final class SchemaMigrations {
+
+    private static final Logger logger = LogManager.getLogger(SchemaMigrations.class);
+
+    public static final boolean ENABLED = AppConfig.getBoolean("userservice.db.migrate", true);
+
+    private SchemaMigrations() {
+    }
+
+    public static Flyway flyway(String url, String username, String password) {
+        return Flyway.configure()
+                .dataSource(url, username, password)
+                .locations("classpath:db/migration")
+                .javaMigrations(new UsersEmailLowerIndexMigration(), new UsersStatsIndexesMigration(),
+                        new UsersUpdatedAtIndexMigration())
+                // Базы, созданные hbm2ddl до появления миграций: история начинается с версии 0,
+                // а скрипты с IF NOT EXISTS выполняются поверх существующих таблиц
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .configuration(Collections.singletonMap("flyway.postgresql.transactional.lock", "false"))
+                .load();
+    }
+
+    public static MigrateResult migrate(String url, String username, String password) {
+        long start = System.nanoTime();
+        MigrateResult result = flyway(url, username, password).migrate();
+        logger.info("Миграции схемы: применено {}, версия схемы {}, {} мс", result.migrationsExecuted,
+                result.targetSchemaVersion != null ? result.targetSchemaVersion : result.initialSchemaVersion,
+                (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+}
@@ -0,0 +1,43 @@
+package com.userservice.migration;
+
+import com.userservice.config.EmbeddedDatabase;
+import com.userservice.maintenance.EmailCaseMigration;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+
+// Уникальный индекс по lower(email). Java, а не SQL: индекс не нужен секционированной таблице,
+// а дубли по регистру в старых базах не должны останавливать старт — EmailCaseMigration
+// сообщает о них, индекс создается позже командой normalize-emails --apply
+class UsersEmailLowerIndexMigration implements JavaMigration {
+
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("2");
+    }
+
+    @Override
+    public String getDescription() {
+        return "users email lower unique index";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+
+    // CREATE INDEX CONCURRENTLY выполняется только вне транзакции
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        // Во встроенной H2 выражений в индексах нет; email там хранится в каноническом виде под UNIQUE
+        if (EmbeddedDatabase.isEmbedded(context.getConnection())) {
+            return;
+        }
+        EmailCaseMigration.createUniqueIndex(context.getConnection());
+    }
+}
@@ -0,0 +1,88 @@
+package com.userservice.migration;
+
+import com.userservice.config.EmbeddedDatabase;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Индексы для GROUP BY сводок (UserStatsDao, источник QUERY): по age — распределение читается из индекса,
+// по created_at — регистрации за период. На обычной таблице строятся CONCURRENTLY, не блокируя запись;
+// секционированной таблице индексы создает UserPartitionManager
+class UsersStatsIndexesMigration implements JavaMigration {
+
+    private static final Logger logger = LogManager.getLogger(UsersStatsIndexesMigration.class);
+
+    private static final String[][] INDEXES = {
+            {"idx_users_age", "age"},
+            {"idx_users_created_at", "created_at"}
+    };
+
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("5");
+    }
+
+    @Override
+    public String getDescription() {
+        return "users stats indexes";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            if (EmbeddedDatabase.isEmbedded(connection)) {
+                for (String[] index : INDEXES) {
+                    statement.execute("CREATE INDEX IF NOT EXISTS " + index[0] + " ON users (" + index[1] + ")");
+                }
+                return;
+            }
+
+            if (isPartitioned(statement)) {
+                return;
+            }
+
+            for (String[] index : INDEXES) {
+                createConcurrently(statement, index[0], index[1]);
+            }
+        }
+    }
+
+    static boolean isPartitioned(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SELECT c.relkind FROM pg_class c "
+                + "WHERE c.oid = to_regclass('users')")) {
+            return resultSet.next() && "p".equals(resultSet.getString(1));
+        }
+    }
+
+    // Прерванная сборка оставляет невалидный индекс, который IF NOT EXISTS пропустил бы
+    static void createConcurrently(Statement statement, String name, String columns) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SELECT i.indisvalid FROM pg_index i "
+                + "WHERE i.indexrelid = to_regclass('" + name + "')")) {
+            if (resultSet.next() && !resultSet.getBoolean(1)) {
+                logger.warn("Удаление невалидного индекса {} после прерванной сборки", name);
+                statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+            }
+        }
+        long start = System.nanoTime();
+        statement.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " ON users (" + columns + ")");
+        logger.info("Индекс {} готов за {} мс", name, (System.nanoTime() - start) / 1_000_000);
+    }
+}
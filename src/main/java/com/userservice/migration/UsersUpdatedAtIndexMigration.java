@@ -0,0 +1,48 @@
+package com.userservice.migration;
+
+import com.userservice.config.EmbeddedDatabase;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+// Индекс (updated_at, id) для ленты изменений: страница читается диапазоном индекса от курсора.
+// На обычной таблице строится CONCURRENTLY; секционированной таблице его создает UserPartitionManager
+class UsersUpdatedAtIndexMigration implements JavaMigration {
+
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("7");
+    }
+
+    @Override
+    public String getDescription() {
+        return "users updated_at index";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            if (EmbeddedDatabase.isEmbedded(connection)) {
+                statement.execute("CREATE INDEX IF NOT EXISTS idx_users_updated_at ON users (updated_at, id)");
+                return;
+            }
+            if (!UsersStatsIndexesMigration.isPartitioned(statement)) {
+                UsersStatsIndexesMigration.createConcurrently(statement, "idx_users_updated_at", "updated_at, id");
+            }
+        }
+    }
+}
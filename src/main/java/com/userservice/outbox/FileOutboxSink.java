@@ -0,0 +1,67 @@
+package com.userservice.outbox;
+
+import com.userservice.entity.User;
+import com.userservice.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Дописывает события в файл NDJSON. Пачка считается доставленной после fsync:
+// при сбое до него пачка повторится, и в файле возможны дубли событий с тем же eventId
+public class FileOutboxSink implements OutboxSink {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private FileChannel channel;
+    private Writer writer;
+
+    public FileOutboxSink(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) throws IOException {
+        if (writer == null) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel),
+                    StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        for (OutboxEvent event : events) {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject()
+                    .name("eventId").value(event.getId())
+                    .name("type").value(event.getType().name())
+                    .name("userId").value(event.getUserId())
+                    .name("createdAt").value(event.getCreatedAt().toString());
+
+            User user = event.getUser();
+            if (user != null) {
+                json.name("user").user(user);
+            }
+            json.endObject();
+            writer.write('\n');
+        }
+        writer.flush();
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.userservice.outbox;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Ограниченная очередь в памяти процесса. Переполненная очередь тормозит ретранслятор,
+// а не теряет события: пачка, не поместившаяся за offerTimeout, будет отправлена повторно
+public class InMemoryOutboxSink implements OutboxSink {
+
+    private final BlockingQueue<OutboxEvent> queue;
+    private final long offerTimeoutMillis;
+
+    public InMemoryOutboxSink(int capacity, long offerTimeoutMillis) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) throws IOException {
+        try {
+            for (OutboxEvent event : events) {
+                if (!queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Очередь событий outbox переполнена");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Доставка событий outbox прервана");
+        }
+    }
+
+    public OutboxEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    public List<OutboxEvent> drain(int maxEvents) {
+        List<OutboxEvent> events = new ArrayList<>(Math.min(maxEvents, queue.size()));
+        queue.drainTo(events, maxEvents);
+        return events;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,62 @@
+package com.userservice.outbox;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Заменитель брокера сообщений для локального запуска: синхронная рассылка подписчикам.
+// Для каждого подписчика хранится последний обработанный eventId, поэтому повторно доставленная
+// пачка не обрабатывается им дважды — так же, как это делал бы идемпотентный потребитель брокера
+public class LocalBrokerSink implements OutboxSink {
+
+    private static final Logger logger = LogManager.getLogger(LocalBrokerSink.class);
+
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    public void subscribe(String subscriber, Consumer<OutboxEvent> handler) {
+        if (subscriptions.putIfAbsent(subscriber, new Subscription(handler)) != null) {
+            throw new IllegalArgumentException("Подписчик " + subscriber + " уже зарегистрирован");
+        }
+    }
+
+    public void unsubscribe(String subscriber) {
+        subscriptions.remove(subscriber);
+    }
+
+    // Ошибка любого подписчика возвращает пачку ретранслятору; подписчики, уже получившие
+    // события, при повторе их пропустят
+    @Override
+    public void publish(List<OutboxEvent> events) throws IOException {
+        for (Map.Entry<String, Subscription> entry : subscriptions.entrySet()) {
+            Subscription subscription = entry.getValue();
+            synchronized (subscription) {
+                for (OutboxEvent event : events) {
+                    if (event.getId() <= subscription.lastEventId) {
+                        continue;
+                    }
+                    try {
+                        subscription.handler.accept(event);
+                    } catch (RuntimeException e) {
+                        logger.warn("Подписчик {} не обработал событие {}", entry.getKey(), event.getId(), e);
+                        throw new IOException("Подписчик " + entry.getKey() + " не обработал событие " + event.getId(), e);
+                    }
+                    subscription.lastEventId = event.getId();
+                }
+            }
+        }
+    }
+
+    private static final class Subscription {
+        private final Consumer<OutboxEvent> handler;
+        private long lastEventId;
+
+        Subscription(Consumer<OutboxEvent> handler) {
+            this.handler = handler;
+        }
+    }
+}
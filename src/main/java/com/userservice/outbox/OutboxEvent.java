@@ -0,0 +1,56 @@
+package com.userservice.outbox;
+
+import com.userservice.codec.UserCodec;
+import com.userservice.entity.User;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+
+// Событие из таблицы user_outbox. id растет монотонно и служит ключом идемпотентности у получателя:
+// доставка «как минимум один раз», поэтому повтор уже обработанного события возможен
+public final class OutboxEvent {
+
+    private final long id;
+    private final OutboxEventType type;
+    private final Long userId;
+    private final byte[] payload;
+    private final LocalDateTime createdAt;
+
+    public OutboxEvent(long id, OutboxEventType type, Long userId, byte[] payload, LocalDateTime createdAt) {
+        this.id = id;
+        this.type = type;
+        this.userId = userId;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public OutboxEventType getType() {
+        return type;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    // Состояние пользователя после изменения в формате UserCodec; null для ALL_USERS_DELETED и USER_ARCHIVED
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public User getUser() {
+        return payload != null ? UserCodec.decode(ByteBuffer.wrap(payload)) : null;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxEvent{id=" + id + ", type=" + type + ", userId=" + userId + ", createdAt=" + createdAt + '}';
+    }
+}
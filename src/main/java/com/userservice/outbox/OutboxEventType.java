@@ -0,0 +1,10 @@
+package com.userservice.outbox;
+
+public enum OutboxEventType {
+    USER_CREATED,
+    USER_UPDATED,
+    USER_DELETED,
+    ALL_USERS_DELETED,
+    // Пользователь ушел в архив вместе с секцией users (см. UserPartitionManager)
+    USER_ARCHIVED
+}
@@ -0,0 +1,358 @@
+package com.userservice.outbox;
+
+import com.userservice.config.AppConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ретранслятор outbox: пачками читает user_outbox в порядке id, передает пачку получателю
+// и только после успешной доставки сдвигает контрольную точку и удаляет доставленные события.
+// id выдаются до фиксации, поэтому событие с меньшим id может стать видимым позже большего:
+// контрольная точка не переходит пропуск в id, пока не завершатся все транзакции, которые могли
+// его занять (см. contiguousPrefix). Долгая пишущая транзакция задерживает доставку последующих событий.
+// Сбой между доставкой и фиксацией контрольной точки приводит к повторной доставке (at-least-once).
+// Одновременно пачку обрабатывает только один экземпляр с данным именем (advisory-блокировка)
+// Ретрансляторы с разными именами получают каждый все события; строку выведенного из работы
+// ретранслятора нужно удалить из user_outbox_checkpoint, иначе очистка outbox остановится
+public class OutboxRelay implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(OutboxRelay.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 200;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final String name;
+    private final SessionFactory sessionFactory;
+    private final OutboxSink sink;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+
+    private final ScheduledExecutorService scheduler;
+    private final Object drainLock = new Object();
+    // Начало пропуска в id -> xmax снимка при первом появлении пропуска; под drainLock
+    private final Map<Long, Long> gapHorizons = new HashMap<>();
+    private volatile boolean closed;
+    private int consecutiveFailures;
+    private long retryAtNanos;
+
+    private final long startedAtNanos = System.nanoTime();
+    private final AtomicLong checkpoint = new AtomicLong(-1);
+    private final LongAdder publishedEvents = new LongAdder();
+    private final LongAdder publishedBatches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder skippedIds = new LongAdder();
+    private final LongAdder publishNanos = new LongAdder();
+
+    public OutboxRelay(String name, SessionFactory sessionFactory, OutboxSink sink) {
+        this(name, sessionFactory, sink, DEFAULT_BATCH_SIZE, DEFAULT_POLL_INTERVAL_MILLIS);
+    }
+
+    public OutboxRelay(String name, SessionFactory sessionFactory, OutboxSink sink, int batchSize,
+                       long pollIntervalMillis) {
+        if (batchSize <= 0 || pollIntervalMillis <= 0) {
+            throw new IllegalArgumentException("batchSize и pollIntervalMillis должны быть положительными");
+        }
+        this.name = name;
+        this.sessionFactory = sessionFactory;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // userservice.outbox.sink=file:<путь> включает ретрансляцию в файл NDJSON; без свойства — null
+    public static OutboxRelay fromProperties(SessionFactory sessionFactory) {
+        String sink = AppConfig.getString("userservice.outbox.sink");
+        if (sink == null || sink.isEmpty()) {
+            return null;
+        }
+        if (!sink.startsWith("file:")) {
+            throw new IllegalArgumentException("Неизвестный получатель outbox: " + sink);
+        }
+        return new OutboxRelay(AppConfig.getString("userservice.outbox.relay", "default"), sessionFactory,
+                new FileOutboxSink(Paths.get(sink.substring("file:".length()))),
+                AppConfig.getInt("userservice.outbox.batchSize", DEFAULT_BATCH_SIZE),
+                AppConfig.getLong("userservice.outbox.pollMillis", DEFAULT_POLL_INTERVAL_MILLIS));
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::drain, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Ретранслятор outbox {} запущен: batchSize={}, интервал={} мс", name, batchSize, pollIntervalMillis);
+    }
+
+    // Выбирает все доступные события; после сбоя следующая попытка откладывается с экспоненциальной паузой
+    public void drain() {
+        synchronized (drainLock) {
+            if (closed || System.nanoTime() < retryAtNanos) {
+                return;
+            }
+            try {
+                while (!closed && relayBatch() == batchSize) {
+                    // Полная пачка — вероятно, есть еще события
+                }
+                consecutiveFailures = 0;
+            } catch (Exception e) {
+                failedBatches.increment();
+                consecutiveFailures++;
+                long backoff = Math.min(pollIntervalMillis << Math.min(consecutiveFailures, 16), MAX_BACKOFF_MILLIS);
+                retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+                logger.error("Ретранслятор outbox {}: пачка не доставлена, повтор через {} мс", name, backoff, e);
+            }
+        }
+    }
+
+    // Пачка читается, доставляется и подтверждается в одной транзакции
+    int relayBatch() throws Exception {
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            Boolean locked = (Boolean) session.createNativeQuery("SELECT pg_try_advisory_xact_lock(hashtext(:lock))")
+                    .setParameter("lock", "user_outbox_relay:" + name)
+                    .uniqueResult();
+            if (!Boolean.TRUE.equals(locked)) {
+                transaction.commit();
+                return 0;
+            }
+
+            long after = loadCheckpoint(session);
+            // Снимок до выборки: транзакции с номером меньше settledBelow завершены
+            long settledBelow = snapshotXmin(session);
+            List<OutboxEvent> events = contiguousPrefix(session, after, fetch(session, after), settledBelow);
+            if (events.isEmpty()) {
+                transaction.commit();
+                return 0;
+            }
+
+            long start = System.nanoTime();
+            sink.publish(events);
+            publishNanos.add(System.nanoTime() - start);
+
+            long last = events.get(events.size() - 1).getId();
+            session.createNativeQuery("INSERT INTO user_outbox_checkpoint (relay, last_event_id, updated_at) "
+                            + "VALUES (:relay, :last, now()) "
+                            + "ON CONFLICT (relay) DO UPDATE SET last_event_id = :last, updated_at = now()")
+                    .setParameter("relay", name)
+                    .setParameter("last", last)
+                    .executeUpdate();
+            // Удаляется только то, что доставили все ретрансляторы (у каждого имени своя контрольная точка)
+            session.createNativeQuery("DELETE FROM user_outbox "
+                            + "WHERE id <= (SELECT min(last_event_id) FROM user_outbox_checkpoint)")
+                    .executeUpdate();
+
+            transaction.commit();
+            gapHorizons.keySet().removeIf(id -> id <= last);
+            checkpoint.set(last);
+            publishedEvents.add(events.size());
+            publishedBatches.increment();
+            logger.debug("Ретранслятор outbox {}: доставлено {} событий, контрольная точка {}", name, events.size(), last);
+            return events.size();
+        } catch (Exception e) {
+            if (transaction != null && transaction.getStatus().canRollback()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private long loadCheckpoint(Session session) {
+        Number last = (Number) session.createNativeQuery(
+                        "SELECT last_event_id FROM user_outbox_checkpoint WHERE relay = :relay")
+                .setParameter("relay", name)
+                .uniqueResult();
+        return last != null ? last.longValue() : 0L;
+    }
+
+    // Пропуск в id — событие незафиксированной или откатившейся транзакции. При первом появлении пропуска
+    // запоминается xmax снимка после выборки: id из пропуска выданы раньше видимого большего id, а номер
+    // транзакции к тому времени уже был (см. UserOutbox), значит он меньше xmax. Когда xmin дошел до xmax,
+    // эти транзакции завершены и оставшийся пропуск — откат; до тех пор выдача останавливается перед ним
+    private List<OutboxEvent> contiguousPrefix(Session session, long after, List<OutboxEvent> fetched,
+                                               long settledBelow) {
+        List<OutboxEvent> ready = new ArrayList<>(fetched.size());
+        long expected = after + 1;
+        for (OutboxEvent event : fetched) {
+            if (event.getId() != expected) {
+                Long horizon = gapHorizons.get(expected);
+                if (horizon == null) {
+                    gapHorizons.put(expected, snapshotXmax(session));
+                    break;
+                }
+                if (horizon > settledBelow) {
+                    break;
+                }
+                gapHorizons.remove(expected);
+                skippedIds.add(event.getId() - expected);
+                logger.debug("Ретранслятор outbox {}: пропуск id [{}, {}) не заполнится", name, expected, event.getId());
+            }
+            ready.add(event);
+            expected = event.getId() + 1;
+        }
+        return ready;
+    }
+
+    private static long snapshotXmin(Session session) {
+        return ((Number) session.createNativeQuery("SELECT txid_snapshot_xmin(txid_current_snapshot())")
+                .uniqueResult()).longValue();
+    }
+
+    private static long snapshotXmax(Session session) {
+        return ((Number) session.createNativeQuery("SELECT txid_snapshot_xmax(txid_current_snapshot())")
+                .uniqueResult()).longValue();
+    }
+
+    private List<OutboxEvent> fetch(Session session, long after) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = session.createNativeQuery(
+                        "SELECT id, event_type, user_id, payload, created_at FROM user_outbox "
+                                + "WHERE id > :after ORDER BY id LIMIT :limit")
+                .setParameter("after", after)
+                .setParameter("limit", batchSize)
+                .list();
+
+        List<OutboxEvent> events = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            events.add(new OutboxEvent(
+                    ((Number) row[0]).longValue(),
+                    OutboxEventType.valueOf((String) row[1]),
+                    row[2] != null ? ((Number) row[2]).longValue() : null,
+                    (byte[]) row[3],
+                    ((Timestamp) row[4]).toLocalDateTime()));
+        }
+        return events;
+    }
+
+    public long pendingEvents() {
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            return ((Number) session.createNativeQuery("SELECT count(*) FROM user_outbox").uniqueResult()).longValue();
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    // Останавливает опрос, выполняет последнюю выборку и закрывает получателя
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (drainLock) {
+            retryAtNanos = 0;
+        }
+        drain();
+        closed = true;
+
+        try {
+            sink.close();
+        } catch (Exception e) {
+            logger.error("Ошибка при закрытии получателя outbox {}", name, e);
+        }
+        logger.info("Ретранслятор outbox {} остановлен: {}", name, getStats());
+    }
+
+    public Stats getStats() {
+        long events = publishedEvents.sum();
+        long batches = publishedBatches.sum();
+        double elapsedSeconds = (System.nanoTime() - startedAtNanos) / 1e9;
+        return new Stats(name, checkpoint.get(), events, batches, failedBatches.sum(), skippedIds.sum(),
+                elapsedSeconds > 0 ? events / elapsedSeconds : 0,
+                batches == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(publishNanos.sum()) / batches);
+    }
+
+    public static final class Stats {
+        private final String relay;
+        private final long checkpoint;
+        private final long publishedEvents;
+        private final long publishedBatches;
+        private final long failedBatches;
+        private final long skippedIds;
+        private final double eventsPerSecond;
+        private final long avgPublishMicros;
+
+        Stats(String relay, long checkpoint, long publishedEvents, long publishedBatches, long failedBatches,
+              long skippedIds, double eventsPerSecond, long avgPublishMicros) {
+            this.relay = relay;
+            this.checkpoint = checkpoint;
+            this.publishedEvents = publishedEvents;
+            this.publishedBatches = publishedBatches;
+            this.failedBatches = failedBatches;
+            this.skippedIds = skippedIds;
+            this.eventsPerSecond = eventsPerSecond;
+            this.avgPublishMicros = avgPublishMicros;
+        }
+
+        public String getRelay() {
+            return relay;
+        }
+
+        // -1, пока в этом процессе не подтверждена ни одна пачка
+        public long getCheckpoint() {
+            return checkpoint;
+        }
+
+        public long getPublishedEvents() {
+            return publishedEvents;
+        }
+
+        public long getPublishedBatches() {
+            return publishedBatches;
+        }
+
+        public long getFailedBatches() {
+            return failedBatches;
+        }
+
+        // id откатившихся транзакций, через которые прошла контрольная точка
+        public long getSkippedIds() {
+            return skippedIds;
+        }
+
+        public double getEventsPerSecond() {
+            return eventsPerSecond;
+        }
+
+        public long getAvgPublishMicros() {
+            return avgPublishMicros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{relay=%s, checkpoint=%d, published=%d, batches=%d, failed=%d, skipped=%d, "
+                            + "eventsPerSecond=%.1f, avgPublishMicros=%d}", relay, checkpoint, publishedEvents,
+                    publishedBatches, failedBatches, skippedIds, eventsPerSecond, avgPublishMicros);
+        }
+    }
+}
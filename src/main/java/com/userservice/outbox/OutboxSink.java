@@ -0,0 +1,15 @@
+package com.userservice.outbox;
+
+import java.io.IOException;
+import java.util.List;
+
+// Получатель событий ретранслятора. Исключение из publish означает, что пачка не доставлена:
+// контрольная точка не сдвигается и пачка будет отправлена повторно целиком
+public interface OutboxSink extends AutoCloseable {
+
+    void publish(List<OutboxEvent> events) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,61 @@
+package com.userservice.outbox;
+
+import com.userservice.codec.UserCodec;
+import com.userservice.entity.User;
+import org.hibernate.Session;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// Запись событий об изменении пользователей в таблицу user_outbox в транзакции самого изменения:
+// событие фиксируется тогда и только тогда, когда фиксируется изменение.
+// Событие пишется после самого изменения: когда последовательность выдает id события, у транзакции
+// уже есть номер (xid) — на этом держится правило пропусков в OutboxRelay. Изменения одного пользователя
+// упорядочены блокировкой его строки users, поэтому их события получают id в порядке фиксации.
+// tx_id — номер транзакции записи, для диагностики
+public final class UserOutbox {
+
+    private UserOutbox() {
+    }
+
+    // flush перед вставкой: id новой строки и новая версия должны попасть в событие,
+    // а конфликт версий — проявиться до записи события
+    public static void append(Session session, OutboxEventType type, User user) {
+        session.flush();
+        insert(session, type, user);
+    }
+
+    // Stateless-сессия пишет сразу, сбрасывать нечего
+    public static void append(StatelessSession session, OutboxEventType type, User user) {
+        insert(session, type, user);
+    }
+
+    private static void insert(SharedSessionContract session, OutboxEventType type, User user) {
+        ByteBuffer payload = UserCodec.encode(user);
+        session.createNativeQuery("INSERT INTO user_outbox (event_type, user_id, payload) "
+                        + "VALUES (:type, :userId, :payload)")
+                .setParameter("type", type.name())
+                .setParameter("userId", user.getId())
+                .setParameter("payload", payload.array())
+                .executeUpdate();
+    }
+
+    public static void appendAllDeleted(Session session) {
+        session.createNativeQuery("INSERT INTO user_outbox (event_type) VALUES (:type)")
+                .setParameter("type", OutboxEventType.ALL_USERS_DELETED.name())
+                .executeUpdate();
+    }
+
+    // Для удалений в обход DAO, например архивирования секции users: событие на каждую строку таблицы
+    public static int appendArchived(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO user_outbox (event_type, user_id) SELECT ?, id FROM " + table + " ORDER BY id")) {
+            statement.setString(1, OutboxEventType.USER_ARCHIVED.name());
+            return statement.executeUpdate();
+        }
+    }
+}
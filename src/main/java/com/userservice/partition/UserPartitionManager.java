@@ -0,0 +1,442 @@
+package com.userservice.partition;
+
+import com.userservice.cache.UserInvalidation;
+import com.userservice.changes.UserTombstones;
+import com.userservice.config.AppConfig;
+import com.userservice.outbox.UserOutbox;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Помесячное секционирование users по created_at. Схема управляется здесь, а не через hbm2ddl:
+// hbm2ddl не умеет создавать секционированные таблицы и не видит их при интроспекции.
+// Уникальность email на всю таблицу обеспечивает user_emails с триггером, так как уникальный
+// индекс секционированной таблицы обязан включать ключ секционирования.
+public class UserPartitionManager implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(UserPartitionManager.class);
+
+    public static final String ENABLED_PROPERTY = "userservice.partitioning.enabled";
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String PARTITION_PREFIX = "users_p";
+
+    private final SessionFactory sessionFactory;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Path archiveDirectory;
+    private ScheduledExecutorService scheduler;
+
+    public UserPartitionManager(SessionFactory sessionFactory) {
+        this(sessionFactory,
+                AppConfig.getInt("userservice.partitioning.monthsAhead", 3),
+                AppConfig.getInt("userservice.partitioning.retentionMonths", 24),
+                Paths.get(AppConfig.getString("userservice.partitioning.archiveDir", "archive")));
+    }
+
+    public UserPartitionManager(SessionFactory sessionFactory, int monthsAhead, int retentionMonths,
+                                Path archiveDirectory) {
+        if (monthsAhead < 0 || retentionMonths < 1) {
+            throw new IllegalArgumentException("Некорректные параметры секционирования");
+        }
+        this.sessionFactory = sessionFactory;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archiveDirectory = archiveDirectory;
+    }
+
+    public static boolean isEnabled() {
+        return AppConfig.getBoolean(ENABLED_PROPERTY, false);
+    }
+
+    // Создает секционированную таблицу или переводит на нее существующую обычную users
+    public void ensureSchema() {
+        doInTransaction(connection -> {
+            // Узлы, стартующие одновременно, переводят таблицу по очереди; следующий увидит relkind = 'p'
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SELECT pg_advisory_xact_lock(hashtext('users_partitioning'))");
+            }
+            String kind = relationKind(connection, "users");
+            if ("p".equals(kind)) {
+                logger.info("Таблица users уже секционирована");
+                ensureEmailGuard(connection);
+                ensureQueryIndexes(connection);
+                return;
+            }
+
+            YearMonth firstMonth = YearMonth.now();
+            boolean legacy = "r".equals(kind);
+            // id базы, созданной hbm2ddl, — identity (см. V9__add_users_version.sql): ее последовательность
+            // нельзя отвязать от столбца, она удаляется вместе с identity
+            Long nextId = legacy && isIdentity(connection) ? nextId(connection) : null;
+
+            try (Statement statement = connection.createStatement()) {
+                if (legacy) {
+                    logger.warn("Перевод существующей таблицы users на секционирование");
+                    if (nextId != null) {
+                        statement.execute("ALTER TABLE users ALTER COLUMN id DROP IDENTITY");
+                    }
+                    statement.execute("ALTER TABLE users RENAME TO users_legacy");
+                    statement.execute("ALTER SEQUENCE IF EXISTS users_id_seq OWNED BY NONE");
+                    firstMonth = oldestMonth(connection, firstMonth);
+                }
+
+                statement.execute("CREATE SEQUENCE IF NOT EXISTS users_id_seq");
+                if (nextId != null) {
+                    statement.execute("SELECT setval('users_id_seq', " + nextId + ", false)");
+                }
+                statement.execute("CREATE TABLE users ("
+                        + "id BIGINT NOT NULL DEFAULT nextval('users_id_seq'), "
+                        + "name VARCHAR(255) NOT NULL, "
+                        + "email VARCHAR(255) NOT NULL, "
+                        + "age INTEGER, "
+                        + "created_at TIMESTAMP NOT NULL, "
+                        + "version BIGINT NOT NULL DEFAULT 0, "
+                        + "updated_at TIMESTAMP DEFAULT LOCALTIMESTAMP, "
+                        + "PRIMARY KEY (id, created_at)"
+                        + ") PARTITION BY RANGE (created_at)");
+                statement.execute("ALTER SEQUENCE users_id_seq OWNED BY users.id");
+                statement.execute("CREATE TABLE IF NOT EXISTS users_default PARTITION OF users DEFAULT");
+            }
+
+            ensureEmailGuard(connection);
+
+            for (YearMonth month = firstMonth; !month.isAfter(YearMonth.now().plusMonths(monthsAhead));
+                 month = month.plusMonths(1)) {
+                createPartition(connection, month);
+            }
+
+            if (legacy) {
+                try (Statement statement = connection.createStatement()) {
+                    int rows = statement.executeUpdate("INSERT INTO users "
+                            + "(id, name, email, age, created_at, version, updated_at) "
+                            + "SELECT id, name, email, age, created_at, COALESCE(version, 0), "
+                            + "COALESCE(updated_at, LOCALTIMESTAMP) FROM users_legacy");
+                    statement.execute("DROP TABLE users_legacy");
+                    logger.info("Перенесено в секционированную таблицу пользователей: {}", rows);
+                }
+            }
+            // После переноса: индекс строится один раз, а имена индексов users_legacy уже освобождены
+            ensureQueryIndexes(connection);
+            logger.info("Секционированная таблица users создана");
+        });
+    }
+
+    // Индексы для сводок и ленты изменений (см. UsersStatsIndexesMigration, UsersUpdatedAtIndexMigration);
+    // индексы старой обычной таблицы удаляются вместе с ней
+    private static void ensureQueryIndexes(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_users_age ON users (age)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_users_created_at ON users (created_at)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_users_updated_at ON users (updated_at, id)");
+        }
+    }
+
+    // Уникальность email без учета регистра: ключ user_emails — lower(email).
+    // Поиск по lower(email) использует функциональный индекс секций.
+    private static void ensureEmailGuard(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP INDEX IF EXISTS idx_users_email");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_users_email_lower ON users (lower(email))");
+
+            statement.execute("CREATE TABLE IF NOT EXISTS user_emails ("
+                    + "email VARCHAR(255) PRIMARY KEY, "
+                    + "user_id BIGINT NOT NULL)");
+            statement.execute("CREATE OR REPLACE FUNCTION users_email_guard() RETURNS trigger AS $$\n"
+                    + "BEGIN\n"
+                    + "  IF TG_OP = 'INSERT' THEN\n"
+                    + "    INSERT INTO user_emails (email, user_id) VALUES (lower(NEW.email), NEW.id);\n"
+                    + "  ELSIF TG_OP = 'UPDATE' THEN\n"
+                    + "    IF lower(NEW.email) <> lower(OLD.email) THEN\n"
+                    + "      DELETE FROM user_emails WHERE email = lower(OLD.email);\n"
+                    + "      INSERT INTO user_emails (email, user_id) VALUES (lower(NEW.email), NEW.id);\n"
+                    + "    END IF;\n"
+                    + "  ELSE\n"
+                    + "    DELETE FROM user_emails WHERE email = lower(OLD.email);\n"
+                    + "  END IF;\n"
+                    + "  RETURN NULL;\n"
+                    + "END;\n"
+                    + "$$ LANGUAGE plpgsql");
+            statement.execute("DROP TRIGGER IF EXISTS users_email_guard ON users");
+            statement.execute("CREATE TRIGGER users_email_guard AFTER INSERT OR UPDATE OF email OR DELETE "
+                    + "ON users FOR EACH ROW EXECUTE PROCEDURE users_email_guard()");
+        }
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-partition-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::maintainQuietly, 0, 1, TimeUnit.DAYS);
+    }
+
+    // Узлы обслуживают секции по очереди: узел, не получивший блокировку users_partitioning, пропускает
+    // запуск. Блокировка сеансовая и держится на соединении обслуживания, шаги фиксируются по отдельности
+    public void maintain() {
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            session.doWork(connection -> {
+                if (!tryLock(connection)) {
+                    logger.info("Секции users обслуживает другой узел, запуск пропущен");
+                    return;
+                }
+                try {
+                    createFuturePartitions(connection);
+                    archiveOldPartitions(connection);
+                } finally {
+                    unlock(connection);
+                }
+            });
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private void createFuturePartitions(Connection lockConnection) throws SQLException {
+        inTransaction(lockConnection, connection -> {
+            YearMonth last = YearMonth.now().plusMonths(monthsAhead);
+            for (YearMonth month = YearMonth.now(); !month.isAfter(last); month = month.plusMonths(1)) {
+                createPartition(connection, month);
+            }
+        });
+    }
+
+    // Секция отсоединяется, выгружается в gzip-файл через COPY и удаляется.
+    // Секции, отсоединенные при прерванном запуске, дорабатываются на следующем.
+    // Архивные пользователи уходят без удаления через DAO: вместо USER_DELETED на каждого пишется
+    // USER_ARCHIVED (без состояния пользователя), надгробие для ленты изменений и сброс кэшей всех узлов
+    private void archiveOldPartitions(Connection lockConnection) throws SQLException {
+        YearMonth cutoff = YearMonth.now().minusMonths(retentionMonths);
+
+        List<String> candidates = new ArrayList<>();
+        inTransaction(lockConnection, connection -> {
+            candidates.addAll(queryNames(connection, "SELECT c.relname FROM pg_inherits i "
+                    + "JOIN pg_class c ON c.oid = i.inhrelid "
+                    + "JOIN pg_class p ON p.oid = i.inhparent "
+                    + "WHERE p.relname = 'users' AND c.relname LIKE 'users_p%'"));
+            candidates.addAll(queryNames(connection, "SELECT relname FROM pg_class "
+                    + "WHERE relkind = 'r' AND relname ~ '^users_p[0-9]{6}$' AND NOT relispartition"));
+        });
+
+        for (String partition : candidates) {
+            YearMonth month = monthOf(partition);
+            if (month != null && month.isBefore(cutoff)) {
+                archivePartition(lockConnection, partition);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void archivePartition(Connection lockConnection, String partition) throws SQLException {
+        logger.info("Архивация секции {}", partition);
+        long start = System.nanoTime();
+
+        inTransaction(lockConnection, connection -> {
+            try (Statement statement = connection.createStatement()) {
+                if ("users".equals(parentOf(connection, partition))) {
+                    statement.execute("ALTER TABLE users DETACH PARTITION " + partition);
+                }
+            }
+        });
+
+        Path file = archiveDirectory.resolve(partition + ".csv.gz");
+        inTransaction(lockConnection, connection -> {
+            try {
+                Files.createDirectories(archiveDirectory);
+                Path temp = archiveDirectory.resolve(partition + ".csv.gz.tmp");
+                long rows;
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+                    rows = connection.unwrap(PGConnection.class).getCopyAPI()
+                            .copyOut("COPY " + partition + " TO STDOUT WITH (FORMAT csv, HEADER)", out);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                // Потребители ленты изменений, outbox и кэши других узлов должны узнать об уходе
+                // архивных пользователей. Событие пишется после надгробий: у транзакции уже есть номер
+                UserTombstones.allDeleted(connection, partition);
+                UserOutbox.appendArchived(connection, partition);
+                UserInvalidation.publishAll(connection);
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("DELETE FROM user_emails WHERE user_id IN (SELECT id FROM " + partition + ")");
+                    statement.execute("DROP TABLE " + partition);
+                }
+                logger.info("Секция {} заархивирована в {}: {} строк за {} мс",
+                        partition, file, rows, (System.nanoTime() - start) / 1_000_000);
+            } catch (IOException e) {
+                throw new SQLException("Не удалось записать архив " + file, e);
+            }
+        });
+    }
+
+    private void createPartition(Connection connection, YearMonth month) throws SQLException {
+        String name = PARTITION_PREFIX + month.format(SUFFIX);
+        if (relationKind(connection, name) != null) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + name + " PARTITION OF users FOR VALUES FROM ('"
+                    + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+            logger.info("Создана секция {}", name);
+        }
+    }
+
+    private void maintainQuietly() {
+        try {
+            maintain();
+        } catch (Exception e) {
+            logger.error("Ошибка при обслуживании секций users", e);
+        }
+    }
+
+    private static boolean isIdentity(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT attidentity FROM pg_attribute "
+                     + "WHERE attrelid = 'public.users'::regclass AND attname = 'id'")) {
+            return resultSet.next() && !resultSet.getString(1).isEmpty();
+        }
+    }
+
+    // Следующий id не меньше выданных identity: id удаленных пользователей не выдаются повторно
+    private static long nextId(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT GREATEST(COALESCE(MAX(id), 0), "
+                     + "COALESCE(pg_sequence_last_value(pg_get_serial_sequence('public.users', 'id')), 0)) + 1 "
+                     + "FROM users")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static YearMonth oldestMonth(Connection connection, YearMonth fallback) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT MIN(created_at) FROM users_legacy")) {
+            if (resultSet.next()) {
+                Timestamp oldest = resultSet.getTimestamp(1);
+                if (oldest != null) {
+                    return YearMonth.from(oldest.toLocalDateTime());
+                }
+            }
+            return fallback;
+        }
+    }
+
+    private static String relationKind(Connection connection, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT relkind FROM pg_class WHERE relname = ? AND relnamespace = 'public'::regnamespace")) {
+            statement.setString(1, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+
+    private static String parentOf(Connection connection, String partition) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT p.relname FROM pg_inherits i "
+                + "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent "
+                + "WHERE c.relname = ?")) {
+            statement.setString(1, partition);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+
+    private static List<String> queryNames(Connection connection, String sql) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                names.add(resultSet.getString(1));
+            }
+        }
+        return names;
+    }
+
+    private static YearMonth monthOf(String partition) {
+        try {
+            return YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), SUFFIX);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void doInTransaction(SqlWork work) {
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            session.doWork(connection -> inTransaction(connection, work));
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private static void inTransaction(Connection connection, SqlWork work) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            work.execute(connection);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static boolean tryLock(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT pg_try_advisory_lock(hashtext('users_partitioning'))")) {
+            resultSet.next();
+            return resultSet.getBoolean(1);
+        }
+    }
+
+    private static void unlock(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SELECT pg_advisory_unlock(hashtext('users_partitioning'))");
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void execute(Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,136 @@
+package com.userservice.service;
+
+import com.userservice.changes.ChangeCursor;
+import com.userservice.changes.ChangePage;
+import com.userservice.entity.User;
+import com.userservice.exception.DeadlineExceededException;
+import com.userservice.util.Deadline;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.function.Supplier;
+
+// Срок вызова на границе UserService: истекший срок отказывает сразу, а таймаут где-либо глубже
+// (получение соединения, отмена запроса, statement_timeout, lock_timeout) превращается
+// в DeadlineExceededException и учитывается по операции (Deadline.getTimeouts()).
+// Без заданного срока вызов проходит без изменений
+public class DeadlineUserService implements UserService {
+
+    private static final Logger logger = LogManager.getLogger(DeadlineUserService.class);
+
+    private final UserService delegate;
+
+    public DeadlineUserService(UserService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public User createUser(String name, String email, Integer age) {
+        return call("createUser", () -> delegate.createUser(name, email, age));
+    }
+
+    @Override
+    public User getUserById(Long id) {
+        return call("getUserById", () -> delegate.getUserById(id));
+    }
+
+    @Override
+    public Optional<User> findUserById(Long id) {
+        return call("findUserById", () -> delegate.findUserById(id));
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return call("getAllUsers", delegate::getAllUsers);
+    }
+
+    @Override
+    public List<User> getUsersCreatedBetween(LocalDateTime from, LocalDateTime to) {
+        return call("getUsersCreatedBetween", () -> delegate.getUsersCreatedBetween(from, to));
+    }
+
+    @Override
+    public User updateUser(Long id, String name, String email, Integer age) {
+        return call("updateUser", () -> delegate.updateUser(id, name, email, age));
+    }
+
+    @Override
+    public void deleteUser(Long id) {
+        call("deleteUser", () -> {
+            delegate.deleteUser(id);
+            return null;
+        });
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return call("getUserByEmail", () -> delegate.getUserByEmail(email));
+    }
+
+    @Override
+    public Optional<User> findUserByEmail(String email) {
+        return call("findUserByEmail", () -> delegate.findUserByEmail(email));
+    }
+
+    @Override
+    public long getUserCount() {
+        return call("getUserCount", delegate::getUserCount);
+    }
+
+    @Override
+    public void deleteAllUsers() {
+        call("deleteAllUsers", () -> {
+            delegate.deleteAllUsers();
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, Long> getAgeDistribution() {
+        return call("getAgeDistribution", delegate::getAgeDistribution);
+    }
+
+    @Override
+    public SortedMap<LocalDate, Long> getSignupsPerDay(LocalDate from, LocalDate to) {
+        return call("getSignupsPerDay", () -> delegate.getSignupsPerDay(from, to));
+    }
+
+    @Override
+    public Map<String, Long> getTopEmailDomains(int limit) {
+        return call("getTopEmailDomains", () -> delegate.getTopEmailDomains(limit));
+    }
+
+    @Override
+    public ChangePage getChangesSince(ChangeCursor cursor, int limit) {
+        return call("getChangesSince", () -> delegate.getChangesSince(cursor, limit));
+    }
+
+    private static <T> T call(String operation, Supplier<T> call) {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return call.get();
+        }
+        if (deadline.isExpired()) {
+            Deadline.recordTimeout(operation);
+            throw new DeadlineExceededException("Срок вызова " + operation + " истек до начала выполнения");
+        }
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            if (!Deadline.isTimeout(e)) {
+                throw e;
+            }
+            Deadline.recordTimeout(operation);
+            logger.warn("Вызов {} не уложился в срок", operation);
+            throw e instanceof DeadlineExceededException
+                    ? e
+                    : new DeadlineExceededException("Вызов " + operation + " не уложился в срок", e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.userservice.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Повтор операции при конфликте версий: ограниченное число попыток, экспоненциальная задержка с джиттером
+public class RetryPolicy {
+
+    private static final Logger logger = LogManager.getLogger(RetryPolicy.class);
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts должен быть не меньше 1");
+        }
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Некорректные параметры задержки между попытками");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public static RetryPolicy defaultPolicy() {
+        return new RetryPolicy(3, 10, 200);
+    }
+
+    public static RetryPolicy noRetry() {
+        return new RetryPolicy(1, 0, 0);
+    }
+
+    public <T> T execute(String operation, Supplier<T> action) {
+        int attempt = 1;
+
+        while (true) {
+            try {
+                return action.get();
+            } catch (OptimisticLockException e) {
+                if (attempt >= maxAttempts) {
+                    logger.warn("{}: конфликт версий, попытки исчерпаны ({})", operation, attempt);
+                    throw e;
+                }
+
+                long backoff = backoffMillis(attempt);
+                logger.info("{}: конфликт версий, попытка {} из {}, повтор через {} мс",
+                        operation, attempt, maxAttempts, backoff);
+                sleep(backoff);
+                attempt++;
+            }
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание повтора прервано", e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.userservice.service;
+
+import com.userservice.exception.DeadlineExceededException;
+import com.userservice.util.Deadline;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+// Схлопывание одновременных одинаковых запросов: пока вызов по ключу выполняется,
+// остальные потоки с тем же ключом ждут его результат или исключение. Результат не кешируется.
+// Каждый вызывающий получает свою копию результата (copier) и ждет не дольше своего срока (Deadline).
+// Если лидер не уложился в свой срок, ожидавшие не получают его таймаут, а выполняют загрузку заново.
+// Счетчики общие для экземпляров с одним именем (см. getAllStats)
+public class SingleFlight<K, V> {
+
+    private static final Map<String, Counters> countersByName = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> copier;
+    private final Counters counters;
+
+    public SingleFlight(String name, UnaryOperator<V> copier) {
+        this.copier = copier;
+        this.counters = countersByName.computeIfAbsent(name, Counters::new);
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        counters.calls.increment();
+
+        while (true) {
+            CompletableFuture<V> own = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+            if (existing == null) {
+                return copier.apply(load(key, own, loader));
+            }
+
+            V value;
+            try {
+                value = await(existing);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (Deadline.isTimeout(cause)) {
+                    continue;
+                }
+                counters.shared.increment();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+            counters.shared.increment();
+            return copier.apply(value);
+        }
+    }
+
+    public Stats getStats() {
+        return counters.toStats();
+    }
+
+    // Для /metrics, по имени
+    public static Map<String, Stats> getAllStats() {
+        Map<String, Stats> result = new TreeMap<>();
+        countersByName.forEach((name, counters) -> result.put(name, counters.toStats()));
+        return result;
+    }
+
+    // Результат лидера остается у него: вызывающие, в том числе лидер, получают копии
+    private V load(K key, CompletableFuture<V> own, Supplier<V> loader) {
+        counters.inFlight.increment();
+        try {
+            V value = loader.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+            counters.inFlight.decrement();
+        }
+    }
+
+    private V await(CompletableFuture<V> future) throws ExecutionException {
+        Deadline deadline = Deadline.current();
+        try {
+            if (deadline == null) {
+                return future.get();
+            }
+            return future.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            counters.shared.increment();
+            throw new DeadlineExceededException("Срок вызова истек: ожидание одновременного запроса");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание одновременного запроса прервано", e);
+        }
+    }
+
+    private static final class Counters {
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder shared = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+
+        Counters(String name) {
+            this.name = name;
+        }
+
+        Stats toStats() {
+            return new Stats(name, calls.sum(), shared.sum(), (int) inFlight.sum());
+        }
+    }
+
+    public static final class Stats {
+        private final String name;
+        private final long calls;
+        private final long shared;
+        private final int inFlight;
+
+        Stats(String name, long calls, long shared, int inFlight) {
+            this.name = name;
+            this.calls = calls;
+            this.shared = shared;
+            this.inFlight = inFlight;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getShared() {
+            return shared;
+        }
+
+        public long getExecuted() {
+            return calls - shared;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public double getHitRate() {
+            return calls == 0 ? 0.0 : (double) shared / calls;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{name=%s, calls=%d, shared=%d, executed=%d, inFlight=%d, hitRate=%.2f%%}",
+                    name, calls, shared, getExecuted(), inFlight, getHitRate() * 100);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.userservice.service;
+
+import com.userservice.changes.ChangeCursor;
+import com.userservice.changes.ChangePage;
+import com.userservice.entity.User;
+import com.userservice.sql.SqlMonitor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.function.Supplier;
+
+// Область SqlMonitor на каждый вызов UserService: поиск N+1 одинаков для HTTP API, меню и команд CLI.
+// Подключается только при включенном SqlMonitor
+public class SqlScopedUserService implements UserService {
+
+    private final UserService delegate;
+
+    public SqlScopedUserService(UserService delegate) {
+        this.delegate = delegate;
+    }
+
+    public static UserService wrapIfEnabled(UserService delegate) {
+        return SqlMonitor.ENABLED ? new SqlScopedUserService(delegate) : delegate;
+    }
+
+    @Override
+    public User createUser(String name, String email, Integer age) {
+        return inScope("UserService.createUser", () -> delegate.createUser(name, email, age));
+    }
+
+    @Override
+    public User getUserById(Long id) {
+        return inScope("UserService.getUserById", () -> delegate.getUserById(id));
+    }
+
+    @Override
+    public Optional<User> findUserById(Long id) {
+        return inScope("UserService.findUserById", () -> delegate.findUserById(id));
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return inScope("UserService.getAllUsers", delegate::getAllUsers);
+    }
+
+    @Override
+    public List<User> getUsersCreatedBetween(LocalDateTime from, LocalDateTime to) {
+        return inScope("UserService.getUsersCreatedBetween", () -> delegate.getUsersCreatedBetween(from, to));
+    }
+
+    @Override
+    public User updateUser(Long id, String name, String email, Integer age) {
+        return inScope("UserService.updateUser", () -> delegate.updateUser(id, name, email, age));
+    }
+
+    @Override
+    public void deleteUser(Long id) {
+        inScope("UserService.deleteUser", () -> {
+            delegate.deleteUser(id);
+            return null;
+        });
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return inScope("UserService.getUserByEmail", () -> delegate.getUserByEmail(email));
+    }
+
+    @Override
+    public Optional<User> findUserByEmail(String email) {
+        return inScope("UserService.findUserByEmail", () -> delegate.findUserByEmail(email));
+    }
+
+    @Override
+    public long getUserCount() {
+        return inScope("UserService.getUserCount", delegate::getUserCount);
+    }
+
+    @Override
+    public void deleteAllUsers() {
+        inScope("UserService.deleteAllUsers", () -> {
+            delegate.deleteAllUsers();
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, Long> getAgeDistribution() {
+        return inScope("UserService.getAgeDistribution", delegate::getAgeDistribution);
+    }
+
+    @Override
+    public SortedMap<LocalDate, Long> getSignupsPerDay(LocalDate from, LocalDate to) {
+        return inScope("UserService.getSignupsPerDay", () -> delegate.getSignupsPerDay(from, to));
+    }
+
+    @Override
+    public Map<String, Long> getTopEmailDomains(int limit) {
+        return inScope("UserService.getTopEmailDomains", () -> delegate.getTopEmailDomains(limit));
+    }
+
+    @Override
+    public ChangePage getChangesSince(ChangeCursor cursor, int limit) {
+        return inScope("UserService.getChangesSince", () -> delegate.getChangesSince(cursor, limit));
+    }
+
+    private static <T> T inScope(String name, Supplier<T> call) {
+        try (SqlMonitor.Scope ignored = SqlMonitor.beginScope(name)) {
+            return call.get();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.userservice.service;
+
+import com.userservice.changes.ChangeCursor;
+import com.userservice.changes.ChangePage;
+import com.userservice.entity.User;
+import com.userservice.tracing.Tracing;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+
+// Спан на каждый метод UserService. Подключается только при включенной трассировке
+public class TracingUserService implements UserService {
+
+    private final UserService delegate;
+
+    public TracingUserService(UserService delegate) {
+        this.delegate = delegate;
+    }
+
+    public static UserService wrapIfEnabled(UserService delegate) {
+        return Tracing.ENABLED ? new TracingUserService(delegate) : delegate;
+    }
+
+    @Override
+    public User createUser(String name, String email, Integer age) {
+        return Tracing.inSpan("UserService.createUser", () -> withUserId(delegate.createUser(name, email, age)));
+    }
+
+    @Override
+    public User getUserById(Long id) {
+        return Tracing.inSpan("UserService.getUserById", () -> delegate.getUserById(id));
+    }
+
+    @Override
+    public Optional<User> findUserById(Long id) {
+        return Tracing.inSpan("UserService.findUserById", () -> found(delegate.findUserById(id)));
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return Tracing.inSpan("UserService.getAllUsers", () -> withCount(delegate.getAllUsers()));
+    }
+
+    @Override
+    public List<User> getUsersCreatedBetween(LocalDateTime from, LocalDateTime to) {
+        return Tracing.inSpan("UserService.getUsersCreatedBetween",
+                () -> withCount(delegate.getUsersCreatedBetween(from, to)));
+    }
+
+    @Override
+    public User updateUser(Long id, String name, String email, Integer age) {
+        return Tracing.inSpan("UserService.updateUser", () -> delegate.updateUser(id, name, email, age));
+    }
+
+    @Override
+    public void deleteUser(Long id) {
+        Tracing.inSpan("UserService.deleteUser", () -> {
+            delegate.deleteUser(id);
+            return null;
+        });
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return Tracing.inSpan("UserService.getUserByEmail", () -> delegate.getUserByEmail(email));
+    }
+
+    @Override
+    public Optional<User> findUserByEmail(String email) {
+        return Tracing.inSpan("UserService.findUserByEmail", () -> found(delegate.findUserByEmail(email)));
+    }
+
+    @Override
+    public long getUserCount() {
+        return Tracing.inSpan("UserService.getUserCount", delegate::getUserCount);
+    }
+
+    @Override
+    public void deleteAllUsers() {
+        Tracing.inSpan("UserService.deleteAllUsers", () -> {
+            delegate.deleteAllUsers();
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, Long> getAgeDistribution() {
+        return Tracing.inSpan("UserService.getAgeDistribution", delegate::getAgeDistribution);
+    }
+
+    @Override
+    public SortedMap<LocalDate, Long> getSignupsPerDay(LocalDate from, LocalDate to) {
+        return Tracing.inSpan("UserService.getSignupsPerDay", () -> delegate.getSignupsPerDay(from, to));
+    }
+
+    @Override
+    public Map<String, Long> getTopEmailDomains(int limit) {
+        return Tracing.inSpan("UserService.getTopEmailDomains", () -> delegate.getTopEmailDomains(limit));
+    }
+
+    @Override
+    public ChangePage getChangesSince(ChangeCursor cursor, int limit) {
+        return Tracing.inSpan("UserService.getChangesSince", () -> delegate.getChangesSince(cursor, limit));
+    }
+
+    private static User withUserId(User user) {
+        if (user != null && user.getId() != null) {
+            Tracing.current().setAttribute("user.id", user.getId());
+        }
+        return user;
+    }
+
+    private static Optional<User> found(Optional<User> user) {
+        Tracing.current().setAttribute("user.found", user.isPresent());
+        return user;
+    }
+
+    private static List<User> withCount(List<User> users) {
+        Tracing.current().setAttribute("user.count", users.size());
+        return users;
+    }
+}
@@ -1,8 +1,15 @@
 package com.userservice.service;
 
+import com.userservice.changes.ChangeCursor;
+import com.userservice.changes.ChangePage;
 import com.userservice.entity.User;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
 
 public interface UserService {
 
@@ -10,15 +17,35 @@ public interface UserService {
 
     User getUserById(Long id);
 
+    // Промах — пустой Optional, а не UserNotFoundException: для путей, где отсутствие пользователя — норма
+    Optional<User> findUserById(Long id);
+
     List<User> getAllUsers();
 
+    List<User> getUsersCreatedBetween(LocalDateTime from, LocalDateTime to);
+
     User updateUser(Long id, String name, String email, Integer age);
 
     void deleteUser(Long id);
 
     User getUserByEmail(String email);
 
+    Optional<User> findUserByEmail(String email);
+
     long getUserCount();
 
     void deleteAllUsers();
+
+    // Сводки для панелей: из user_stats_rollup за O(корзин), при userservice.stats.rollup=false — GROUP BY по users.
+    // Возрастные корзины по порядку, включая пустые
+    Map<String, Long> getAgeDistribution();
+
+    // Регистрации по дням, границы включительные; дни без регистраций пропущены
+    SortedMap<LocalDate, Long> getSignupsPerDay(LocalDate from, LocalDate to);
+
+    // Домены email по убыванию числа пользователей
+    Map<String, Long> getTopEmailDomains(int limit);
+
+    // Изменения после курсора (null — с начала ленты); следующий запрос передает курсор из страницы
+    ChangePage getChangesSince(ChangeCursor cursor, int limit);
 }
\ No newline at end of file
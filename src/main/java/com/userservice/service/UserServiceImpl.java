@@ -1,32 +1,77 @@
 package com.userservice.service;
 
+import com.userservice.changes.ChangeCursor;
+import com.userservice.changes.ChangePage;
+import com.userservice.changes.UserChangesDao;
+import com.userservice.dao.CachingUserDao;
+import com.userservice.dao.CircuitBreakerUserDao;
+import com.userservice.dao.TracingUserDao;
 import com.userservice.dao.UserDao;
 import com.userservice.dao.UserDaoImpl;
+import com.userservice.dao.WriteBehindUserDao;
 import com.userservice.entity.User;
 import com.userservice.exception.DatabaseException;
 import com.userservice.exception.UserAlreadyExistsException;
 import com.userservice.exception.ValidationException;
 import com.userservice.exception.UserNotFoundException;
+import com.userservice.stats.UserRollup;
+import com.userservice.stats.UserStatsDao;
+import com.userservice.tracing.Span;
+import com.userservice.tracing.Tracing;
+import com.userservice.util.Emails;
+import com.userservice.validation.UserValidator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.persistence.OptimisticLockException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Pattern;
+import java.util.SortedMap;
 
 public class UserServiceImpl implements UserService {
     private static final Logger logger = LogManager.getLogger(UserServiceImpl.class);
 
-    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
+    private static final long MAX_STATS_DAYS = 3_660;
+    private static final int MAX_STATS_DOMAINS = 1_000;
+    private static final int MAX_CHANGES_PAGE = 1_000;
 
     private final UserDao userDao;
+    private final RetryPolicy retryPolicy;
+    private final UserStatsDao statsDao;
+    private final UserChangesDao changesDao;
+    private final UserStatsDao.Source statsSource =
+            UserRollup.ENABLED ? UserStatsDao.Source.ROLLUP : UserStatsDao.Source.QUERY;
+    private final UserValidator validator = new UserValidator();
+
+    // Одновременные поиски одного и того же пользователя выполняют один запрос к БД
+    private final SingleFlight<Long, Optional<User>> findByIdFlight =
+            new SingleFlight<>("findUserById", user -> user.map(User::copy));
+    private final SingleFlight<String, Optional<User>> findByEmailFlight =
+            new SingleFlight<>("findUserByEmail", user -> user.map(User::copy));
 
     public UserServiceImpl() {
-        this.userDao = new UserDaoImpl();
+        this(TracingUserDao.wrapIfEnabled(new CircuitBreakerUserDao(
+                WriteBehindUserDao.wrapIfEnabled(CachingUserDao.wrapIfEnabled(new UserDaoImpl())))));
     }
 
     public UserServiceImpl(UserDao userDao) {
+        this(userDao, RetryPolicy.defaultPolicy());
+    }
+
+    public UserServiceImpl(UserDao userDao, RetryPolicy retryPolicy) {
+        this(userDao, retryPolicy, new UserStatsDao(), new UserChangesDao());
+    }
+
+    public UserServiceImpl(UserDao userDao, RetryPolicy retryPolicy, UserStatsDao statsDao,
+                           UserChangesDao changesDao) {
         this.userDao = userDao;
+        this.retryPolicy = retryPolicy;
+        this.statsDao = statsDao;
+        this.changesDao = changesDao;
     }
 
     @Override
@@ -34,17 +79,23 @@ public class UserServiceImpl implements UserService {
         logger.info("Попытка создать пользователя: name={}, email={}, age={}", name, email, age);
 
         try {
-            // Валидация данных
-            validateUserData(name, email, age);
+            // Валидация данных; дальше используются уже нормализованные значения
+            String normalizedName;
+            String normalizedEmail;
+            try (Span ignored = Tracing.startSpan("UserValidator.validate")) {
+                normalizedName = validator.normalizeName(name);
+                normalizedEmail = validator.normalizeEmail(email);
+                validator.requireValidAge(age);
+            }
 
             // Проверка на существование email
-            if (userDao.existsByEmail(email)) {
-                logger.warn("Попытка создать пользователя с существующим email: {}", email);
-                throw new UserAlreadyExistsException(email);
+            if (userDao.existsByEmail(normalizedEmail)) {
+                logger.warn("Попытка создать пользователя с существующим email: {}", normalizedEmail);
+                throw new UserAlreadyExistsException(normalizedEmail);
             }
 
             // Создание пользователя
-            User user = new User(name, email, age);
+            User user = new User(normalizedName, normalizedEmail, age);
             User savedUser = userDao.save(user);
 
             logger.info("Пользователь успешно создан с ID: {}", savedUser.getId());
@@ -61,6 +112,11 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public User getUserById(Long id) {
+        return findUserById(id).orElseThrow(() -> new UserNotFoundException(id));
+    }
+
+    @Override
+    public Optional<User> findUserById(Long id) {
         logger.info("Получение пользователя по ID: {}", id);
 
         if (id == null || id <= 0) {
@@ -68,18 +124,14 @@ public class UserServiceImpl implements UserService {
         }
 
         try {
-            Optional<User> userOptional = userDao.findById(id);
+            Optional<User> userOptional = findByIdFlight.execute(id, () -> userDao.findById(id));
 
             if (userOptional.isPresent()) {
                 logger.info("Пользователь найден: {}", userOptional.get());
-                return userOptional.get();
             } else {
-                logger.warn("Пользователь с ID {} не найден", id);
-                throw new UserNotFoundException(id);
+                logger.info("Пользователь с ID {} не найден", id);
             }
-
-        } catch (UserNotFoundException e) {
-            throw e;
+            return userOptional;
 
         } catch (Exception e) {
             logger.error("Ошибка при получении пользователя по ID: {}", id, e);
@@ -102,6 +154,25 @@ public class UserServiceImpl implements UserService {
         }
     }
 
+    @Override
+    public List<User> getUsersCreatedBetween(LocalDateTime from, LocalDateTime to) {
+        logger.info("Получение пользователей, созданных с {} по {}", from, to);
+
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new ValidationException("Начало периода должно быть раньше конца");
+        }
+
+        try {
+            List<User> users = userDao.findByCreatedAtBetween(from, to);
+            logger.info("Получено пользователей за период: {}", users.size());
+            return users;
+
+        } catch (Exception e) {
+            logger.error("Ошибка при получении пользователей за период", e);
+            throw new DatabaseException("Не удалось получить пользователей за период", e);
+        }
+    }
+
     @Override
     public User updateUser(Long id, String name, String email, Integer age) {
         logger.info("Обновление пользователя ID: {}", id);
@@ -111,63 +182,72 @@ public class UserServiceImpl implements UserService {
         }
 
         try {
-            // Получить существующего пользователя
-            Optional<User> userOptional = userDao.findById(id);
+            // Чтение, изменение и запись повторяются целиком: при конфликте версий изменения
+            // накладываются на свежую копию пользователя
+            return retryPolicy.execute("updateUser", () -> applyUpdate(id, name, email, age));
 
-            if (!userOptional.isPresent()) {
-                logger.warn("Пользователь с ID {} не найден для обновления", id);
-                throw new UserNotFoundException(id);
-            }
+        } catch (UserNotFoundException | ValidationException | UserAlreadyExistsException e) {
+            throw e;
 
-            User user = userOptional.get();
-            boolean hasChanges = false;
+        } catch (OptimisticLockException e) {
+            logger.error("Пользователь ID {} параллельно изменяется другими запросами", id, e);
+            throw new DatabaseException("Не удалось обновить пользователя: данные изменены параллельно", e);
 
-            // Обновить имя, если указано
-            if (name != null && !name.trim().isEmpty()) {
-                validateName(name);
-                user.setName(name.trim());
-                hasChanges = true;
-            }
+        } catch (Exception e) {
+            logger.error("Ошибка при обновлении пользователя ID: {}", id, e);
+            throw new DatabaseException("Не удалось обновить пользователя", e);
+        }
+    }
 
-            // Обновить email, если указан
-            if (email != null && !email.trim().isEmpty()) {
-                validateEmail(email);
+    private User applyUpdate(Long id, String name, String email, Integer age) {
+        // Получить существующего пользователя
+        Optional<User> userOptional = userDao.findById(id);
 
-                // Проверить, что новый email не занят другим пользователем
-                if (!email.equals(user.getEmail()) && userDao.existsByEmail(email)) {
-                    logger.warn("Email {} уже используется другим пользователем", email);
-                    throw new UserAlreadyExistsException(email);
-                }
+        if (!userOptional.isPresent()) {
+            logger.warn("Пользователь с ID {} не найден для обновления", id);
+            throw new UserNotFoundException(id);
+        }
 
-                user.setEmail(email.trim());
-                hasChanges = true;
-            }
+        User user = userOptional.get();
+        boolean hasChanges = false;
 
-            // Обновить возраст, если указан
-            if (age != null) {
-                validateAge(age);
-                user.setAge(age);
-                hasChanges = true;
-            }
+        // Обновить имя, если указано
+        if (!UserValidator.isBlank(name)) {
+            user.setName(validator.normalizeName(name));
+            hasChanges = true;
+        }
 
-            if (!hasChanges) {
-                logger.info("Нет изменений для пользователя ID: {}", id);
-                return user;
-            }
+        // Обновить email, если указан
+        if (!UserValidator.isBlank(email)) {
+            String normalizedEmail = validator.normalizeEmail(email);
 
-            // Сохранить изменения
-            User updatedUser = userDao.update(user);
-            logger.info("Пользователь успешно обновлен: {}", updatedUser);
+            // Проверить, что новый email не занят другим пользователем
+            if (!normalizedEmail.equalsIgnoreCase(user.getEmail()) && userDao.existsByEmail(normalizedEmail)) {
+                logger.warn("Email {} уже используется другим пользователем", normalizedEmail);
+                throw new UserAlreadyExistsException(normalizedEmail);
+            }
 
-            return updatedUser;
+            user.setEmail(normalizedEmail);
+            hasChanges = true;
+        }
 
-        } catch (UserNotFoundException | ValidationException | UserAlreadyExistsException e) {
-            throw e;
+        // Обновить возраст, если указан
+        if (age != null) {
+            validator.requireValidAge(age);
+            user.setAge(age);
+            hasChanges = true;
+        }
 
-        } catch (Exception e) {
-            logger.error("Ошибка при обновлении пользователя ID: {}", id, e);
-            throw new DatabaseException("Не удалось обновить пользователя", e);
+        if (!hasChanges) {
+            logger.info("Нет изменений для пользователя ID: {}", id);
+            return user;
         }
+
+        // Сохранить изменения
+        User updatedUser = userDao.update(user);
+        logger.info("Пользователь успешно обновлен: {}", updatedUser);
+
+        return updatedUser;
     }
 
     @Override
@@ -197,24 +277,30 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public User getUserByEmail(String email) {
+        return findUserByEmail(email)
+                .orElseThrow(() -> new UserNotFoundException("Пользователь с email " + email + " не найден"));
+    }
+
+    @Override
+    public Optional<User> findUserByEmail(String email) {
         logger.info("Поиск пользователя по email: {}", email);
 
-        if (email == null || email.trim().isEmpty()) {
+        if (UserValidator.isBlank(email)) {
             throw new ValidationException("Email не может быть пустым");
         }
 
         try {
-            Optional<User> userOptional = userDao.findByEmail(email.trim());
+            String canonicalEmail = Emails.canonical(email.trim());
+            Optional<User> userOptional = findByEmailFlight.execute(canonicalEmail,
+                    () -> userDao.findByEmail(canonicalEmail));
 
             if (userOptional.isPresent()) {
                 logger.info("Пользователь с email {} найден", email);
-                return userOptional.get();
             } else {
-                logger.warn("Пользователь с email {} не найден", email);
-                throw new UserNotFoundException("\"Пользователь с email \" + email + \" не найден\"");
+                logger.info("Пользователь с email {} не найден", email);
             }
-        } catch (UserNotFoundException e) {
-            throw e;
+            return userOptional;
+
         } catch (Exception e) {
             logger.error("Ошибка при поиске пользователя по email: {}", email, e);
             throw new DatabaseException("Не удалось найти пользователя по email", e);
@@ -248,49 +334,80 @@ public class UserServiceImpl implements UserService {
         }
     }
 
-    private void validateUserData(String name, String email, Integer age) {
+    @Override
+    public Map<String, Long> getAgeDistribution() {
+        logger.info("Получение распределения пользователей по возрасту");
 
+        try {
+            return statsDao.ageDistribution(statsSource);
+        } catch (Exception e) {
+            logger.error("Ошибка при получении распределения по возрасту", e);
+            throw new DatabaseException("Не удалось получить распределение по возрасту", e);
+        }
     }
 
-    private void validateName(String name) {
-        if (name == null || name.trim().isEmpty()) {
-            throw new ValidationException("Имя не может быть пустым");
-        }
+    @Override
+    public SortedMap<LocalDate, Long> getSignupsPerDay(LocalDate from, LocalDate to) {
+        logger.info("Получение регистраций по дням с {} по {}", from, to);
 
-        if (name.trim().length() < 2) {
-            throw new ValidationException("Имя должно содержать минимум 2 символа");
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new ValidationException("Начало периода не должно быть позже конца");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_STATS_DAYS) {
+            throw new ValidationException("Период не должен превышать " + MAX_STATS_DAYS + " дней");
         }
 
-        if (name.trim().length() > 100) {
-            throw new ValidationException("Имя не может быть длиннее 100 символов");
+        try {
+            return statsDao.signupsPerDay(from, to, statsSource);
+        } catch (Exception e) {
+            logger.error("Ошибка при получении регистраций по дням", e);
+            throw new DatabaseException("Не удалось получить регистрации по дням", e);
         }
     }
 
-    private void validateEmail(String email) {
-        if (email == null || email.trim().isEmpty()) {
-            throw new ValidationException("Email не может быть пустым");
-        }
+    @Override
+    public Map<String, Long> getTopEmailDomains(int limit) {
+        logger.info("Получение {} самых частых доменов email", limit);
 
-        if (!EMAIL_PATTERN.matcher(email.trim()).matches()) {
-            throw new ValidationException("Некорректный формат email");
+        if (limit <= 0 || limit > MAX_STATS_DOMAINS) {
+            throw new ValidationException("Число доменов должно быть от 1 до " + MAX_STATS_DOMAINS);
         }
 
-        if (email.trim().length() > 150) {
-            throw new ValidationException("Email не может быть длиннее 150 символов");
+        try {
+            return statsDao.topEmailDomains(limit, statsSource);
+        } catch (Exception e) {
+            logger.error("Ошибка при получении доменов email", e);
+            throw new DatabaseException("Не удалось получить домены email", e);
         }
     }
 
-    private void validateAge(Integer age) {
-        if (age == null) {
-            return;
+    @Override
+    public ChangePage getChangesSince(ChangeCursor cursor, int limit) {
+        logger.info("Получение изменений после {}, не больше {}", cursor, limit);
+
+        if (limit <= 0 || limit > MAX_CHANGES_PAGE) {
+            throw new ValidationException("Размер страницы изменений должен быть от 1 до " + MAX_CHANGES_PAGE);
         }
-        if (age < 0) {
-            throw new ValidationException("Возраст не может быть отрицательным");
+        ChangeCursor from = cursor != null ? cursor : ChangeCursor.START;
+        // Надгробия старше срока хранения удалены: по такому курсору потребитель пропустил бы удаления
+        if (!from.equals(ChangeCursor.START) && from.getChangedAt().isBefore(changesDao.oldestAvailable())) {
+            throw new ValidationException("Курсор старше срока хранения удалений ("
+                    + UserChangesDao.TOMBSTONE_RETENTION_DAYS + " дней): нужна полная синхронизация с начала ленты");
         }
 
-        if (age > 110) {
-            throw new ValidationException("Возраст не может быть больше 110 лет");
+        try {
+            return changesDao.changesSince(from, limit);
+        } catch (Exception e) {
+            logger.error("Ошибка при получении изменений", e);
+            throw new DatabaseException("Не удалось получить изменения пользователей", e);
         }
     }
-}
 
+    public SingleFlight.Stats getFindByIdCoalescingStats() {
+        return findByIdFlight.getStats();
+    }
+
+    public SingleFlight.Stats getFindByEmailCoalescingStats() {
+        return findByEmailFlight.getStats();
+    }
+}
@@ -0,0 +1,140 @@
+package com.userservice.service.admission;
+
+import com.userservice.changes.ChangeCursor;
+import com.userservice.changes.ChangePage;
+import com.userservice.entity.User;
+import com.userservice.service.UserService;
+import com.userservice.stats.UserRollup;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.function.Supplier;
+
+// Контроль допуска перед UserService: интерактивные запросы и массовые операции
+// ограничиваются раздельно, чтобы выгрузка всей таблицы не занимала пул соединений целиком
+public class AdmissionControlledUserService implements UserService {
+
+    private final UserService delegate;
+    private final Bulkhead interactive;
+    private final Bulkhead bulk;
+
+    public AdmissionControlledUserService(UserService delegate) {
+        // Лимиты выводятся из размера пула соединений (см. ConnectionBudget)
+        this(delegate, ConnectionBudget.interactiveBulkhead(), ConnectionBudget.bulkBulkhead());
+    }
+
+    public AdmissionControlledUserService(UserService delegate, Bulkhead interactive, Bulkhead bulk) {
+        this.delegate = delegate;
+        this.interactive = interactive;
+        this.bulk = bulk;
+    }
+
+    @Override
+    public User createUser(String name, String email, Integer age) {
+        return call(interactive, () -> delegate.createUser(name, email, age));
+    }
+
+    @Override
+    public User getUserById(Long id) {
+        return call(interactive, () -> delegate.getUserById(id));
+    }
+
+    @Override
+    public Optional<User> findUserById(Long id) {
+        return call(interactive, () -> delegate.findUserById(id));
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return call(bulk, delegate::getAllUsers);
+    }
+
+    @Override
+    public List<User> getUsersCreatedBetween(LocalDateTime from, LocalDateTime to) {
+        return call(bulk, () -> delegate.getUsersCreatedBetween(from, to));
+    }
+
+    @Override
+    public User updateUser(Long id, String name, String email, Integer age) {
+        return call(interactive, () -> delegate.updateUser(id, name, email, age));
+    }
+
+    @Override
+    public void deleteUser(Long id) {
+        call(interactive, () -> {
+            delegate.deleteUser(id);
+            return null;
+        });
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return call(interactive, () -> delegate.getUserByEmail(email));
+    }
+
+    @Override
+    public Optional<User> findUserByEmail(String email) {
+        return call(interactive, () -> delegate.findUserByEmail(email));
+    }
+
+    @Override
+    public long getUserCount() {
+        return call(bulk, delegate::getUserCount);
+    }
+
+    @Override
+    public void deleteAllUsers() {
+        call(bulk, () -> {
+            delegate.deleteAllUsers();
+            return null;
+        });
+    }
+
+    // Сводки из user_stats_rollup дешевы; GROUP BY по всей users — массовая операция
+    @Override
+    public Map<String, Long> getAgeDistribution() {
+        return call(statsBulkhead(), delegate::getAgeDistribution);
+    }
+
+    @Override
+    public SortedMap<LocalDate, Long> getSignupsPerDay(LocalDate from, LocalDate to) {
+        return call(statsBulkhead(), () -> delegate.getSignupsPerDay(from, to));
+    }
+
+    @Override
+    public Map<String, Long> getTopEmailDomains(int limit) {
+        return call(statsBulkhead(), () -> delegate.getTopEmailDomains(limit));
+    }
+
+    // Страница ленты — короткий диапазон индекса, а не обход таблицы
+    @Override
+    public ChangePage getChangesSince(ChangeCursor cursor, int limit) {
+        return call(interactive, () -> delegate.getChangesSince(cursor, limit));
+    }
+
+    private Bulkhead statsBulkhead() {
+        return UserRollup.ENABLED ? interactive : bulk;
+    }
+
+    public Bulkhead.Stats getInteractiveStats() {
+        return interactive.getStats();
+    }
+
+    public Bulkhead.Stats getBulkStats() {
+        return bulk.getStats();
+    }
+
+    private static <T> T call(Bulkhead bulkhead, Supplier<T> operation) {
+        bulkhead.acquire();
+        long start = System.nanoTime();
+        try {
+            return operation.get();
+        } finally {
+            bulkhead.release(System.nanoTime() - start);
+        }
+    }
+}
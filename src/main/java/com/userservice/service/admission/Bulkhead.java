@@ -0,0 +1,187 @@
+package com.userservice.service.admission;
+
+import com.userservice.exception.DeadlineExceededException;
+import com.userservice.exception.ServiceOverloadedException;
+import com.userservice.util.Deadline;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Ограничение параллелизма для класса операций: лимит одновременных вызовов,
+// ограниченная очередь ожидания с таймаутом и адаптивный лимит (AIMD по задержке)
+public class Bulkhead {
+
+    private static final Logger logger = LogManager.getLogger(Bulkhead.class);
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    private final long latencyThresholdNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public Bulkhead(String name, int initialLimit, int minLimit, int maxLimit, int maxQueued,
+                    long maxWaitMillis, long latencyThresholdMillis) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit || maxQueued < 0) {
+            throw new IllegalArgumentException("Некорректные лимиты для " + name);
+        }
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+    }
+
+    // Истекший срок вызова — отказ по сроку (DeadlineExceededException, 504), а не перегрузка (503)
+    public void acquire() {
+        Deadline.check("допуск " + name);
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                accepted.increment();
+                return;
+            }
+
+            if (queued >= maxQueued) {
+                rejected.increment();
+                throw new ServiceOverloadedException("Сервис перегружен (" + name + "): очередь ожидания заполнена");
+            }
+
+            queued++;
+            try {
+                // Ожидание в очереди не длиннее остатка срока вызова
+                Deadline deadline = Deadline.current();
+                long remaining = deadline != null ? Math.min(maxWaitNanos, deadline.remainingNanos()) : maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        timedOut.increment();
+                        if (deadline != null && deadline.isExpired()) {
+                            throw new DeadlineExceededException("Срок вызова истек в очереди допуска (" + name + ")");
+                        }
+                        throw new ServiceOverloadedException("Сервис перегружен (" + name + "): истекло время ожидания");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.increment();
+                throw new ServiceOverloadedException("Ожидание допуска прервано (" + name + ")");
+            } finally {
+                queued--;
+            }
+
+            inFlight++;
+            accepted.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Медленный вызов уменьшает лимит мультипликативно, быстрый при загруженном лимите — увеличивает на 1/limit
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+
+            double previous = limit;
+            if (latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            } else if (inFlight + 1 >= (int) limit) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            if ((int) previous != (int) limit) {
+                logger.debug("Лимит {} изменен: {} -> {}", name, (int) previous, (int) limit);
+            }
+
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats(name, (int) limit, inFlight, queued, accepted.sum(), rejected.sum(), timedOut.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static final class Stats {
+        private final String name;
+        private final int limit;
+        private final int inFlight;
+        private final int queued;
+        private final long accepted;
+        private final long rejected;
+        private final long timedOut;
+
+        Stats(String name, int limit, int inFlight, int queued, long accepted, long rejected, long timedOut) {
+            this.name = name;
+            this.limit = limit;
+            this.inFlight = inFlight;
+            this.queued = queued;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.timedOut = timedOut;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getTimedOut() {
+            return timedOut;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" + name + ": limit=" + limit + ", inFlight=" + inFlight + ", queued=" + queued
+                    + ", accepted=" + accepted + ", rejected=" + rejected + ", timedOut=" + timedOut + '}';
+        }
+    }
+}
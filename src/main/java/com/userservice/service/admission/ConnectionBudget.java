@@ -0,0 +1,49 @@
+package com.userservice.service.admission;
+
+import com.userservice.config.AppConfig;
+
+// Раздел пула соединений (userservice.db.poolSize) между классами запросов HTTP API.
+// Сумма максимумов interactive, bulk и export не превышает пул за вычетом фоновых задач:
+// лишние запросы ждут в очереди bulkhead и получают 503, а не исключение переполненного пула Hibernate
+public final class ConnectionBudget {
+
+    // OutboxRelay и RollupReconciler (отложенная запись, обслуживание секций, /health — в пределах запаса)
+    public static final int BACKGROUND_CONNECTIONS = 2;
+
+    private static final int POOL_SIZE = AppConfig.getInt("userservice.db.poolSize", 10);
+
+    private ConnectionBudget() {
+    }
+
+    // На каждый класс нужно хотя бы одно соединение: при пуле меньше 5 запас для фона не гарантирован
+    public static int requests() {
+        return Math.max(3, POOL_SIZE - BACKGROUND_CONNECTIONS);
+    }
+
+    // Выгрузки держат соединение все время передачи ответа
+    public static int export() {
+        return Math.max(1, requests() / 4);
+    }
+
+    public static int bulk() {
+        return Math.max(1, requests() / 8);
+    }
+
+    public static int interactive() {
+        return requests() - export() - bulk();
+    }
+
+    public static Bulkhead interactiveBulkhead() {
+        int max = interactive();
+        return new Bulkhead("interactive", Math.max(1, max * 3 / 4), 1, max, 64, 200, 100);
+    }
+
+    public static Bulkhead bulkBulkhead() {
+        return new Bulkhead("bulk", 1, 1, bulk(), 4, 2_000, 5_000);
+    }
+
+    public static Bulkhead exportBulkhead() {
+        int max = export();
+        return new Bulkhead("export", max, 1, max, 8, 2_000, 60_000);
+    }
+}
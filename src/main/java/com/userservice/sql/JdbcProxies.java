@@ -0,0 +1,277 @@
+package com.userservice.sql;
+
+import com.userservice.config.EmbeddedDatabase;
+import com.userservice.exception.DeadlineExceededException;
+import com.userservice.tracing.Span;
+import com.userservice.tracing.SpanKind;
+import com.userservice.tracing.Tracing;
+import com.userservice.util.Deadline;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+// Динамические обертки над Connection/Statement/ResultSet: время выполнения, число строк
+// и параметров для SqlMonitor, спан на каждое выполнение для трассировки, срок вызова (см. Deadline).
+// Остальные вызовы (включая unwrap к классам драйвера) идут к исходным объектам
+final class JdbcProxies {
+
+    private JdbcProxies() {
+    }
+
+    static Connection connection(Connection target) {
+        return (Connection) Proxy.newProxyInstance(JdbcProxies.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(target));
+    }
+
+    static Connection unwrapConnection(Connection connection) {
+        if (Proxy.isProxyClass(connection.getClass())
+                && Proxy.getInvocationHandler(connection) instanceof ConnectionHandler) {
+            return ((ConnectionHandler) Proxy.getInvocationHandler(connection)).target;
+        }
+        return connection;
+    }
+
+    // equals/hashCode по ссылке на обертку: Hibernate хранит Statement и ResultSet в хеш-таблицах
+    private static Object invoke(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return method.invoke(target, args);
+            }
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        // Срок, под который уже настроена текущая транзакция
+        private Deadline appliedDeadline;
+        private Boolean embedded;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = JdbcProxies.invoke(proxy, target, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return statement(PreparedStatement.class, (Statement) result, (String) args[0]);
+                case "prepareCall":
+                    return statement(CallableStatement.class, (Statement) result, (String) args[0]);
+                case "createStatement":
+                    return statement(Statement.class, (Statement) result, null);
+                case "commit":
+                case "rollback":
+                case "setAutoCommit":
+                    appliedDeadline = null;
+                    return result;
+                default:
+                    return result;
+            }
+        }
+
+        private Statement statement(Class<? extends Statement> type, Statement target, String sql) {
+            return (Statement) Proxy.newProxyInstance(JdbcProxies.class.getClassLoader(),
+                    new Class<?>[]{type}, new StatementHandler(this, target, sql));
+        }
+
+        // Серверная граница на случай, если отмена от клиента не дойдет: SET LOCAL действует до конца
+        // транзакции, поэтому ставится один раз на транзакцию по остатку срока на ее первом запросе.
+        // Вне транзакции и во встроенной H2 срок держит только JDBC query timeout
+        void applyDeadline(Deadline deadline) throws SQLException {
+            if (deadline == appliedDeadline) {
+                return;
+            }
+            if (embedded == null) {
+                embedded = EmbeddedDatabase.isEmbedded(target);
+            }
+            if (embedded || target.getAutoCommit()) {
+                return;
+            }
+            String millis = Math.max(1, deadline.remainingMillis()) + "ms";
+            try (PreparedStatement statement = target.prepareStatement(
+                    "SELECT set_config('statement_timeout', ?, true), set_config('lock_timeout', ?, true)")) {
+                statement.setString(1, millis);
+                statement.setString(2, millis);
+                statement.execute();
+            }
+            appliedDeadline = deadline;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final ConnectionHandler connection;
+        private final Statement target;
+        private final String preparedSql;
+        private StatementStats lastStats;
+        private int parameterCount;
+
+        StatementHandler(ConnectionHandler connection, Statement target, String preparedSql) {
+            this.connection = connection;
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.startsWith("execute")) {
+                return execute(proxy, method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameterCount = Math.max(parameterCount, (Integer) args[0]);
+            } else if (name.equals("getResultSet")) {
+                ResultSet resultSet = (ResultSet) JdbcProxies.invoke(proxy, target, method, args);
+                return resultSet != null && lastStats != null ? resultSet(resultSet, lastStats) : resultSet;
+            }
+            return JdbcProxies.invoke(proxy, target, method, args);
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            if (sql == null) {
+                sql = "<batch>";
+            }
+            StatementStats stats = SqlMonitor.ENABLED ? SqlMonitor.statsFor(sql) : null;
+            lastStats = stats;
+
+            Deadline deadline = Deadline.current();
+            if (deadline == null) {
+                return executeTraced(proxy, method, args, sql, stats);
+            }
+            int previousTimeout = target.getQueryTimeout();
+            int timeout = queryTimeoutSeconds(deadline, previousTimeout);
+            connection.applyDeadline(deadline);
+            target.setQueryTimeout(timeout);
+            try {
+                return executeTraced(proxy, method, args, sql, stats);
+            } finally {
+                target.setQueryTimeout(previousTimeout);
+            }
+        }
+
+        // JDBC считает таймаут в целых секундах: остаток округляется вверх, точную границу
+        // в PostgreSQL держит statement_timeout. По таймауту драйвер отменяет выполняющийся запрос
+        private static int queryTimeoutSeconds(Deadline deadline, int previousTimeout) throws SQLTimeoutException {
+            long remainingNanos = deadline.remainingNanos();
+            if (remainingNanos <= 0) {
+                String message = "Срок вызова истек до выполнения запроса";
+                throw new SQLTimeoutException(message, "57014", new DeadlineExceededException(message));
+            }
+            int seconds = (int) Math.min(Integer.MAX_VALUE,
+                    (remainingNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            return previousTimeout > 0 ? Math.min(previousTimeout, seconds) : seconds;
+        }
+
+        private Object executeTraced(Object proxy, Method method, Object[] args, String sql, StatementStats stats)
+                throws Throwable {
+            try (Span span = Tracing.startSpan("jdbc." + method.getName(), SpanKind.CLIENT)) {
+                if (span.isRecording()) {
+                    // Форма запроса без литералов: значения в трассы не попадают
+                    span.setAttribute("db.system", "postgresql")
+                            .setAttribute("db.statement", stats != null ? stats.getShape() : SqlMonitor.shapeOf(sql));
+                }
+
+                long start = System.nanoTime();
+                Object result;
+                try {
+                    result = JdbcProxies.invoke(proxy, target, method, args);
+                } catch (Throwable e) {
+                    span.recordError(e);
+                    if (stats != null) {
+                        SqlMonitor.recordExecution(stats, System.nanoTime() - start, true, parameterCount);
+                    }
+                    throw e;
+                }
+                if (stats != null) {
+                    SqlMonitor.recordExecution(stats, System.nanoTime() - start, false, parameterCount);
+                }
+
+                long rowsAffected = rowsAffected(result);
+                if (rowsAffected >= 0) {
+                    span.setAttribute("db.rows_affected", rowsAffected);
+                    if (stats != null) {
+                        stats.addRowsAffected(rowsAffected);
+                    }
+                }
+                return result instanceof ResultSet && stats != null ? resultSet((ResultSet) result, stats) : result;
+            }
+        }
+
+        // -1, если выполнение вернуло ResultSet или признак execute()
+        private static long rowsAffected(Object result) {
+            if (result instanceof Integer || result instanceof Long) {
+                return Math.max(0, ((Number) result).longValue());
+            }
+            if (result instanceof int[]) {
+                long total = 0;
+                for (int count : (int[]) result) {
+                    total += Math.max(0, count);
+                }
+                return total;
+            }
+            if (result instanceof long[]) {
+                long total = 0;
+                for (long count : (long[]) result) {
+                    total += Math.max(0, count);
+                }
+                return total;
+            }
+            return -1;
+        }
+
+        private static ResultSet resultSet(ResultSet target, StatementStats stats) {
+            return (ResultSet) Proxy.newProxyInstance(JdbcProxies.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, new ResultSetHandler(target, stats));
+        }
+    }
+
+    // Число строк учитывается при закрытии ResultSet
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final StatementStats stats;
+        private long rows;
+        private boolean counted;
+
+        ResultSetHandler(ResultSet target, StatementStats stats) {
+            this.target = target;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = JdbcProxies.invoke(proxy, target, method, args);
+            String name = method.getName();
+            if (name.equals("next")) {
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                }
+            } else if (name.equals("close") && !counted) {
+                counted = true;
+                stats.addRowsReturned(rows);
+            }
+            return result;
+        }
+    }
+}
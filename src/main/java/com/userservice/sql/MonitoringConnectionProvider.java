@@ -0,0 +1,37 @@
+package com.userservice.sql;
+
+import com.userservice.tracing.Span;
+import com.userservice.tracing.SpanKind;
+import com.userservice.tracing.Tracing;
+import com.userservice.util.Deadline;
+import org.hibernate.engine.jdbc.connections.internal.DriverManagerConnectionProviderImpl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Встроенный пул Hibernate, выдающий соединения в обертке SqlMonitor, трассировки и сроков вызова.
+// В пул возвращается исходное соединение, а не обертка
+public class MonitoringConnectionProvider extends DriverManagerConnectionProviderImpl {
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Deadline.check("получение соединения");
+        try (Span span = Tracing.startSpan("jdbc.connection.acquire", SpanKind.CLIENT)) {
+            try {
+                return JdbcProxies.connection(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                span.recordError(e);
+                throw e;
+            }
+        }
+    }
+
+    public static boolean isNeeded() {
+        return SqlMonitor.ENABLED || Tracing.ENABLED || Deadline.ENABLED;
+    }
+
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        super.closeConnection(JdbcProxies.unwrapConnection(connection));
+    }
+}
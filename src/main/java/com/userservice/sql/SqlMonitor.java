@@ -0,0 +1,152 @@
+package com.userservice.sql;
+
+import com.userservice.config.AppConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Статистика SQL по формам запросов, журнал медленных запросов и поиск N+1.
+// Данные поступают из JDBC-обертки (MonitoringConnectionProvider); значения параметров
+// и литералы в журнал и статистику не попадают
+public final class SqlMonitor {
+
+    private static final Logger logger = LogManager.getLogger(SqlMonitor.class);
+
+    public static final boolean ENABLED = AppConfig.getBoolean("userservice.sql.monitor", true);
+    private static final long SLOW_THRESHOLD_MICROS =
+            TimeUnit.MILLISECONDS.toMicros(AppConfig.getLong("userservice.sql.slowThresholdMillis", 200));
+    private static final int N_PLUS_ONE_THRESHOLD = AppConfig.getInt("userservice.sql.nPlusOneThreshold", 10);
+
+    // Ограничения на случай SQL с подставленными значениями, из которого формы не получаются одинаковыми
+    private static final int MAX_SHAPES = 1_000;
+    private static final int MAX_CACHED_SQL = 10_000;
+    private static final String OTHER_SHAPE = "<прочие запросы>";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Map<String, StatementStats> statsByShape = new ConcurrentHashMap<>();
+    private static final Map<String, StatementStats> statsBySql = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Scope> currentScope = new ThreadLocal<>();
+
+    private SqlMonitor() {
+    }
+
+    static StatementStats statsFor(String sql) {
+        StatementStats stats = statsBySql.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+
+        String shape = shapeOf(sql);
+        stats = statsByShape.get(shape);
+        if (stats == null) {
+            stats = statsByShape.size() < MAX_SHAPES
+                    ? statsByShape.computeIfAbsent(shape, StatementStats::new)
+                    : statsByShape.computeIfAbsent(OTHER_SHAPE, StatementStats::new);
+        }
+        if (statsBySql.size() < MAX_CACHED_SQL) {
+            statsBySql.put(sql, stats);
+        }
+        return stats;
+    }
+
+    // Литералы заменяются на ?, списки параметров IN (?, ?, ...) сворачиваются в один
+    static String shapeOf(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = PARAMETER_LIST.matcher(shape).replaceAll("(?...)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    static void recordExecution(StatementStats stats, long nanos, boolean error, int parameterCount) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        boolean slow = micros >= SLOW_THRESHOLD_MICROS;
+        stats.recordExecution(micros, error, slow);
+
+        Scope scope = currentScope.get();
+        if (scope != null) {
+            scope.count(stats);
+        }
+
+        if (slow) {
+            logger.warn("Медленный запрос: {} мс{}, параметров: {} (значения скрыты): {}",
+                    TimeUnit.MICROSECONDS.toMillis(micros), scope != null ? " в " + scope.name : "",
+                    parameterCount, stats.getShape());
+        }
+    }
+
+    // Область одного вызова сервиса. Вложенные области сливаются с внешней
+    public static Scope beginScope(String name) {
+        Scope scope = currentScope.get();
+        if (scope != null) {
+            scope.depth++;
+            return scope;
+        }
+        scope = new Scope(name);
+        currentScope.set(scope);
+        return scope;
+    }
+
+    // Формы в порядке убывания суммарного времени
+    public static List<StatementStats> getStats() {
+        List<StatementStats> stats = new ArrayList<>(statsByShape.values());
+        stats.sort(Comparator.comparingLong(StatementStats::getTotalMicros).reversed());
+        return stats;
+    }
+
+    public static String summary(int limit) {
+        List<StatementStats> stats = getStats();
+        StringBuilder sb = new StringBuilder("Статистика SQL (форм: ").append(stats.size()).append(")\n");
+        for (int i = 0; i < Math.min(limit, stats.size()); i++) {
+            sb.append(stats.get(i)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static void reset() {
+        statsByShape.clear();
+        statsBySql.clear();
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final String name;
+        private final Map<StatementStats, int[]> executions = new IdentityHashMap<>();
+        private int depth = 1;
+
+        private Scope(String name) {
+            this.name = name;
+        }
+
+        private void count(StatementStats stats) {
+            executions.computeIfAbsent(stats, key -> new int[1])[0]++;
+        }
+
+        @Override
+        public void close() {
+            if (--depth > 0) {
+                return;
+            }
+            currentScope.remove();
+
+            for (Map.Entry<StatementStats, int[]> entry : executions.entrySet()) {
+                int count = entry.getValue()[0];
+                if (count >= N_PLUS_ONE_THRESHOLD) {
+                    entry.getKey().markNPlusOne();
+                    logger.warn("Возможный N+1 в {}: один и тот же запрос выполнен {} раз: {}",
+                            name, count, entry.getKey().getShape());
+                }
+            }
+        }
+    }
+}
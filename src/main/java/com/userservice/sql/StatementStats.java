@@ -0,0 +1,95 @@
+package com.userservice.sql;
+
+import com.userservice.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Статистика одной формы SQL-запроса (текст без значений параметров и литералов)
+public final class StatementStats {
+
+    private final String shape;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rowsReturned = new LongAdder();
+    private final LongAdder rowsAffected = new LongAdder();
+    private final LongAdder slowExecutions = new LongAdder();
+    private final LongAdder nPlusOneSuspects = new LongAdder();
+
+    StatementStats(String shape) {
+        this.shape = shape;
+    }
+
+    void recordExecution(long micros, boolean error, boolean slow) {
+        latency.record(micros);
+        if (error) {
+            errors.increment();
+        }
+        if (slow) {
+            slowExecutions.increment();
+        }
+    }
+
+    void addRowsReturned(long rows) {
+        rowsReturned.add(rows);
+    }
+
+    void addRowsAffected(long rows) {
+        rowsAffected.add(rows);
+    }
+
+    void markNPlusOne() {
+        nPlusOneSuspects.increment();
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public long getExecutions() {
+        return latency.getCount();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRowsReturned() {
+        return rowsReturned.sum();
+    }
+
+    public long getRowsAffected() {
+        return rowsAffected.sum();
+    }
+
+    public long getSlowExecutions() {
+        return slowExecutions.sum();
+    }
+
+    // Сколько раз форма повторялась подозрительно часто в пределах одного вызова сервиса
+    public long getNPlusOneSuspects() {
+        return nPlusOneSuspects.sum();
+    }
+
+    public long getTotalMicros() {
+        return latency.getTotalMicros();
+    }
+
+    public long getAvgMicros() {
+        return latency.getAvgMicros();
+    }
+
+    public long getMaxMicros() {
+        return latency.getMaxMicros();
+    }
+
+    public long percentileMicros(double percentile) {
+        return latency.percentileMicros(percentile);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%8d x  avg %7d мкс  p99 %8d мкс  max %8d мкс  строк %8d/%d  медленных %d  N+1 %d  %s",
+                getExecutions(), getAvgMicros(), percentileMicros(0.99), getMaxMicros(), getRowsReturned(),
+                getRowsAffected(), getSlowExecutions(), getNPlusOneSuspects(), shape);
+    }
+}
@@ -0,0 +1,244 @@
+package com.userservice.stats;
+
+import com.userservice.config.AppConfig;
+import com.userservice.config.EmbeddedDatabase;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Сверка user_stats_rollup с users: исправляет дрейф от изменений в обход DAO (ручной SQL,
+// архивирование секций, normalize-emails, узлы со старой версией) и сворачивает слоты проверенных корзин.
+// Сверка идет под EXCLUSIVE-блокировкой user_stats_rollup: записи пользователей ждут ее окончания,
+// зато ни одно изменение не теряется между подсчетом и перезаписью. Поэтому она редкая:
+// userservice.stats.reconcileMinutes (по умолчанию 60, 0 — выключена). Пустые сводки заполняются сразу.
+// Из нескольких узлов сверку выполняет один (advisory-блокировка)
+public class RollupReconciler implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(RollupReconciler.class);
+
+    private static volatile Report lastReport;
+
+    private final SessionFactory sessionFactory;
+    private final long intervalMinutes;
+    private final ScheduledExecutorService scheduler;
+
+    public RollupReconciler(SessionFactory sessionFactory, long intervalMinutes) {
+        if (intervalMinutes <= 0) {
+            throw new IllegalArgumentException("intervalMinutes должен быть положительным");
+        }
+        this.sessionFactory = sessionFactory;
+        this.intervalMinutes = intervalMinutes;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rollup-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // null, если сводки или их сверка выключены
+    public static RollupReconciler fromProperties(SessionFactory sessionFactory) {
+        long interval = AppConfig.getLong("userservice.stats.reconcileMinutes", 60);
+        if (!UserRollup.ENABLED || interval <= 0) {
+            return null;
+        }
+        return new RollupReconciler(sessionFactory, interval);
+    }
+
+    public void start() {
+        scheduler.schedule(this::reconcileIfEmpty, 0, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::runSafely, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        logger.info("Сверка сводок запущена: раз в {} мин", intervalMinutes);
+    }
+
+    private void reconcileIfEmpty() {
+        boolean empty;
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            empty = session.createNativeQuery("SELECT 1 FROM user_stats_rollup")
+                    .setMaxResults(1)
+                    .list()
+                    .isEmpty();
+        } catch (Exception e) {
+            logger.error("Не удалось проверить сводки пользователей", e);
+            return;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+        if (empty) {
+            runSafely();
+        }
+    }
+
+    private void runSafely() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            logger.error("Сверка сводок пользователей не удалась", e);
+        }
+    }
+
+    // null — сверку в это время выполняет другой узел
+    public Report reconcile() {
+        long start = System.nanoTime();
+        Session session = null;
+        Transaction transaction = null;
+
+        try {
+            session = sessionFactory.openSession();
+            transaction = session.beginTransaction();
+
+            boolean embedded = session.doReturningWork(EmbeddedDatabase::isEmbedded);
+            if (!embedded) {
+                Boolean locked = (Boolean) session.createNativeQuery(
+                                "SELECT pg_try_advisory_xact_lock(hashtext('user_stats_reconcile'))")
+                        .uniqueResult();
+                if (!Boolean.TRUE.equals(locked)) {
+                    transaction.commit();
+                    return null;
+                }
+                // Ждет транзакции, уже изменившие сводки, и не дает начаться новым до фиксации.
+                // Подсчет по users идет после блокировки и видит все, что учтено в сводках
+                session.createNativeQuery("LOCK TABLE user_stats_rollup IN EXCLUSIVE MODE").executeUpdate();
+            }
+
+            int buckets = 0;
+            int drifted = 0;
+            long driftUsers = 0;
+            for (StatsDimension dimension : StatsDimension.values()) {
+                Map<String, Long> expected = UserStatsDao.groupByCounts(session, dimension, null, null, 0);
+                Map<String, long[]> stored = storedCounts(session, dimension);
+
+                Set<String> all = new HashSet<>(expected.keySet());
+                all.addAll(stored.keySet());
+                buckets += expected.size();
+
+                for (String bucket : all) {
+                    long want = expected.getOrDefault(bucket, 0L);
+                    long[] have = stored.getOrDefault(bucket, new long[2]);
+                    if (have[0] != want) {
+                        drifted++;
+                        driftUsers += Math.abs(have[0] - want);
+                        rewrite(session, dimension, bucket, want);
+                    } else if (have[1] > 1 || (have[1] == 1 && want == 0)) {
+                        // Без расхождения: слоты сворачиваются в одну строку, пустые корзины удаляются
+                        rewrite(session, dimension, bucket, want);
+                    }
+                }
+            }
+
+            transaction.commit();
+            Report report = new Report(buckets, drifted, driftUsers, (System.nanoTime() - start) / 1_000_000);
+            lastReport = report;
+            if (drifted > 0) {
+                logger.warn("Сверка сводок: исправлено корзин {} (расхождение {} пользователей), {} мс",
+                        drifted, driftUsers, report.getMillis());
+            } else {
+                logger.info("Сверка сводок: корзин {}, расхождений нет, {} мс", buckets, report.getMillis());
+            }
+            return report;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.getStatus().canRollback()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    // Корзина -> {сумма по слотам, число строк}
+    private static Map<String, long[]> storedCounts(Session session, StatsDimension dimension) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = session.createNativeQuery(
+                        "SELECT bucket, SUM(user_count) AS total, count(*) AS slots FROM user_stats_rollup "
+                                + "WHERE dimension = :dimension GROUP BY bucket")
+                .setParameter("dimension", dimension.name())
+                .list();
+        Map<String, long[]> stored = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            stored.put((String) row[0], new long[]{((Number) row[1]).longValue(), ((Number) row[2]).longValue()});
+        }
+        return stored;
+    }
+
+    private static void rewrite(Session session, StatsDimension dimension, String bucket, long count) {
+        session.doWork(connection -> {
+            try (PreparedStatement delete = connection.prepareStatement(
+                    "DELETE FROM user_stats_rollup WHERE dimension = ? AND bucket = ?")) {
+                delete.setString(1, dimension.name());
+                delete.setString(2, bucket);
+                delete.executeUpdate();
+            }
+            if (count != 0) {
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO user_stats_rollup (dimension, bucket, slot, user_count) VALUES (?, ?, 0, ?)")) {
+                    insert.setString(1, dimension.name());
+                    insert.setString(2, bucket);
+                    insert.setLong(3, count);
+                    insert.executeUpdate();
+                }
+            }
+        });
+    }
+
+    public static Report getLastReport() {
+        return lastReport;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static final class Report {
+        private final int buckets;
+        private final int driftedBuckets;
+        private final long driftUsers;
+        private final long millis;
+
+        Report(int buckets, int driftedBuckets, long driftUsers, long millis) {
+            this.buckets = buckets;
+            this.driftedBuckets = driftedBuckets;
+            this.driftUsers = driftUsers;
+            this.millis = millis;
+        }
+
+        public int getBuckets() {
+            return buckets;
+        }
+
+        public int getDriftedBuckets() {
+            return driftedBuckets;
+        }
+
+        public long getDriftUsers() {
+            return driftUsers;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.userservice.stats;
+
+import com.userservice.entity.User;
+
+import java.sql.Date;
+import java.util.Locale;
+
+// Разрезы сводок по пользователям. GROUP BY идет по выражению groupBy(), а его значения переводятся
+// в корзины тем же кодом, что и у инкрементальных сводок (bucketOf) — расхождений в границах нет
+public enum StatsDimension {
+
+    // Группировка по самому возрасту: PostgreSQL читает ее из индекса idx_users_age,
+    // а возрастов не больше сотни-двух, и корзины из них собираются в Java
+    AGE("age") {
+        @Override
+        public String bucketOf(User user) {
+            return ageBucket(user.getAge());
+        }
+
+        @Override
+        String bucketOfValue(Object value) {
+            return ageBucket(value != null ? ((Number) value).intValue() : null);
+        }
+    },
+
+    // ISO-дата: строковый порядок корзин совпадает с хронологическим
+    SIGNUP_DAY("CAST(created_at AS DATE)") {
+        @Override
+        public String bucketOf(User user) {
+            return user.getCreatedAt().toLocalDate().toString();
+        }
+
+        @Override
+        String bucketOfValue(Object value) {
+            return ((Date) value).toLocalDate().toString();
+        }
+    },
+
+    EMAIL_DOMAIN("lower(substring(email FROM position('@' IN email) + 1))") {
+        @Override
+        public String bucketOf(User user) {
+            String email = user.getEmail();
+            return email.substring(email.indexOf('@') + 1).toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        String bucketOfValue(Object value) {
+            return (String) value;
+        }
+    };
+
+    public static final String UNKNOWN_AGE = "unknown";
+
+    // Верхние границы (не включительно) возрастных корзин; последняя корзина открыта сверху
+    private static final int[] AGE_BOUNDS = {18, 25, 35, 45, 55, 65};
+    private static final String[] AGE_BUCKETS = {"0-17", "18-24", "25-34", "35-44", "45-54", "55-64", "65+"};
+
+    private final String groupBy;
+
+    StatsDimension(String groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public abstract String bucketOf(User user);
+
+    // Значение groupBy() из результата запроса -> корзина
+    abstract String bucketOfValue(Object value);
+
+    // Выражение над столбцами users для GROUP BY
+    String groupBy() {
+        return groupBy;
+    }
+
+    public static String ageBucket(Integer age) {
+        if (age == null) {
+            return UNKNOWN_AGE;
+        }
+        for (int i = 0; i < AGE_BOUNDS.length; i++) {
+            if (age < AGE_BOUNDS[i]) {
+                return AGE_BUCKETS[i];
+            }
+        }
+        return AGE_BUCKETS[AGE_BOUNDS.length];
+    }
+
+    // Все возрастные корзины по порядку: распределение показывает и пустые
+    public static String[] ageBuckets() {
+        String[] buckets = new String[AGE_BUCKETS.length + 1];
+        System.arraycopy(AGE_BUCKETS, 0, buckets, 0, AGE_BUCKETS.length);
+        buckets[AGE_BUCKETS.length] = UNKNOWN_AGE;
+        return buckets;
+    }
+}
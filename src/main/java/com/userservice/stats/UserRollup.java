@@ -0,0 +1,146 @@
+package com.userservice.stats;
+
+import com.userservice.config.AppConfig;
+import com.userservice.entity.User;
+import org.hibernate.Session;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Инкрементальные сводки в user_stats_rollup: счетчики корзин меняются в транзакции записи пользователя,
+// поэтому панели читают O(корзин) строк вместо обхода users. Дрейф от записей в обход DAO исправляет
+// RollupReconciler.
+// Счетчик корзины разбит на userservice.stats.rollupSlots строк со случайным выбором слота: параллельные
+// регистрации одного дня блокируют разные строки, а не одну горячую до конца своих транзакций.
+// Строки меняются в порядке (разрез, корзина), так что встречные транзакции не входят во взаимоблокировку
+public final class UserRollup {
+
+    public static final boolean ENABLED = AppConfig.getBoolean("userservice.stats.rollup", true);
+    static final int SLOTS = Math.max(1, AppConfig.getInt("userservice.stats.rollupSlots", 4));
+
+    private static final String UPDATE_SQL = "UPDATE user_stats_rollup SET user_count = user_count + ? "
+            + "WHERE dimension = ? AND bucket = ? AND slot = ?";
+    private static final String INSERT_SQL = "INSERT INTO user_stats_rollup (dimension, bucket, slot, user_count) "
+            + "VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    private UserRollup() {
+    }
+
+    public static void added(Session session, User user) {
+        if (ENABLED) {
+            Map<String, Long> deltas = new TreeMap<>();
+            collect(deltas, user, 1);
+            apply(session, deltas);
+        }
+    }
+
+    public static void removed(Session session, User user) {
+        if (ENABLED) {
+            Map<String, Long> deltas = new TreeMap<>();
+            collect(deltas, user, -1);
+            apply(session, deltas);
+        }
+    }
+
+    // Неизменившиеся корзины взаимно сокращаются: правка имени не трогает сводки
+    public static void changed(Session session, User before, User after) {
+        if (ENABLED) {
+            Map<String, Long> deltas = new TreeMap<>();
+            collect(deltas, before, -1);
+            collect(deltas, after, 1);
+            apply(session, deltas);
+        }
+    }
+
+    public static void cleared(Session session) {
+        if (ENABLED) {
+            session.createNativeQuery("DELETE FROM user_stats_rollup").executeUpdate();
+        }
+    }
+
+    // Состояние строки до обновления: возраст и email, по которым она учтена в сводках.
+    // Если строку успели изменить, обновление все равно не пройдет проверку версии
+    public static User currentState(Session session, Long id) {
+        if (!ENABLED) {
+            return null;
+        }
+        Object[] row = (Object[]) session.createNativeQuery(
+                        "SELECT age, email, created_at FROM users WHERE id = :id")
+                .setParameter("id", id)
+                .uniqueResult();
+        if (row == null) {
+            return null;
+        }
+        return new User(id, null, (String) row[1], row[0] != null ? ((Number) row[0]).intValue() : null,
+                ((Timestamp) row[2]).toLocalDateTime());
+    }
+
+    // Ключ "<разрез>\0<корзина>": TreeMap задает порядок захвата строк
+    private static void collect(Map<String, Long> deltas, User user, long sign) {
+        for (StatsDimension dimension : StatsDimension.values()) {
+            deltas.merge(dimension.name() + '\0' + dimension.bucketOf(user), sign, Long::sum);
+        }
+    }
+
+    private static void apply(Session session, Map<String, Long> deltas) {
+        deltas.values().removeIf(delta -> delta == 0);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        int slot = ThreadLocalRandom.current().nextInt(SLOTS);
+
+        session.doWork(connection -> {
+            List<Map.Entry<String, Long>> entries = new ArrayList<>(deltas.entrySet());
+            int[] updated;
+            // Одна пачка UPDATE — один обмен с БД; новые корзины редки и вставляются по одной
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+                for (Map.Entry<String, Long> entry : entries) {
+                    bindUpdate(statement, entry, slot);
+                    statement.addBatch();
+                }
+                updated = statement.executeBatch();
+            }
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    insert(connection, entries.get(i), slot);
+                }
+            }
+        });
+    }
+
+    // Параллельная вставка той же корзины выигрывает ON CONFLICT — тогда остается прибавить к ее строке
+    private static void insert(Connection connection, Map.Entry<String, Long> entry, int slot) throws SQLException {
+        int separator = entry.getKey().indexOf('\0');
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            statement.setString(1, entry.getKey().substring(0, separator));
+            statement.setString(2, entry.getKey().substring(separator + 1));
+            statement.setInt(3, slot);
+            statement.setLong(4, entry.getValue());
+            if (statement.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+            bindUpdate(statement, entry, slot);
+            if (statement.executeUpdate() == 0) {
+                throw new SQLException("Строка сводки " + entry.getKey().replace('\0', '/') + " не найдена");
+            }
+        }
+    }
+
+    private static void bindUpdate(PreparedStatement statement, Map.Entry<String, Long> entry, int slot)
+            throws SQLException {
+        int separator = entry.getKey().indexOf('\0');
+        statement.setLong(1, entry.getValue());
+        statement.setString(2, entry.getKey().substring(0, separator));
+        statement.setString(3, entry.getKey().substring(separator + 1));
+        statement.setInt(4, slot);
+    }
+}
@@ -0,0 +1,148 @@
+package com.userservice.stats;
+
+import com.userservice.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Чтение сводок по пользователям из одного из источников:
+//   ROLLUP — таблица user_stats_rollup, O(корзин);
+//   QUERY  — GROUP BY по users, O(пользователей); по индексам idx_users_age и idx_users_created_at
+public class UserStatsDao {
+
+    public enum Source {
+        ROLLUP, QUERY
+    }
+
+    private final Supplier<SessionFactory> sessionFactory;
+
+    public UserStatsDao() {
+        this.sessionFactory = HibernateUtil::getSessionFactory;
+    }
+
+    public UserStatsDao(SessionFactory sessionFactory) {
+        this.sessionFactory = () -> sessionFactory;
+    }
+
+    // Все возрастные корзины по порядку, включая пустые
+    public Map<String, Long> ageDistribution(Source source) {
+        Map<String, Long> counts = inSession(session -> counts(session, StatsDimension.AGE, source, null, null, 0));
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        for (String bucket : StatsDimension.ageBuckets()) {
+            distribution.put(bucket, counts.getOrDefault(bucket, 0L));
+        }
+        return distribution;
+    }
+
+    // Дни без регистраций в результат не попадают; границы включительные
+    public SortedMap<LocalDate, Long> signupsPerDay(LocalDate from, LocalDate to, Source source) {
+        Map<String, Long> counts =
+                inSession(session -> counts(session, StatsDimension.SIGNUP_DAY, source, from, to, 0));
+        TreeMap<LocalDate, Long> signups = new TreeMap<>();
+        counts.forEach((day, count) -> signups.put(LocalDate.parse(day), count));
+        return signups;
+    }
+
+    // Домены по убыванию числа пользователей; сортировка и LIMIT — на стороне БД
+    public Map<String, Long> topEmailDomains(int limit, Source source) {
+        return inSession(session -> counts(session, StatsDimension.EMAIL_DOMAIN, source, null, null, limit));
+    }
+
+    // limit > 0 — только самые крупные корзины; только для разрезов, где значение группировки и есть корзина
+    static Map<String, Long> counts(Session session, StatsDimension dimension, Source source,
+                                    LocalDate from, LocalDate to, int limit) {
+        return source == Source.ROLLUP
+                ? rollupCounts(session, dimension, from, to, limit)
+                : groupByCounts(session, dimension, from, to, limit);
+    }
+
+    // Сумма слотов каждой корзины; корзины, опустевшие после удалений, пропускаются
+    static Map<String, Long> rollupCounts(Session session, StatsDimension dimension, LocalDate from, LocalDate to,
+                                          int limit) {
+        StringBuilder sql = new StringBuilder("SELECT bucket, SUM(user_count) AS total FROM user_stats_rollup "
+                + "WHERE dimension = :dimension");
+        if (from != null) {
+            sql.append(" AND bucket >= :from");
+        }
+        if (to != null) {
+            sql.append(" AND bucket <= :to");
+        }
+        sql.append(" GROUP BY bucket HAVING SUM(user_count) <> 0");
+        orderByCount(sql, limit);
+
+        NativeQuery<?> query = session.createNativeQuery(sql.toString())
+                .setParameter("dimension", dimension.name());
+        if (from != null) {
+            query.setParameter("from", from.toString());
+        }
+        if (to != null) {
+            query.setParameter("to", to.toString());
+        }
+        return toMap(limit(query, limit).list(), value -> (String) value);
+    }
+
+    // Диапазон дней — условие на сам created_at: индекс и отсечение секций работают
+    static Map<String, Long> groupByCounts(Session session, StatsDimension dimension, LocalDate from, LocalDate to,
+                                           int limit) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(dimension.groupBy())
+                .append(" AS bucket, count(*) AS total FROM users");
+        if (from != null) {
+            sql.append(" WHERE created_at >= :from");
+        }
+        if (to != null) {
+            sql.append(from != null ? " AND" : " WHERE").append(" created_at < :to");
+        }
+        sql.append(" GROUP BY ").append(dimension.groupBy());
+        orderByCount(sql, limit);
+
+        NativeQuery<?> query = session.createNativeQuery(sql.toString());
+        if (from != null) {
+            query.setParameter("from", from.atStartOfDay());
+        }
+        if (to != null) {
+            query.setParameter("to", to.plusDays(1).atStartOfDay());
+        }
+        return toMap(limit(query, limit).list(), dimension::bucketOfValue);
+    }
+
+    private static void orderByCount(StringBuilder sql, int limit) {
+        if (limit > 0) {
+            sql.append(" ORDER BY 2 DESC, 1");
+        }
+    }
+
+    private static NativeQuery<?> limit(NativeQuery<?> query, int limit) {
+        return limit > 0 ? query.setMaxResults(limit) : query;
+    }
+
+    // Несколько значений группировки могут попасть в одну корзину (возраст -> диапазон)
+    private static Map<String, Long> toMap(List<?> rows, Function<Object, String> bucketOf) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            counts.merge(bucketOf.apply(columns[0]), ((Number) columns[1]).longValue(), Long::sum);
+        }
+        return counts;
+    }
+
+    private <T> T inSession(Function<Session, T> work) {
+        Session session = null;
+        try {
+            session = sessionFactory.get().openSession();
+            return work.apply(session);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.userservice.tracing;
+
+import com.userservice.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+// Каждая пачка — одна строка в формате OTLP/JSON (ExportTraceServiceRequest).
+// Такой файл читает приемник otlpjsonfile коллектора OpenTelemetry, сеть для записи не нужна
+public class FileSpanExporter implements SpanExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String SERVICE_NAME = "user-service";
+    private static final String SCOPE_NAME = "com.userservice";
+    private static final int STATUS_UNSET = 0;
+    private static final int STATUS_ERROR = 2;
+
+    private final Path file;
+    private Writer writer;
+
+    public FileSpanExporter(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized void export(List<Span> spans) throws IOException {
+        if (writer == null) {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel),
+                    StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        JsonWriter json = new JsonWriter(writer);
+        json.beginObject().name("resourceSpans").beginArray().beginObject();
+        json.name("resource").beginObject().name("attributes").beginArray();
+        writeAttribute(json, "service.name", SERVICE_NAME);
+        json.endArray().endObject();
+
+        json.name("scopeSpans").beginArray().beginObject();
+        json.name("scope").beginObject().name("name").value(SCOPE_NAME).endObject();
+        json.name("spans").beginArray();
+        for (Span span : spans) {
+            writeSpan(json, span);
+        }
+        json.endArray().endObject().endArray();
+
+        json.endObject().endArray().endObject();
+        writer.write('\n');
+        writer.flush();
+    }
+
+    private static void writeSpan(JsonWriter json, Span span) throws IOException {
+        json.beginObject()
+                .name("traceId").value(span.getTraceId())
+                .name("spanId").value(span.getSpanId());
+        if (span.getParentSpanId() != null) {
+            json.name("parentSpanId").value(span.getParentSpanId());
+        }
+        // 64-битные числа в OTLP/JSON передаются строками
+        json.name("name").value(span.getName())
+                .name("kind").value(span.getKind().getOtlpCode())
+                .name("startTimeUnixNano").value(Long.toString(span.getStartEpochNanos()))
+                .name("endTimeUnixNano").value(Long.toString(span.getEndEpochNanos()));
+
+        json.name("attributes").beginArray();
+        for (Map.Entry<String, Object> attribute : span.getAttributes().entrySet()) {
+            writeAttribute(json, attribute.getKey(), attribute.getValue());
+        }
+        json.endArray();
+
+        json.name("status").beginObject().name("code").value(span.isError() ? STATUS_ERROR : STATUS_UNSET);
+        if (span.getStatusMessage() != null) {
+            json.name("message").value(span.getStatusMessage());
+        }
+        json.endObject().endObject();
+    }
+
+    private static void writeAttribute(JsonWriter json, String key, Object value) throws IOException {
+        json.beginObject().name("key").value(key).name("value").beginObject();
+        if (value instanceof Boolean) {
+            json.name("boolValue").value((boolean) (Boolean) value);
+        } else if (value instanceof Long) {
+            json.name("intValue").value(value.toString());
+        } else {
+            json.name("stringValue").value(String.valueOf(value));
+        }
+        json.endObject().endObject();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
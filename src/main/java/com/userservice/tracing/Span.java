@@ -0,0 +1,157 @@
+package com.userservice.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Один участок трассы. Открывается Tracing.startSpan, закрывается close() в try-with-resources
+// в том же потоке. Невыбранные сэмплером трассы представлены одним незаписывающим спаном на поток:
+// вложенные вызовы получают его же, и дочерние спаны не создаются
+public final class Span implements AutoCloseable {
+
+    // Возвращается, когда трассировка выключена; все вызовы игнорируются
+    static final Span NOOP = new Span(null, null, null, null, SpanKind.INTERNAL, null, false);
+
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private String name;
+    private final SpanKind kind;
+    private final Span previous;
+    private final boolean recording;
+    private final long startEpochNanos;
+    private final long startNanoTime;
+
+    private long endEpochNanos;
+    private Map<String, Object> attributes;
+    private boolean error;
+    private String statusMessage;
+    private boolean ended;
+    // Вложенность для незаписывающего спана невыбранной трассы
+    int depth = 1;
+
+    Span(String traceId, String spanId, String parentSpanId, String name, SpanKind kind, Span previous,
+         boolean recording) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.kind = kind;
+        this.previous = previous;
+        this.recording = recording;
+        this.startNanoTime = recording ? System.nanoTime() : 0;
+        this.startEpochNanos = recording ? Tracing.epochNanos(startNanoTime) : 0;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    // Имя, известное только после начала работы (например, маршрут HTTP)
+    public Span updateName(String name) {
+        if (recording && !ended) {
+            this.name = name;
+        }
+        return this;
+    }
+
+    public Span setAttribute(String key, String value) {
+        return put(key, value);
+    }
+
+    public Span setAttribute(String key, long value) {
+        return put(key, value);
+    }
+
+    public Span setAttribute(String key, boolean value) {
+        return put(key, value);
+    }
+
+    public void recordError(Throwable e) {
+        setError(e.getMessage());
+        put("exception.type", e.getClass().getName());
+    }
+
+    public void setError(String message) {
+        if (recording && !ended) {
+            error = true;
+            statusMessage = message;
+        }
+    }
+
+    private Span put(String key, Object value) {
+        if (recording && !ended) {
+            if (attributes == null) {
+                attributes = new LinkedHashMap<>();
+            }
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (this != NOOP) {
+            Tracing.end(this);
+        }
+    }
+
+    // Вызывается из Tracing.end
+    void finish() {
+        ended = true;
+        endEpochNanos = startEpochNanos + (System.nanoTime() - startNanoTime);
+    }
+
+    Span getPrevious() {
+        return previous;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SpanKind getKind() {
+        return kind;
+    }
+
+    public long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+
+    public long getEndEpochNanos() {
+        return endEpochNanos;
+    }
+
+    public long getDurationMicros() {
+        return (endEpochNanos - startEpochNanos) / 1_000;
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes != null ? Collections.unmodifiableMap(attributes) : Collections.emptyMap();
+    }
+
+    public boolean isError() {
+        return error;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + getDurationMicros() + " мкс" + (error ? " ОШИБКА" : "") + " " + getAttributes();
+    }
+}
@@ -0,0 +1,13 @@
+package com.userservice.tracing;
+
+import java.io.IOException;
+import java.util.List;
+
+// Получатель завершенных спанов. Вызывается из одного фонового потока Tracing
+public interface SpanExporter {
+
+    void export(List<Span> spans) throws IOException;
+
+    default void close() throws IOException {
+    }
+}
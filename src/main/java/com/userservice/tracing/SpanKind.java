@@ -0,0 +1,18 @@
+package com.userservice.tracing;
+
+// Коды совпадают с SpanKind в OTLP
+public enum SpanKind {
+    INTERNAL(1),
+    SERVER(2),
+    CLIENT(3);
+
+    private final int otlpCode;
+
+    SpanKind(int otlpCode) {
+        this.otlpCode = otlpCode;
+    }
+
+    public int getOtlpCode() {
+        return otlpCode;
+    }
+}
@@ -0,0 +1,238 @@
+package com.userservice.tracing;
+
+import com.userservice.config.AppConfig;
+import com.userservice.util.HibernateUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Трассировка вызовов в модели OpenTelemetry: trace id 16 байт, span id 8 байт, вложенность по потоку.
+// Настройка:
+//   userservice.tracing.exporter = none (по умолчанию) | memory | file:<путь> (OTLP/JSON, строка на пачку)
+//   userservice.tracing.sampleRatio = доля записываемых трасс, по умолчанию 0.1
+// Решение сэмплера принимается один раз для корневого спана и наследуется всей трассой.
+// Экспорт идет пачками из фонового потока; при переполнении очереди спаны отбрасываются, а не ждут
+public final class Tracing {
+
+    private static final Logger logger = LogManager.getLogger(Tracing.class);
+
+    private static final int QUEUE_CAPACITY = 8_192;
+    private static final int BATCH_SIZE = 512;
+    private static final long EXPORT_INTERVAL_MILLIS = 1_000;
+    private static final int MEMORY_CAPACITY = 10_000;
+
+    private static final long ANCHOR_EPOCH_NANOS = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    private static final long ANCHOR_NANO_TIME = System.nanoTime();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final SpanExporter exporter = createExporter(
+            AppConfig.getString("userservice.tracing.exporter", "none"));
+    public static final boolean ENABLED = exporter != null;
+    private static final double SAMPLE_RATIO = AppConfig.getDouble("userservice.tracing.sampleRatio", 0.1);
+
+    private static final ThreadLocal<Span> current = new ThreadLocal<>();
+    private static final BlockingQueue<Span> queue = new ArrayBlockingQueue<>(ENABLED ? QUEUE_CAPACITY : 1);
+    private static final LongAdder dropped = new LongAdder();
+    private static final Object exportLock = new Object();
+    private static volatile boolean running;
+    private static Thread exportThread;
+
+    static {
+        if (ENABLED) {
+            running = true;
+            exportThread = new Thread(Tracing::exportLoop, "span-exporter");
+            exportThread.setDaemon(true);
+            exportThread.start();
+            HibernateUtil.registerShutdownAction(Tracing::shutdown);
+            logger.info("Трассировка включена: экспорт {}, доля трасс {}",
+                    exporter.getClass().getSimpleName(), SAMPLE_RATIO);
+        }
+    }
+
+    private Tracing() {
+    }
+
+    private static SpanExporter createExporter(String config) {
+        if (config.equals("none")) {
+            return null;
+        }
+        if (config.equals("memory")) {
+            return new InMemorySpanExporter(MEMORY_CAPACITY);
+        }
+        if (config.startsWith("file:")) {
+            return new FileSpanExporter(Paths.get(config.substring("file:".length())));
+        }
+        logger.error("Неизвестный экспорт трасс userservice.tracing.exporter={}, трассировка выключена", config);
+        return null;
+    }
+
+    public static Span startSpan(String name) {
+        return startSpan(name, SpanKind.INTERNAL);
+    }
+
+    public static Span startSpan(String name, SpanKind kind) {
+        if (!ENABLED) {
+            return Span.NOOP;
+        }
+
+        Span parent = current.get();
+        Span span;
+        if (parent == null) {
+            boolean sampled = SAMPLE_RATIO >= 1.0 || ThreadLocalRandom.current().nextDouble() < SAMPLE_RATIO;
+            span = sampled
+                    ? new Span(randomHex(2), randomHex(1), null, name, kind, null, true)
+                    : new Span(null, null, null, name, kind, null, false);
+        } else if (!parent.isRecording()) {
+            parent.depth++;
+            return parent;
+        } else {
+            span = new Span(parent.getTraceId(), randomHex(1), parent.getSpanId(), name, kind, parent, true);
+        }
+        current.set(span);
+        return span;
+    }
+
+    // Спан в try-with-resources с отметкой ошибки; для декораторов сервисного и DAO-слоя
+    public static <T> T inSpan(String name, Supplier<T> work) {
+        Span span = startSpan(name);
+        try {
+            return work.get();
+        } catch (RuntimeException | Error e) {
+            span.recordError(e);
+            throw e;
+        } finally {
+            span.close();
+        }
+    }
+
+    // Текущий спан потока для атрибутов из нижних слоев (кэш, JDBC); без трассы — пустой спан
+    public static Span current() {
+        Span span = current.get();
+        return span != null ? span : Span.NOOP;
+    }
+
+    static void end(Span span) {
+        if (!span.isRecording()) {
+            if (--span.depth == 0) {
+                restore(span.getPrevious());
+            }
+            return;
+        }
+        if (current.get() != span) {
+            logger.debug("Спан {} закрыт не в порядке вложенности", span.getName());
+        }
+        span.finish();
+        restore(span.getPrevious());
+        if (!queue.offer(span)) {
+            dropped.increment();
+        }
+    }
+
+    private static void restore(Span previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    static long epochNanos(long nanoTime) {
+        return ANCHOR_EPOCH_NANOS + (nanoTime - ANCHOR_NANO_TIME);
+    }
+
+    private static String randomHex(int longs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] chars = new char[longs * 16];
+        for (int i = 0; i < longs; i++) {
+            long value;
+            do {
+                value = random.nextLong();
+            } while (value == 0);
+            for (int j = 15; j >= 0; j--) {
+                chars[i * 16 + j] = HEX[(int) (value & 0xF)];
+                value >>>= 4;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static void exportLoop() {
+        List<Span> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                Span first = queue.poll(EXPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                export(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void export(List<Span> batch) {
+        synchronized (exportLock) {
+            try {
+                exporter.export(batch);
+            } catch (Exception e) {
+                dropped.add(batch.size());
+                logger.warn("Не удалось экспортировать {} спанов: {}", batch.size(), e.getMessage());
+            }
+        }
+    }
+
+    // Экспортирует все завершенные спаны в вызывающем потоке
+    public static void flush() {
+        if (!ENABLED) {
+            return;
+        }
+        List<Span> batch = new ArrayList<>();
+        while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+            export(batch);
+            batch.clear();
+        }
+    }
+
+    public static void shutdown() {
+        if (!running) {
+            return;
+        }
+        // Без interrupt: прерывание записи закрыло бы FileChannel экспорта. Поток выходит по таймауту poll
+        running = false;
+        try {
+            exportThread.join(EXPORT_INTERVAL_MILLIS * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            exporter.close();
+        } catch (Exception e) {
+            logger.warn("Ошибка при закрытии экспорта трасс", e);
+        }
+        if (dropped.sum() > 0) {
+            logger.warn("Отброшено спанов: {}", dropped.sum());
+        }
+    }
+
+    public static SpanExporter getExporter() {
+        return exporter;
+    }
+
+    public static long getDroppedSpans() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,192 @@
+package com.userservice.util;
+
+import com.userservice.exception.DatabaseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Автоматический выключатель: размыкается при доле ошибок выше порога в окне последних вызовов,
+// пока разомкнут — сразу отказывает, по истечении паузы пропускает несколько пробных вызовов
+public class CircuitBreaker {
+
+    private static final Logger logger = LogManager.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenProbes;
+    private final Predicate<Throwable> isFailure;
+
+    // Кольцевой буфер результатов последних вызовов
+    private final boolean[] window;
+    private int windowPosition;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder openedCount = new LongAdder();
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openDurationMillis, int halfOpenProbes, Predicate<Throwable> isFailure) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || halfOpenProbes < 1
+                || failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("Некорректные параметры выключателя " + name);
+        }
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.halfOpenProbes = halfOpenProbes;
+        this.isFailure = isFailure;
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        boolean probe = acquirePermission();
+        try {
+            T result = action.get();
+            onResult(probe, false);
+            return result;
+        } catch (RuntimeException | Error e) {
+            onResult(probe, isFailure.test(e));
+            throw e;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(name, state, windowCount == 0 ? 0 : (double) windowFailures / windowCount,
+                rejected.sum(), openedCount.sum());
+    }
+
+    private synchronized boolean acquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                rejected.increment();
+                throw new DatabaseException("База данных недоступна: выключатель " + name + " разомкнут");
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= halfOpenProbes) {
+                rejected.increment();
+                throw new DatabaseException("База данных недоступна: выключатель " + name + " проверяет восстановление");
+            }
+            probesInFlight++;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void onResult(boolean probe, boolean failed) {
+        if (probe) {
+            probesInFlight--;
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            if (failed) {
+                transitionTo(State.OPEN);
+            } else if (++probeSuccesses >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        if (windowCount == window.length) {
+            if (window[windowPosition]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowPosition] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+
+        if (windowCount >= minimumCalls && (double) windowFailures / windowCount >= failureRateThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State next) {
+        logger.warn("Выключатель {}: {} -> {}", name, state, next);
+        state = next;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+
+        if (next == State.OPEN) {
+            openedAt = System.nanoTime();
+            openedCount.increment();
+        } else if (next == State.CLOSED) {
+            windowPosition = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+    }
+
+    public static final class Stats {
+        private final String name;
+        private final State state;
+        private final double failureRate;
+        private final long rejected;
+        private final long openedCount;
+
+        Stats(String name, State state, double failureRate, long rejected, long openedCount) {
+            this.name = name;
+            this.state = state;
+            this.failureRate = failureRate;
+            this.rejected = rejected;
+            this.openedCount = openedCount;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public double getFailureRate() {
+            return failureRate;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getOpenedCount() {
+            return openedCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{%s: state=%s, failureRate=%.2f, rejected=%d, opened=%d}",
+                    name, state, failureRate, rejected, openedCount);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.userservice.util;
+
+import com.userservice.config.AppConfig;
+import com.userservice.exception.DeadlineExceededException;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Срок вызова, заданный вызывающим, для всех обращений к БД в текущем потоке:
+//
+//   try (Deadline.Scope ignored = Deadline.within(Duration.ofMillis(300))) {
+//       userService.getUserById(id);
+//   }
+//
+// Истекший срок отказывает до получения соединения; каждый запрос получает JDBC query timeout
+// по остатку срока, а транзакция в PostgreSQL — statement_timeout и lock_timeout (см. JdbcProxies).
+// Вложенная область не продлевает срок внешней. userservice.deadline.enabled=false оставляет
+// только проверку на входе в UserService
+public final class Deadline {
+
+    public static final boolean ENABLED = AppConfig.getBoolean("userservice.deadline.enabled", true);
+
+    // query_canceled (statement_timeout, отмена запроса) и lock_not_available (lock_timeout)
+    private static final String QUERY_CANCELED = "57014";
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+    private static final Map<String, LongAdder> timeouts = new ConcurrentHashMap<>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Scope within(Duration timeout) {
+        Deadline outer = current.get();
+        Deadline deadline = new Deadline(System.nanoTime() + timeout.toNanos());
+        if (outer != null && outer.deadlineNanos - deadline.deadlineNanos < 0) {
+            deadline = outer;
+        }
+        current.set(deadline);
+        return new Scope(outer);
+    }
+
+    // null — срок не задан
+    public static Deadline current() {
+        return current.get();
+    }
+
+    // Перед получением соединения и выполнением запроса: истекший срок не занимает соединение
+    public static void check(String action) {
+        Deadline deadline = current.get();
+        if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException("Срок вызова истек: " + action);
+        }
+    }
+
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    // Ошибка вызвана сроком: отказ до начала, таймаут или отмена запроса, таймаут блокировки
+    public static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeadlineExceededException || cause instanceof SQLTimeoutException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                if (QUERY_CANCELED.equals(state) || LOCK_NOT_AVAILABLE.equals(state)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Отказ до обращения к БД (check, проверка перед запросом) ничего не говорит о ее состоянии.
+    // Такой отказ — DeadlineExceededException без причины в конце цепочки
+    public static boolean isRejectedBeforeStart(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeadlineExceededException && cause.getCause() == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void recordTimeout(String operation) {
+        timeouts.computeIfAbsent(operation, key -> new LongAdder()).increment();
+    }
+
+    // Вызовы, не уложившиеся в срок, по операциям
+    public static Map<String, Long> getTimeouts() {
+        Map<String, Long> result = new TreeMap<>();
+        timeouts.forEach((operation, count) -> result.put(operation, count.sum()));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{remainingMillis=" + remainingMillis() + '}';
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Deadline outer;
+
+        private Scope(Deadline outer) {
+            this.outer = outer;
+        }
+
+        @Override
+        public void close() {
+            if (outer != null) {
+                current.set(outer);
+            } else {
+                current.remove();
+            }
+        }
+    }
+}
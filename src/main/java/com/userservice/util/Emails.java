@@ -0,0 +1,15 @@
+package com.userservice.util;
+
+import java.util.Locale;
+
+public final class Emails {
+
+    private Emails() {
+    }
+
+    // Каноническая форма email для записи и поиска: нижний регистр.
+    // toLowerCase возвращает тот же экземпляр, если менять нечего
+    public static String canonical(String email) {
+        return email == null ? null : email.toLowerCase(Locale.ROOT);
+    }
+}
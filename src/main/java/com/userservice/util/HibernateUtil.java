@@ -1,6 +1,16 @@
 package com.userservice.util;
 
+import com.userservice.config.AppConfig;
+import com.userservice.config.EmbeddedDatabase;
+import com.userservice.dao.UserQueryWarmup;
 import com.userservice.entity.User;
+import com.userservice.exception.DatabaseException;
+import com.userservice.migration.SchemaMigrations;
+import com.userservice.outbox.OutboxRelay;
+import com.userservice.partition.UserPartitionManager;
+import com.userservice.sql.MonitoringConnectionProvider;
+import com.userservice.sql.SqlMonitor;
+import com.userservice.stats.RollupReconciler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.SessionFactory;
@@ -9,72 +19,276 @@ import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Environment;
 import org.hibernate.service.ServiceRegistry;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class HibernateUtil {
 
     private static final Logger logger = LogManager.getLogger(HibernateUtil.class);
-    private static SessionFactory sessionFactory;
+    private static volatile SessionFactory sessionFactory;
+    private static final List<Runnable> shutdownActions = new CopyOnWriteArrayList<>();
+
+    // В деградированном режиме недоступная при старте БД не роняет приложение:
+    // вызовы сразу получают DatabaseException, а SessionFactory пересоздается в фоне
+    private static final boolean DEGRADED_MODE = AppConfig.getBoolean("userservice.db.degradedMode", true);
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1_000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30_000;
+
+    // Настройки подключения и пула — из AppConfig (userservice.properties и профили)
+    private static final int POOL_SIZE = AppConfig.getInt("userservice.db.poolSize", 10);
+    private static final int MIN_POOL_SIZE = Math.min(AppConfig.getInt("userservice.db.minPoolSize", 1), POOL_SIZE);
+    private static final int PREPARE_THRESHOLD = AppConfig.getInt("userservice.jdbc.prepareThreshold", 5);
+    private static final boolean WARMUP_ENABLED = AppConfig.getBoolean("userservice.jdbc.warmup", true);
+
+    private static final Object initLock = new Object();
+    private static ScheduledExecutorService reconnectExecutor;
+    private static volatile Exception lastInitFailure;
 
     private HibernateUtil() {
     }
 
     public static SessionFactory getSessionFactory() {
-        if (sessionFactory == null) {
+        SessionFactory factory = sessionFactory;
+        if (factory != null) {
+            return factory;
+        }
+
+        synchronized (initLock) {
+            if (sessionFactory != null) {
+                return sessionFactory;
+            }
+            if (reconnectExecutor != null) {
+                throw new DatabaseException("База данных недоступна, идет переподключение", lastInitFailure);
+            }
+
             try {
-                logger.info("Инициализация Hibernate SessionFactory...");
+                sessionFactory = initSessionFactory();
+                return sessionFactory;
 
-                Configuration configuration = new Configuration();
+            } catch (Exception e) {
+                logger.error("Ошибка при инициализации Hibernate SessionFactory", e);
+                if (!DEGRADED_MODE) {
+                    e.printStackTrace();
+                    throw new ExceptionInInitializerError(e);
+                }
+                lastInitFailure = e;
+                scheduleReconnect(MIN_RECONNECT_DELAY_MILLIS);
+                throw new DatabaseException("База данных недоступна, запущено фоновое переподключение", e);
+            }
+        }
+    }
 
-                Properties settings = new Properties();
-                settings.put(Environment.DRIVER, "org.postgresql.Driver");
-                settings.put(Environment.URL, "jdbc:postgresql://localhost:5432/user_service_db");
-                settings.put(Environment.USER, "user_service_user");
-                settings.put(Environment.PASS, "4221");
-                settings.put(Environment.DIALECT, "org.hibernate.dialect.PostgreSQL10Dialect");
+    public static boolean isDegraded() {
+        return sessionFactory == null && lastInitFailure != null;
+    }
 
-                // Показать SQL
-                settings.put(Environment.SHOW_SQL, "true");
-                settings.put(Environment.FORMAT_SQL, "true");
-                settings.put(Environment.USE_SQL_COMMENTS, "true");
+    private static SessionFactory initSessionFactory() {
+        logger.info("Инициализация Hibernate SessionFactory...");
 
+        SessionFactory factory = buildSessionFactory(AppConfig.require("userservice.db.url"),
+                AppConfig.require("userservice.db.username"), AppConfig.getString("userservice.db.password", ""));
 
-                settings.put(Environment.HBM2DDL_AUTO, "update");
+        logger.info("Hibernate SessionFactory успешно инициализирована");
 
-                // Дополнительное логирование
-                settings.put("hibernate.hbm2ddl.import_files_sql_extractor",
-                        "org.hibernate.tool.hbm2ddl.MultipleLinesSqlCommandExtractor");
+        OutboxRelay relay = OutboxRelay.fromProperties(factory);
+        if (relay != null) {
+            relay.start();
+            registerShutdownAction(relay::close);
+        }
 
-                settings.put(Environment.CURRENT_SESSION_CONTEXT_CLASS, "thread");
-                settings.put(Environment.POOL_SIZE, "10");
+        RollupReconciler reconciler = RollupReconciler.fromProperties(factory);
+        if (reconciler != null) {
+            reconciler.start();
+            registerShutdownAction(reconciler::close);
+        }
+        return factory;
+    }
+
+    // Вызывается под initLock
+    private static void scheduleReconnect(long delayMillis) {
+        if (reconnectExecutor == null) {
+            reconnectExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "hibernate-reconnect");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        logger.warn("Повторная попытка подключения к БД через {} мс", delayMillis);
+        reconnectExecutor.schedule(() -> reconnect(delayMillis), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Построение идет вне initLock, чтобы вызывающие потоки не ждали таймаут соединения
+    private static void reconnect(long previousDelayMillis) {
+        try {
+            SessionFactory factory = initSessionFactory();
+            synchronized (initLock) {
+                if (reconnectExecutor == null) {
+                    factory.close();
+                    return;
+                }
+                sessionFactory = factory;
+                lastInitFailure = null;
+                reconnectExecutor.shutdown();
+                reconnectExecutor = null;
+            }
+            logger.info("Подключение к БД восстановлено");
+        } catch (Exception e) {
+            logger.error("Подключение к БД не удалось: {}", e.getMessage());
+            synchronized (initLock) {
+                if (reconnectExecutor != null) {
+                    lastInitFailure = e;
+                    scheduleReconnect(Math.min(previousDelayMillis * 2, MAX_RECONNECT_DELAY_MILLIS));
+                }
+            }
+        }
+    }
 
-                configuration.setProperties(settings);
+    // Отдельная SessionFactory для другой БД (например, шарда); закрывается вызывающим
+    public static SessionFactory buildSessionFactory(String url, String username, String password) {
+        Configuration configuration = new Configuration();
 
-                // Регистрация сущностей
-                configuration.addAnnotatedClass(User.class);
+        boolean embedded = EmbeddedDatabase.isEmbedded(url);
+        if (embedded) {
+            EmbeddedDatabase.install(url, username, password);
+        }
 
-                logger.info("Сущность User зарегистрирована");
-                logger.info("hbm2ddl.auto = create");
+        Properties settings = new Properties();
+        settings.put(Environment.DRIVER, AppConfig.getString("userservice.db.driver", "org.postgresql.Driver"));
+        settings.put(Environment.URL, url);
+        settings.put(Environment.USER, username);
+        settings.put(Environment.PASS, password);
+        settings.put(Environment.DIALECT,
+                AppConfig.getString("userservice.db.dialect", "org.hibernate.dialect.PostgreSQL10Dialect"));
 
-                ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
-                        .applySettings(configuration.getProperties())
-                        .build();
+        // Вывод каждого SQL в stdout только по запросу: статистику и медленные запросы собирает SqlMonitor
+        String showSql = String.valueOf(AppConfig.getBoolean("userservice.sql.show", false));
+        settings.put(Environment.SHOW_SQL, showSql);
+        settings.put(Environment.FORMAT_SQL, showSql);
+        settings.put(Environment.USE_SQL_COMMENTS, showSql);
+        if (MonitoringConnectionProvider.isNeeded()) {
+            settings.put(Environment.CONNECTION_PROVIDER, MonitoringConnectionProvider.class.getName());
+        }
 
-                sessionFactory = configuration.buildSessionFactory(serviceRegistry);
 
-                logger.info("Hibernate SessionFactory успешно инициализирована");
+        // Схемой управляют миграции (SchemaMigrations); hbm2ddl только сверяет с ней сущности.
+        // Секционированную таблицу validate не находит среди обычных — ее сверка отключена
+        boolean partitioned = UserPartitionManager.isEnabled();
+        settings.put(Environment.HBM2DDL_AUTO,
+                partitioned ? "none" : AppConfig.getString("userservice.db.hbm2ddl", "validate"));
 
-            } catch (Exception e) {
-                logger.error("Ошибка при инициализации Hibernate SessionFactory", e);
-                e.printStackTrace();
-                throw new ExceptionInInitializerError(e);
+        // Дополнительное логирование
+        settings.put("hibernate.hbm2ddl.import_files_sql_extractor",
+                "org.hibernate.tool.hbm2ddl.MultipleLinesSqlCommandExtractor");
+
+        settings.put(Environment.CURRENT_SESSION_CONTEXT_CLASS, "thread");
+        settings.put(Environment.POOL_SIZE, String.valueOf(POOL_SIZE));
+        settings.put("hibernate.connection.min_pool_size", String.valueOf(MIN_POOL_SIZE));
+        settings.put("hibernate.connection.initial_pool_size", String.valueOf(MIN_POOL_SIZE));
+
+        // Ошибка в именованном запросе останавливает старт, а не первый вызов DAO
+        settings.put("hibernate.query.startup_check", "true");
+
+        // Настройки pgjdbc (префикс hibernate.connection. передается драйверу): кэш подготовленных
+        // запросов на соединение и бинарная передача значений для серверных prepared statements.
+        // H2 неизвестные параметры соединения отвергает
+        if (!embedded) {
+            settings.put("hibernate.connection.prepareThreshold", String.valueOf(PREPARE_THRESHOLD));
+            settings.put("hibernate.connection.preparedStatementCacheQueries",
+                    AppConfig.getString("userservice.jdbc.preparedStatementCacheQueries", "256"));
+            settings.put("hibernate.connection.preparedStatementCacheSizeMiB",
+                    AppConfig.getString("userservice.jdbc.preparedStatementCacheSizeMiB", "5"));
+            settings.put("hibernate.connection.binaryTransfer",
+                    AppConfig.getString("userservice.jdbc.binaryTransfer", "true"));
+        }
+
+        configuration.setProperties(settings);
+
+        // Регистрация сущностей
+        configuration.addAnnotatedClass(User.class);
+
+        logger.info("Сущность User зарегистрирована");
+        logger.info("hbm2ddl.auto = {}, url = {}", settings.get(Environment.HBM2DDL_AUTO), url);
+
+        if (SchemaMigrations.ENABLED) {
+            SchemaMigrations.migrate(url, username, password);
+        }
+
+        ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
+                .applySettings(configuration.getProperties())
+                .build();
+
+        SessionFactory factory;
+        try {
+            factory = configuration.buildSessionFactory(serviceRegistry);
+        } catch (RuntimeException e) {
+            StandardServiceRegistryBuilder.destroy(serviceRegistry);
+            throw e;
+        }
+
+        // При фоновом переподключении построение повторяется: недостроенная фабрика закрывается
+        // вместе с пулом и задачей обслуживания секций
+        UserPartitionManager partitionManager = null;
+        try {
+            if (partitioned) {
+                partitionManager = new UserPartitionManager(factory);
+                partitionManager.ensureSchema();
+            }
+
+            // До запуска фоновых задач: прогрев занимает соединения пула
+            if (WARMUP_ENABLED && !embedded) {
+                UserQueryWarmup.run(factory, POOL_SIZE, PREPARE_THRESHOLD);
             }
+            if (partitionManager != null) {
+                partitionManager.start();
+            }
+        } catch (RuntimeException e) {
+            if (partitionManager != null) {
+                partitionManager.close();
+            }
+            factory.close();
+            throw e;
         }
-        return sessionFactory;
+        if (partitionManager != null) {
+            registerShutdownAction(partitionManager::close);
+        }
+        return factory;
+    }
+
+    // Действия выполняются перед закрытием SessionFactory, в обратном порядке регистрации
+    public static void registerShutdownAction(Runnable action) {
+        shutdownActions.add(action);
     }
 
     public static void shutdown() {
+        List<Runnable> actions = new ArrayList<>(shutdownActions);
+        shutdownActions.clear();
+        Collections.reverse(actions);
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (Exception e) {
+                logger.error("Ошибка при выполнении действия завершения работы", e);
+            }
+        }
+
+        synchronized (initLock) {
+            if (reconnectExecutor != null) {
+                reconnectExecutor.shutdownNow();
+                reconnectExecutor = null;
+            }
+        }
+
+        SessionFactory sessionFactory = HibernateUtil.sessionFactory;
         if (sessionFactory != null && !sessionFactory.isClosed()) {
+            if (SqlMonitor.ENABLED) {
+                logger.info(SqlMonitor.summary(20));
+            }
             logger.info("Закрытие Hibernate SessionFactory...");
             try {
                 sessionFactory.close();
@@ -86,6 +300,7 @@ public class HibernateUtil {
     }
 
     public static boolean isSessionFactoryInitialized() {
+        SessionFactory sessionFactory = HibernateUtil.sessionFactory;
         return sessionFactory != null && !sessionFactory.isClosed();
     }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.userservice.util;
+
+import com.userservice.entity.User;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// Потоковая запись JSON прямо в тело ответа, без промежуточного дерева или строки
+public final class JsonWriter {
+
+    private final Writer out;
+    private boolean needComma;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        separate();
+        out.write('{');
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        out.write('}');
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        separate();
+        out.write('[');
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        out.write(']');
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        out.write(':');
+        needComma = false;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        writeString(value);
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter value(Number value) throws IOException {
+        separate();
+        out.write(value != null ? value.toString() : "null");
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        needComma = true;
+        return this;
+    }
+
+    public JsonWriter user(User user) throws IOException {
+        return beginObject()
+                .name("id").value(user.getId())
+                .name("name").value(user.getName())
+                .name("email").value(user.getEmail())
+                .name("age").value(user.getAge())
+                .name("createdAt").value(user.getCreatedAt() != null ? user.getCreatedAt().toString() : null)
+                .name("updatedAt").value(user.getUpdatedAt() != null ? user.getUpdatedAt().toString() : null)
+                .endObject();
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void separate() throws IOException {
+        if (needComma) {
+            out.write(',');
+            needComma = false;
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
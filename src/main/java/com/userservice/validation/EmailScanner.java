@@ -0,0 +1,63 @@
+package com.userservice.validation;
+
+// Ручной разбор email, эквивалентный ^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\.[A-Za-z]{2,}$,
+// за один проход по диапазону строки без Matcher и без промежуточных строк
+public final class EmailScanner {
+
+    private EmailScanner() {
+    }
+
+    public static boolean isValid(CharSequence value) {
+        return isValid(value, 0, value.length());
+    }
+
+    public static boolean isValid(CharSequence value, int start, int end) {
+        int at = -1;
+        int lastDot = -1;
+
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '@') {
+                if (at >= 0) {
+                    return false;
+                }
+                at = i;
+            } else if (at < 0) {
+                if (!isLocalChar(c)) {
+                    return false;
+                }
+            } else if (c == '.') {
+                lastDot = i;
+            } else if (!isDomainChar(c)) {
+                return false;
+            }
+        }
+
+        // Непустая локальная часть, непустой домен до последней точки, зона из 2+ букв
+        if (at <= start || lastDot <= at + 1 || end - lastDot - 1 < 2) {
+            return false;
+        }
+        for (int i = lastDot + 1; i < end; i++) {
+            if (!isLetter(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isDomainChar(char c) {
+        return isLetter(c) || isDigit(c) || c == '-';
+    }
+
+    private static boolean isLocalChar(char c) {
+        return isLetter(c) || isDigit(c) || c == '+' || c == '_' || c == '.' || c == '-';
+    }
+}
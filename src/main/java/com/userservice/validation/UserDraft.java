@@ -0,0 +1,32 @@
+package com.userservice.validation;
+
+// Данные пользователя до сохранения: вход пакетной проверки и ее нормализованный результат
+public final class UserDraft {
+
+    private final String name;
+    private final String email;
+    private final Integer age;
+
+    public UserDraft(String name, String email, Integer age) {
+        this.name = name;
+        this.email = email;
+        this.age = age;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+
+    @Override
+    public String toString() {
+        return "UserDraft{name='" + name + '\'' + ", email='" + email + '\'' + ", age=" + age + '}';
+    }
+}
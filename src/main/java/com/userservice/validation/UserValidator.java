@@ -0,0 +1,199 @@
+package com.userservice.validation;
+
+import com.userservice.exception.ValidationException;
+import com.userservice.util.Emails;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Проверка и нормализация полей пользователя. Проверки работают по границам строки без trim(),
+// ошибки — заранее созданные константы; нормализованное значение вычисляется один раз
+// и дальше передается вызывающим кодом вместо исходного.
+public final class UserValidator {
+
+    private static final int NAME_MIN_LENGTH = 2;
+    private static final int NAME_MAX_LENGTH = 100;
+    private static final int EMAIL_MAX_LENGTH = 150;
+    private static final int AGE_MIN = 0;
+    private static final int AGE_MAX = 110;
+
+    public ValidationError checkName(String name) {
+        if (name == null) {
+            return ValidationError.NAME_EMPTY;
+        }
+        int start = trimStart(name);
+        int length = trimEnd(name, start) - start;
+
+        if (length == 0) {
+            return ValidationError.NAME_EMPTY;
+        }
+        if (length < NAME_MIN_LENGTH) {
+            return ValidationError.NAME_TOO_SHORT;
+        }
+        if (length > NAME_MAX_LENGTH) {
+            return ValidationError.NAME_TOO_LONG;
+        }
+        return null;
+    }
+
+    public ValidationError checkEmail(String email) {
+        if (email == null) {
+            return ValidationError.EMAIL_EMPTY;
+        }
+        int start = trimStart(email);
+        int end = trimEnd(email, start);
+
+        if (end == start) {
+            return ValidationError.EMAIL_EMPTY;
+        }
+        if (!EmailScanner.isValid(email, start, end)) {
+            return ValidationError.EMAIL_INVALID;
+        }
+        if (end - start > EMAIL_MAX_LENGTH) {
+            return ValidationError.EMAIL_TOO_LONG;
+        }
+        return null;
+    }
+
+    public ValidationError checkAge(Integer age) {
+        if (age == null) {
+            return null;
+        }
+        if (age < AGE_MIN) {
+            return ValidationError.AGE_NEGATIVE;
+        }
+        if (age > AGE_MAX) {
+            return ValidationError.AGE_TOO_HIGH;
+        }
+        return null;
+    }
+
+    // String.trim() возвращает тот же экземпляр, если обрезать нечего
+    public String normalizeName(String name) {
+        throwIfInvalid(checkName(name));
+        return name.trim();
+    }
+
+    // Email приводится к канонической форме, чтобы Foo@X.com и foo@x.com не давали двух учетных записей
+    public String normalizeEmail(String email) {
+        throwIfInvalid(checkEmail(email));
+        return Emails.canonical(email.trim());
+    }
+
+    public void requireValidAge(Integer age) {
+        throwIfInvalid(checkAge(age));
+    }
+
+    public static boolean isBlank(String value) {
+        return value == null || trimStart(value) == value.length();
+    }
+
+    // Проверяет все записи и собирает все ошибки, не останавливаясь на первой
+    public BatchResult validateBatch(List<UserDraft> drafts) {
+        List<UserDraft> valid = new ArrayList<>(drafts.size());
+        List<RecordError> errors = null;
+
+        for (int i = 0; i < drafts.size(); i++) {
+            UserDraft draft = drafts.get(i);
+            ValidationError nameError = checkName(draft.getName());
+            ValidationError emailError = checkEmail(draft.getEmail());
+            ValidationError ageError = checkAge(draft.getAge());
+
+            if (nameError == null && emailError == null && ageError == null) {
+                valid.add(normalized(draft));
+                continue;
+            }
+
+            if (errors == null) {
+                errors = new ArrayList<>();
+            }
+            if (nameError != null) {
+                errors.add(new RecordError(i, nameError));
+            }
+            if (emailError != null) {
+                errors.add(new RecordError(i, emailError));
+            }
+            if (ageError != null) {
+                errors.add(new RecordError(i, ageError));
+            }
+        }
+        return new BatchResult(valid, errors != null ? errors : Collections.emptyList());
+    }
+
+    private static UserDraft normalized(UserDraft draft) {
+        String name = draft.getName().trim();
+        String email = Emails.canonical(draft.getEmail().trim());
+        if (name == draft.getName() && email == draft.getEmail()) {
+            return draft;
+        }
+        return new UserDraft(name, email, draft.getAge());
+    }
+
+    private static void throwIfInvalid(ValidationError error) {
+        if (error != null) {
+            throw new ValidationException(error.getMessage());
+        }
+    }
+
+    private static int trimStart(String value) {
+        int start = 0;
+        while (start < value.length() && value.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String value, int start) {
+        int end = value.length();
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    public static final class RecordError {
+        private final int index;
+        private final ValidationError error;
+
+        public RecordError(int index, ValidationError error) {
+            this.index = index;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public ValidationError getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + index + " " + error.getField() + ": " + error.getMessage();
+        }
+    }
+
+    public static final class BatchResult {
+        private final List<UserDraft> valid;
+        private final List<RecordError> errors;
+
+        BatchResult(List<UserDraft> valid, List<RecordError> errors) {
+            this.valid = valid;
+            this.errors = errors;
+        }
+
+        public List<UserDraft> getValid() {
+            return valid;
+        }
+
+        public List<RecordError> getErrors() {
+            return errors;
+        }
+
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.userservice.validation;
+
+// Заранее подготовленные ошибки: проверка не создает строк сообщений на каждый вызов
+public enum ValidationError {
+    NAME_EMPTY("name", "Имя не может быть пустым"),
+    NAME_TOO_SHORT("name", "Имя должно содержать минимум 2 символа"),
+    NAME_TOO_LONG("name", "Имя не может быть длиннее 100 символов"),
+    EMAIL_EMPTY("email", "Email не может быть пустым"),
+    EMAIL_INVALID("email", "Некорректный формат email"),
+    EMAIL_TOO_LONG("email", "Email не может быть длиннее 150 символов"),
+    AGE_NEGATIVE("age", "Возраст не может быть отрицательным"),
+    AGE_TOO_HIGH("age", "Возраст не может быть больше 110 лет");
+
+    private final String field;
+    private final String message;
+
+    ValidationError(String field, String message) {
+        this.field = field;
+        this.message = message;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,11 @@
+-- Справочник email -> шард для ShardedUserDao: уникальность email на все шарды и поиск шарда по email.
+-- Миграции выполняются на каждой БД, поэтому таблица есть и на шардах, где справочник не ведется
+-- (используется БД userservice.shard.directory, по умолчанию — шард 0).
+-- user_id заполняется после вставки пользователя в шард; до этого email только зарезервирован
+CREATE TABLE IF NOT EXISTS user_email_directory (
+    email    VARCHAR(150) PRIMARY KEY,
+    user_id  BIGINT,
+    shard_id INTEGER      NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_email_directory_user_id ON user_email_directory (user_id);
@@ -0,0 +1,10 @@
+-- Таблица users в том виде, в каком ее создавал hbm2ddl.auto=update.
+-- IF NOT EXISTS: на базах, созданных до миграций, скрипт ничего не меняет
+CREATE TABLE IF NOT EXISTS users (
+    id         BIGSERIAL PRIMARY KEY,
+    name       VARCHAR(255) NOT NULL,
+    email      VARCHAR(255) NOT NULL UNIQUE,
+    age        INTEGER,
+    created_at TIMESTAMP    NOT NULL,
+    version    BIGINT       NOT NULL DEFAULT 0
+);
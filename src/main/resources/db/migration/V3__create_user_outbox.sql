@@ -0,0 +1,15 @@
+-- Outbox событий об изменении пользователей и позиции ретрансляторов (см. UserOutbox, OutboxRelay)
+CREATE TABLE IF NOT EXISTS user_outbox (
+    id         BIGSERIAL PRIMARY KEY,
+    event_type VARCHAR(32) NOT NULL,
+    user_id    BIGINT,
+    payload    BYTEA,
+    tx_id      BIGINT      NOT NULL DEFAULT txid_current(),
+    created_at TIMESTAMP   NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS user_outbox_checkpoint (
+    relay         VARCHAR(64) PRIMARY KEY,
+    last_event_id BIGINT      NOT NULL,
+    updated_at    TIMESTAMP   NOT NULL DEFAULT now()
+);
@@ -0,0 +1,9 @@
+-- Инкрементальные сводки по пользователям (см. UserRollup). Счетчик корзины разбит на слоты;
+-- значение корзины — сумма по слотам. Заполняется записями DAO и сверкой RollupReconciler
+CREATE TABLE IF NOT EXISTS user_stats_rollup (
+    dimension  VARCHAR(16)  NOT NULL,
+    bucket     VARCHAR(255) NOT NULL,
+    slot       INTEGER      NOT NULL,
+    user_count BIGINT       NOT NULL,
+    PRIMARY KEY (dimension, bucket, slot)
+);
@@ -0,0 +1,12 @@
+-- Лента изменений (см. UserChangesDao): время последней записи строки users и надгробия удаленных.
+-- Значение по умолчанию вычисляется один раз и хранится в метаданных: таблица не перезаписывается,
+-- существующие строки попадают в ленту со временем миграции. Его же получают строки,
+-- вставленные узлами, которые еще не знают о столбце. Индекс (updated_at, id) строит следующая миграция
+ALTER TABLE users ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP DEFAULT LOCALTIMESTAMP;
+
+CREATE TABLE IF NOT EXISTS user_tombstones (
+    user_id    BIGINT    PRIMARY KEY,
+    deleted_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_tombstones_deleted_at ON user_tombstones (deleted_at, user_id);
@@ -0,0 +1,14 @@
+-- Контрольные точки пакетных задач (см. BatchJobRunner): строка на диапазон id.
+-- last_id — последний обработанный id, обновляется в транзакции каждой порции;
+-- после успешного завершения задачи ее строки удаляются
+CREATE TABLE IF NOT EXISTS batch_job_checkpoint (
+    job         VARCHAR(64) NOT NULL,
+    range_start BIGINT      NOT NULL,
+    range_end   BIGINT      NOT NULL,
+    last_id     BIGINT      NOT NULL,
+    processed   BIGINT      NOT NULL DEFAULT 0,
+    modified    BIGINT      NOT NULL DEFAULT 0,
+    done        BOOLEAN     NOT NULL DEFAULT FALSE,
+    updated_at  TIMESTAMP   NOT NULL DEFAULT now(),
+    PRIMARY KEY (job, range_start)
+);
@@ -0,0 +1,9 @@
+-- Столбец version (оптимистическая блокировка) для баз, созданных hbm2ddl до его появления:
+-- на них V1 ничего не меняет, и проверка схемы (hbm2ddl=validate) не проходит.
+-- Постоянное значение по умолчанию хранится в метаданных: таблица не перезаписывается.
+--
+-- id на таких базах — столбец GENERATED BY DEFAULT AS IDENTITY (так его создает PostgreSQL10Dialect),
+-- а V1 на новых базах создает BIGSERIAL. Для приложения разницы нет: в обоих случаях id выдает
+-- последовательность users_id_seq при вставке без id. Код, который обращается к последовательности
+-- напрямую (UserPartitionManager), учитывает оба варианта
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;